@@ -4,24 +4,35 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
+import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.time.LocalDate;
+
 import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.tasks.BatchExportJob;
+import br.com.rateiocerto.businiess.tasks.JobHandle;
 import br.com.rateiocerto.businiess.tasks.TaskWriteCSV;
+import br.com.rateiocerto.interfaces.JobListener;
 
 /**
  * Rateio Certo
  *
  * FinishActivity: classe que gerencia a tela de finalização do App.
- * Nela será iniciada a geração da planilha, a partir do botão correspondente.
+ * Nela será iniciada a geração da planilha, a partir do botão correspondente,
+ * ou a geração das planilhas do mês de todos os condomínios do aparelho.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
 public class FinishActivity extends AppCompatActivity {
 
     DataRWManager dataRWManager;
+    private JobHandle<String> sheetHandle;
+    private JobListener<String> sheetListener;
+    private JobHandle<BatchExportJob.Report> batchHandle;
+    private JobListener<BatchExportJob.Report> batchListener;
 
     /**
      * Rotina de criação da atividade de finalização. Contém as inicializações
@@ -33,42 +44,141 @@ public class FinishActivity extends AppCompatActivity {
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        String homePath = getExternalFilesDir("").getPath();
-        this.dataRWManager = new DataRWManager(homePath, getApplicationContext());
+        this.dataRWManager = ((RateioApplication) getApplication()).getDataRWManager();
 
         setContentView(R.layout.activity_finish);
 
-        Button btnSaveSheet = findViewById (R.id.btn_finish_save_sheet);
+        final Button btnSaveSheet = findViewById (R.id.btn_finish_save_sheet);
+        final Button btnSaveAll = findViewById (R.id.btn_finish_save_all);
         Button btnBackHome = findViewById(R.id.btn_finish_home);
 
+        this.sheetListener = new JobListener<String>() {
+            @Override
+            public void onProgress(int value) {
+            }
+
+            @Override
+            public void onResult(String result) {
+                Toast.makeText(getApplicationContext(), result, Toast.LENGTH_SHORT).show();
+                Intent intent = new Intent (getBaseContext(), MainActivity.class);
+                startActivity(intent);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                String text = "Ocorreu um erro: " + t.getMessage();
+                Toast.makeText(getApplicationContext(), text, Toast.LENGTH_SHORT).show();
+                btnSaveSheet.setEnabled(true);
+            }
+
+            @Override
+            public void onCancelled() {
+                Toast.makeText(getApplicationContext(), "Geração da planilha cancelada.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+
         /**
          * Ação do botão "salvar planilha".
-         * É inicializado o processo de geração de planilha em arquivo,
-         * cujo processo roda em separado da interface gráfica.
-         * Após a inicialização da escrita, a tela inicial é instanciada
-         * para visualização.
+         * É agendada a geração de planilha em arquivo, cujo processo roda em
+         * separado da interface gráfica. O botão fica desabilitado até o fim
+         * da geração, e a tela inicial é instanciada quando a planilha é salva.
          */
         btnSaveSheet.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                TaskWriteCSV t = new TaskWriteCSV(v, dataRWManager);
-                t.execute();
-                Intent intent = new Intent (getBaseContext(), MainActivity.class);
-                startActivity(intent);
+                Toast.makeText(getBaseContext(), "Criando a planilha, aguarde...",
+                        Toast.LENGTH_SHORT).show();
+                btnSaveSheet.setEnabled(false);
+                RateioApplication app = (RateioApplication) getApplication();
+                sheetHandle = app.getJobScheduler().submit(
+                        new TaskWriteCSV(dataRWManager.getBackend()), sheetListener);
+            }
+        });
+
+        this.batchListener = new JobListener<BatchExportJob.Report>() {
+            @Override
+            public void onProgress(int value) {
+                String text = "Planilhas concluídas: " + value + "...";
+                Toast.makeText(getApplicationContext(), text, Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onResult(BatchExportJob.Report result) {
+                Toast.makeText(getApplicationContext(), result.getSummary(),
+                        Toast.LENGTH_LONG).show();
+                btnSaveAll.setEnabled(true);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                String text = "Ocorreu um erro: " + t.getMessage();
+                Toast.makeText(getApplicationContext(), text, Toast.LENGTH_SHORT).show();
+                btnSaveAll.setEnabled(true);
+            }
+
+            @Override
+            public void onCancelled() {
+                Toast.makeText(getApplicationContext(), "Geração das planilhas cancelada.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+
+        /**
+         * Ação do botão "salvar planilhas de todos os condomínios".
+         * O período atual de cada condomínio é fechado e a sua planilha é
+         * gerada, em paralelo, por uma única tarefa. O botão fica desabilitado
+         * até o fim da geração, quando o resumo da execução é exibido.
+         */
+        btnSaveAll.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Toast.makeText(getBaseContext(), "Criando as planilhas, aguarde...",
+                        Toast.LENGTH_SHORT).show();
+                btnSaveAll.setEnabled(false);
+                RateioApplication app = (RateioApplication) getApplication();
+                LocalDate now = LocalDate.now();
+                BatchExportJob job = new BatchExportJob(app.getCondominiumRegistry(),
+                        BatchExportJob.allCondominiums(app.getCondominiumRegistry(),
+                                now.getYear(), now.getMonthValue()),
+                        true, BatchExportJob.DEFAULT_PARALLELISM);
+                batchHandle = app.getJobScheduler().submit(job, batchListener);
             }
         });
 
         /**
          * Ação do botão "voltar ao início".
-         * Aqui apenas é instanciada a tela inicial para visualização.
+         * Caso a geração da planilha ainda esteja em andamento, a mesma é
+         * cancelada. Em seguida a tela inicial é instanciada para visualização.
          */
         btnBackHome.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
+                if (sheetHandle != null && !sheetHandle.isDone()) {
+                    sheetHandle.cancel();
+                }
+                if (batchHandle != null && !batchHandle.isDone()) {
+                    batchHandle.cancel();
+                }
                 Intent intent = new Intent (getBaseContext(), MainActivity.class);
                 startActivity(intent);
             }
         });
 
     }
+
+    /**
+     * Rotina de destruição da tela. A geração das planilhas continua em
+     * segundo plano, mas deixa de avisar esta tela.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (this.sheetHandle != null) {
+            this.sheetHandle.removeListener(this.sheetListener);
+        }
+        if (this.batchHandle != null) {
+            this.batchHandle.removeListener(this.batchListener);
+        }
+    }
 }
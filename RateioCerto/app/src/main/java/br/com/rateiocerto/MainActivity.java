@@ -5,28 +5,41 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.provider.DocumentsContract;
 import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.Spinner;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.DbExecutors;
+import br.com.rateiocerto.businiess.tasks.JobHandle;
 import br.com.rateiocerto.businiess.tasks.TaskSetupAptTable;
-import br.com.rateiocerto.interfaces.GuiBackendManager;
+import br.com.rateiocerto.interfaces.GuiBackendManagerAsync;
+import br.com.rateiocerto.interfaces.JobListener;
+import br.com.rateiocerto.interfaces.ResultCallback;
 
 /**
  * Rateio Certo
  *
  * MainActivity: classe que gerencia os eventos da tela inicial do app.
- * Aqui contém as rotinas iniciais de carregamento dos dados e configurações.
+ * Aqui contém as rotinas iniciais de carregamento dos dados e configurações,
+ * além da escolha do condomínio, dentre os configurados no aparelho, usado
+ * pelas demais telas.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
 public class MainActivity extends AppCompatActivity {
 
+    private List<JobHandle<String>> setupHandles = new ArrayList<>();
+    private JobListener<String> setupListener;
+
     /**
      * Método de inicialização da tela inicial. É inicializada a tela
      * propriamente dita, além do gerenciador principal da camada de negócio.
@@ -38,32 +51,52 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        String homePath = getExternalFilesDir("").getPath();
-        GuiBackendManager dataRWManager = new DataRWManager (homePath, getApplicationContext());
+        final RateioApplication app = (RateioApplication) getApplication();
 
-        //((DataRWManager) dataRWManager).db.ReadDataDao().clearAllReadData();
+        //((DataRWManager) dataRWManager).getDatabase().ReadDataDao().clearAllReadData();
         //((DataRWManager) dataRWManager).clearAllAptData();
 
-        //List <AptRead> testList = dataRWManager.db.AptReadDao().getListAllReadsCond();
+        //List <AptRead> testList = dataRWManager.getDatabase().AptReadDao().getListAllReadsCond();
+
+        Spinner spnCondominium = (Spinner) findViewById(R.id.spn_home_condominium);
+        final List<String> condominiums = app.getCondominiums();
 
-        /**Rotina de carregamento inicial dos dados de apartamentos.
-         * O carregamento só ocorre se o número de apartamentos cadastrados
-         * for nulo.
+        /**
+         * Lista de condomínios configurados no aparelho. A escolha de um
+         * condomínio o torna o usado pelas demais telas, e verifica se os
+         * seus dados iniciais já foram carregados.
          */
-        int test = dataRWManager.getTotalApartments ();
-        if (test == 0) {
-            String condName = dataRWManager.getNameCondominium();
-            String fileCSVName = homePath + "/" + condName + "/"
-                    + condName + ".csv";
-            TaskSetupAptTable t = new TaskSetupAptTable(this,
-                    fileCSVName, ((DataRWManager) dataRWManager).db);
-            t.execute();
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this,
+                android.R.layout.simple_spinner_item, condominiums);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spnCondominium.setAdapter(adapter);
+        if (!condominiums.isEmpty()) {
+            spnCondominium.setSelection(condominiums.indexOf(
+                    app.getCondominiumRegistry().getCurrent()));
         }
+        spnCondominium.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                app.selectCondominium(condominiums.get(position));
+                checkInitialData();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
 
         Button btnHomeInit = (Button) findViewById(R.id.btn_home_init);
         Button btnHomeLastSheet = (Button) findViewById(R.id.btn_home_last_sheet);
         Button btnHomeAbout = (Button) findViewById(R.id.btn_home_about);
 
+        if (condominiums.isEmpty()) {
+            btnHomeInit.setEnabled(false);
+            btnHomeLastSheet.setEnabled(false);
+            Toast.makeText(getBaseContext(), R.string.txt_home_no_condominium,
+                    Toast.LENGTH_LONG).show();
+        }
+
         /**
          * Ação do botão de início de leitura, com a inicialização da tela gerenciada
          * pela classe ReadActivity.
@@ -104,4 +137,89 @@ public class MainActivity extends AppCompatActivity {
             }
         });
     }
+
+    /**
+     * Rotina de carregamento inicial dos dados de apartamentos do condomínio
+     * selecionado. O carregamento só ocorre se o número de apartamentos
+     * cadastrados for nulo, o que não acontece quando o condomínio foi
+     * implantado com um BD pronto.
+     */
+    private void checkInitialData () {
+        final String homePath = getExternalFilesDir("").getPath();
+        final RateioApplication app = (RateioApplication) getApplication();
+        final GuiBackendManagerAsync dataRWManager = app.getDataRWManagerAsync();
+        final DataRWManager manager = app.getDataRWManager();
+
+        DbExecutors.addCallback(dataRWManager.getTotalApartments(),
+                new ResultCallback<Integer>() {
+            @Override
+            public void onResult(Integer test) {
+                if (test == 0) {
+                    String condName = dataRWManager.getNameCondominium();
+                    String fileCSVName = homePath + "/" + condName + "/"
+                            + condName + ".csv";
+                    startSetupAptTable(new TaskSetupAptTable(fileCSVName, manager));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                String text = "Ocorreu um erro: " + t.getMessage();
+                Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Método que agenda o carregamento inicial dos apartamentos, com avisos
+     * na tela do início, do progresso e do término do carregamento. Os
+     * carregamentos de vários condomínios compartilham os mesmos avisos.
+     * @param task a tarefa de carregamento
+     */
+    private void startSetupAptTable (TaskSetupAptTable task) {
+        Toast.makeText(getBaseContext(), "Carregando dados iniciais, aguarde...",
+                Toast.LENGTH_SHORT).show();
+        if (this.setupListener == null) {
+            this.setupListener = new JobListener<String>() {
+                @Override
+                public void onProgress(int value) {
+                    String text = "Carregando dados: " + value + " apartamentos...";
+                    Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+                }
+
+                @Override
+                public void onResult(String result) {
+                    Toast.makeText(getBaseContext(), result, Toast.LENGTH_SHORT).show();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    String text = "Ocorreu um erro: " + t.getMessage();
+                    Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+                }
+
+                @Override
+                public void onCancelled() {
+                }
+            };
+        }
+        RateioApplication app = (RateioApplication) getApplication();
+        JobHandle<String> handle = app.getJobScheduler().submit(task, this.setupListener);
+        //um carregamento do mesmo arquivo ainda em andamento é reaproveitado pelo JobScheduler
+        if (!this.setupHandles.contains(handle)) {
+            this.setupHandles.add(handle);
+        }
+    }
+
+    /**
+     * Rotina de destruição da tela. Os carregamentos continuam em segundo
+     * plano, mas deixam de avisar esta tela.
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        for (JobHandle<String> handle : this.setupHandles) {
+            handle.removeListener(this.setupListener);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package br.com.rateiocerto;
+
+import android.app.Application;
+
+import java.util.List;
+
+import br.com.rateiocerto.businiess.CondominiumRegistry;
+import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.DataRWManagerAsync;
+import br.com.rateiocerto.businiess.DatabaseRegistry;
+import br.com.rateiocerto.businiess.DbExecutors;
+import br.com.rateiocerto.businiess.tasks.JobScheduler;
+
+/**
+ * Rateio Certo
+ *
+ * RateioApplication: classe que representa a aplicação durante toda a sua execução.
+ * É responsável por manter os recursos compartilhados entre as telas, como o
+ * registro de bancos de dados, os condomínios gerenciados no aparelho, com os
+ * seus gerenciadores da camada de negócio, e o agendador de tarefas, os quais
+ * são criados uma única vez, no primeiro uso. As telas usam o gerenciador do
+ * condomínio selecionado na tela inicial.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class RateioApplication extends Application {
+
+    private DatabaseRegistry databaseRegistry;
+    private CondominiumRegistry condominiumRegistry;
+    private JobScheduler jobScheduler;
+
+    /**
+     * Rotina de criação da aplicação. Aqui é inicializado o registro de
+     * bancos de dados, sem ainda abrir nenhum deles.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        this.databaseRegistry = new DatabaseRegistry(this);
+    }
+
+    /**
+     * Rotina chamada quando o sistema pede a liberação de memória. O pedido
+     * é repassado ao registro de bancos de dados, e os logs e as métricas
+     * pendentes de cada condomínio usado são gravados, pois o processo pode
+     * ser encerrado em seguida.
+     * As métricas são gravadas na linha do BD, fora da interface gráfica.
+     * @param level nível de liberação de memória indicado pelo sistema
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        this.databaseRegistry.onTrimMemory(level);
+        synchronized (this) {
+            if (this.condominiumRegistry != null) {
+                for (DataRWManager manager : this.condominiumRegistry.getOpenManagers()) {
+                    manager.getLogger().requestFlush();
+                    if (manager.getMetrics() != null) {
+                        this.condominiumRegistry.getManagerAsync(
+                                manager.getNameCondominium()).dumpMetrics();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que retorna o registro de bancos de dados da aplicação.
+     * @return o registro de bancos de dados
+     */
+    public DatabaseRegistry getDatabaseRegistry() {
+        return this.databaseRegistry;
+    }
+
+    /**
+     * Método que retorna o registro dos condomínios gerenciados no aparelho,
+     * lidos do arquivo de configuração. É criado no primeiro acesso.
+     * @return o registro de condomínios
+     */
+    public synchronized CondominiumRegistry getCondominiumRegistry() {
+        if (this.condominiumRegistry == null) {
+            String homePath = getExternalFilesDir("").getPath();
+            this.condominiumRegistry = new CondominiumRegistry(homePath, this.databaseRegistry);
+        }
+        return this.condominiumRegistry;
+    }
+
+    /**
+     * Método que retorna os nomes dos condomínios gerenciados no aparelho.
+     * @return os nomes dos condomínios
+     */
+    public List<String> getCondominiums() {
+        return this.getCondominiumRegistry().getNames();
+    }
+
+    /**
+     * Método que seleciona o condomínio usado pelas telas. O gerenciador e o
+     * banco de dados do condomínio anterior continuam disponíveis, tornando
+     * imediata a volta a ele.
+     * @param nameCondominium nome do condomínio
+     */
+    public void selectCondominium(String nameCondominium) {
+        this.getCondominiumRegistry().select(nameCondominium);
+    }
+
+    /**
+     * Método que retorna o gerenciador da camada de negócio do condomínio
+     * selecionado, compartilhado por todas as telas.
+     * @return o gerenciador da camada de negócio
+     */
+    public DataRWManager getDataRWManager() {
+        return this.getCondominiumRegistry().getManager();
+    }
+
+    /**
+     * Método que retorna a versão não bloqueante do gerenciador da camada de
+     * negócio do condomínio selecionado, a ser usada pelas telas.
+     * @return o gerenciador assíncrono da camada de negócio
+     */
+    public DataRWManagerAsync getDataRWManagerAsync() {
+        return this.getCondominiumRegistry().getManagerAsync();
+    }
+
+    /**
+     * Método que retorna o agendador das tarefas em segundo plano, como a
+     * carga dos apartamentos e a geração das planilhas. É criado no primeiro
+     * acesso, e os retornos das tarefas são entregues na linha principal.
+     * @return o agendador de tarefas
+     */
+    public synchronized JobScheduler getJobScheduler() {
+        if (this.jobScheduler == null) {
+            this.jobScheduler = new JobScheduler(JobScheduler.DEFAULT_WORKERS,
+                    DbExecutors.mainThread());
+        }
+        return this.jobScheduler;
+    }
+}
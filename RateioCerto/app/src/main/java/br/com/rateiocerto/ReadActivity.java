@@ -9,11 +9,12 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.time.LocalDate;
-
 import br.com.rateiocerto.basics.Apartment;
-import br.com.rateiocerto.basics.ReadData;
-import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.CompletionTracker;
+import br.com.rateiocerto.businiess.DbExecutors;
+import br.com.rateiocerto.businiess.ReadSession;
+import br.com.rateiocerto.interfaces.GuiBackendManagerAsync;
+import br.com.rateiocerto.interfaces.ResultCallback;
 
 /**
  * Rateio Certo
@@ -21,12 +22,23 @@ import br.com.rateiocerto.businiess.DataRWManager;
  * ReadActivity: classe que gerencia os eventos da tela de leitura do app.
  * Aqui contém as rotinas as rotinas de inserção de novas leituras, além
  * de algumas verificações referentes aos apartamentos cadastrados.
+ * Os apartamentos e as leituras do mês são carregados uma única vez numa
+ * sessão de leitura (ReadSession), de modo que a navegação e o preenchimento
+ * dos valores são feitos a partir da memória. As novas leituras são gravadas
+ * no BD de forma assíncrona.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
 public class ReadActivity extends AppCompatActivity {
 
-    DataRWManager dataRWManager;
+    GuiBackendManagerAsync dataRWManager;
+
+    //sessão de leitura, com os apartamentos e leituras do mês em memória
+    private ReadSession session;
+
+    private EditText edBlock;
+    private EditText edApt;
+    private EditText edValue;
 
     public ReadActivity () {
         super ();
@@ -43,15 +55,14 @@ public class ReadActivity extends AppCompatActivity {
 
         setContentView(R.layout.activity_read);
 
-        String homePath = getExternalFilesDir("").getPath();
-        this.dataRWManager = new DataRWManager(homePath, getApplicationContext());
+        this.dataRWManager = ((RateioApplication) getApplication()).getDataRWManagerAsync();
 
         /*
         //Rotina de teste, lembrar de retirar
 
-        this.dataRWManager.db.ReadDataDao().clearAllReadData();
+        this.dataRWManager.getDatabase().ReadDataDao().clearAllReadData();
 
-        List<Apartment> list = this.dataRWManager.db.ApartmentDao().listAllApartments ();
+        List<Apartment> list = this.dataRWManager.getDatabase().ApartmentDao().listAllApartments ();
 
         for (int i = 1; i <= 256; i++) {
             int id = list.get(i-1).getId();
@@ -69,22 +80,22 @@ public class ReadActivity extends AppCompatActivity {
         //Fim de rotina de teste
         */
 
-        //Carregamento do primeiro apartamento cadastrado.
-        final Apartment firstApt = this.dataRWManager.getFirstApartment();
-
-        final EditText edBlock = findViewById(R.id.ed_txt_block);
-        final EditText edApt = findViewById(R.id.ed_txt_read_apt_num);
-        final EditText edValue = findViewById(R.id.ed_txt_read_in_read_vol);
-
-        //Carregamento das primeiras informações da tela, com o apartamento
-        // e seu valor de leitura (caso já exista) do mês.
-        edBlock.setText(firstApt.getBlock());
-        edApt.setText(firstApt.getFormatedNum());
-        ReadData firstRead = this.dataRWManager.getCurrentReadDataById(firstApt.getId());
-        if (firstRead != null) {
-            String firstReadApt = "" + firstRead.getReadValue();
-            edValue.setText(firstReadApt);
-        }
+        this.edBlock = findViewById(R.id.ed_txt_block);
+        this.edApt = findViewById(R.id.ed_txt_read_apt_num);
+        this.edValue = findViewById(R.id.ed_txt_read_in_read_vol);
+
+        //Carregamento da sessão de leitura e das primeiras informações da tela,
+        // com o primeiro apartamento e seu valor de leitura (caso já exista) do mês.
+        DbExecutors.addCallback(this.dataRWManager.loadReadSession(),
+                new ReadCallback<ReadSession>() {
+            @Override
+            public void onResult(ReadSession result) {
+                session = result;
+                if (session.size() > 0) {
+                    showApartment(0);
+                }
+            }
+        });
 
         //Inicio das rotinas de acoes para os elementos de tela
 
@@ -96,18 +107,17 @@ public class ReadActivity extends AppCompatActivity {
          * no mês. Caso essa leitura exista, a mesma é atualizada no campo de leitura.
          * Caso não, esse campo será preenchido com zero.
          */
-        edApt.setOnFocusChangeListener(new View.OnFocusChangeListener() {
+        this.edApt.setOnFocusChangeListener(new View.OnFocusChangeListener() {
             @Override
             public void onFocusChange(View v, boolean hasFocus) {
                 String currBlock = String.valueOf(edBlock.getText());
                 String strNum = String.valueOf(edApt.getText());
-                if (!strNum.contentEquals("")) {
+                if (session != null && !strNum.contentEquals("")) {
                     int currNum = Integer.parseInt(strNum);
-                    Apartment currApt = dataRWManager.getApartment(currBlock, currNum);
-                    if (currApt != null) {
-                        ReadData r = dataRWManager.getCurrentReadDataById(currApt.getId());
-                        if (r != null) {
-                            edValue.setText("" + r.getReadValue());
+                    int index = session.indexOf(currBlock, currNum);
+                    if (index != ReadSession.NOT_FOUND) {
+                        if (session.hasRead(index)) {
+                            edValue.setText("" + session.getReadValue(index));
                         }
                         else {
                             String contentText = String.valueOf(edValue.getText());
@@ -130,7 +140,7 @@ public class ReadActivity extends AppCompatActivity {
          * Caso o texto atual seja uma string vazia, quando ocorre o toque nesse
          * campo, ocorre o preenchimento inicial dessa área com zero.
          */
-        edValue.setOnClickListener(new View.OnClickListener() {
+        this.edValue.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 String contentText = String.valueOf(edValue.getText());
@@ -147,150 +157,161 @@ public class ReadActivity extends AppCompatActivity {
 
         /**
          * Ação do botão "avançar" da tela de leitura.
-         * Nele temos a leitura dos valores do bloco, número do apartamento e valor
-         * de leitura inserido no campo correspondente.
-         * Inicialmente há um conjunto de verificações dos valores inseridos na
-         * interface, e busca pelas informações do apartamento.
-         * Quando esses dados são validados, inicia-se o cadastro dessa leitura.
-         * Após o cadastro, há uma verificação para carregar os dados do próximo
-         * apartamento, a fim de preparar a próxima leitura na tela.
+         * A leitura do apartamento apresentado é cadastrada e, em seguida,
+         * são carregados os dados do próximo apartamento, a fim de preparar
+         * a próxima leitura na tela.
          */
         btnReadNext.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                String aptBlock = String.valueOf(edBlock.getText());
-                String valueTest = String.valueOf(edApt.getText());
-                int aptNum = 0;
-                int readValue = 0;
-                if (!valueTest.contentEquals("")) {
-                    aptNum = Integer.parseInt(valueTest);
-
-                }
-                valueTest = String.valueOf(edValue.getText());
-                if (!valueTest.contentEquals("")) {
-                    readValue = Integer.parseInt(valueTest);
-
-                }
-                Apartment aptTarget = dataRWManager.getApartment(aptBlock, aptNum);
-
-                if (aptTarget != null) {
-                    String dateString = LocalDate.now().toString();
-                    ReadData newRead = new ReadData(aptTarget.getId(),
-                            dateString, readValue);
-                    dataRWManager.insertUpdateReadData(newRead);
-
-                    if (!dataRWManager.isLastApartment(aptBlock, aptNum)) {
-                        aptTarget = dataRWManager.getNextApartment(aptBlock, aptNum);
-                        edBlock.setText(aptTarget.getBlock());
-                        edApt.setText(aptTarget.getFormatedNum());
-                        newRead = dataRWManager.getCurrentReadDataById (aptTarget.getId());
-
-                        if (newRead != null) {
-                            edValue.setText(""+newRead.getReadValue());
-
-                        }
-                        else {
-                            edValue.setText ("0");
-
-                        }
-                    }
-                }
-                else {
-                    String text = "Bloco ou número de apartamento inexistente.";
-                    Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
-
-                }
+                saveReadAndMove(true);
             }
         });
 
         /**
          * Ação do botão "anterior" da tela de leitura.
-         * Nele temos a leitura dos valores do bloco, número do apartamento e valor
-         * de leitura inserido no campo correspondente.
-         * Inicialmente há um conjunto de verificações dos valores inseridos na
-         * interface, e busca pelas informações do apartamento.
-         * Quando esses dados são validados, inicia-se o cadastro dessa leitura.
-         * Após o cadastro, há uma verificação para carregar os dados do
-         * apartamento anterior, a fim de preparar a próxima leitura na tela.
+         * A leitura do apartamento apresentado é cadastrada e, em seguida,
+         * são carregados os dados do apartamento anterior, a fim de preparar
+         * a próxima leitura na tela.
          */
         btnReadPrev.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                String aptBlock = String.valueOf(edBlock.getText());
-                String valueTest = String.valueOf(edApt.getText());
-                int aptNum = 0;
-                int readValue = 0;
-                if (!valueTest.contentEquals("")) {
-                    aptNum = Integer.parseInt(valueTest);
-                }
-                valueTest = String.valueOf(edValue.getText());
-                if (!valueTest.contentEquals("")) {
-                    readValue = Integer.parseInt(valueTest);
-                }
-                Apartment aptTarget = dataRWManager.getApartment(aptBlock, aptNum);
-
-                if (aptTarget != null) {
-                    String dateString = LocalDate.now().toString();
-                    ReadData newRead = new ReadData(aptTarget.getId(),
-                            dateString, readValue);
-                    dataRWManager.insertUpdateReadData(newRead);
-                    boolean isFirstApt = (aptBlock.contentEquals(firstApt.getBlock()) &&
-                            aptNum == firstApt.getNum());
-
-                    if (!isFirstApt) {
-                        aptTarget = dataRWManager.getPreviousApartment(aptBlock, aptNum);
-                        edBlock.setText(aptTarget.getBlock());
-                        edApt.setText(aptTarget.getFormatedNum());
-                        newRead = dataRWManager.getCurrentReadDataById (aptTarget.getId());
-
-                        if (newRead != null) {
-                            edValue.setText(""+newRead.getReadValue());
-
-                        }
-                        else {
-                            edValue.setText ("0");
-
-                        }
-                    }
-                }
-                else {
-                    String text = "Bloco ou número de apartamento inexistente.";
-                    Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
-
-                }
+                saveReadAndMove(false);
             }
         });
 
         /**
          * Ação do botão "finalizar" da tela de leitura.
-         * Há uma verificação da quantidade de leituras cadastradas no
-         * mês. Caso essa quantidade seja inferior à quantidade de
-         * apartamentos, uma mensagem de "leituras insuficientes"
-         * aparece na tela. Caso contrário, aparecerá a tela de
-         * geração da planilha.
+         * Há uma verificação, a partir da sessão de leitura, se todos os
+         * apartamentos possuem leitura no mês. Caso contrário, uma mensagem
+         * com a quantidade de apartamentos sem leitura aparece na tela, e o
+         * próximo apartamento sem leitura é carregado. Com a leitura completa,
+         * aparecerá a tela de geração da planilha.
          */
         btnReadFinish.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                String dateString = LocalDate.now().toString();
-                int currYear = Integer.parseInt(dateString.substring(0,4));
-                int currMonth = Integer.parseInt(dateString.substring(5,7));
-                int totalCurrReads = dataRWManager.getTotalYearMonthReads
-                        (currYear, currMonth);
-                int totalApts = dataRWManager.getTotalApartments();
-
-                if (totalCurrReads == totalApts)  {
+                if (session == null) {
+                    showLoadingMessage();
+                    return;
+                }
+                CompletionTracker completion = session.getCompletion();
+                if (completion.isComplete())  {
                     Intent intent = new Intent(getBaseContext(), FinishActivity.class);
                     startActivity(intent);
 
                 }
                 else {
-                    String text = "Um ou mais apartamentos \n" +
-                            "estão sem leitura.";
+                    int current = session.indexOf(String.valueOf(edBlock.getText()),
+                            parseNum(String.valueOf(edApt.getText())));
+                    int target = completion.nextUnread(current + 1);
+                    showApartment(target);
+                    String text = completion.getRemaining() + " apartamento(s) \n" +
+                            "sem leitura. Próximo: bloco " +
+                            session.getApartment(target).getBlock() + ", apto " +
+                            session.getApartment(target).getFormatedNum() + ".";
                     Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
 
                 }
             }
         });
     }
+
+    /**
+     * Método que converte o número do apartamento digitado na tela.
+     * @param valueTest texto do campo de número do apartamento
+     * @return o número do apartamento, ou zero caso o campo esteja vazio
+     */
+    private int parseNum (String valueTest) {
+        int resp = 0;
+        if (!valueTest.contentEquals("")) {
+            resp = Integer.parseInt(valueTest);
+
+        }
+        return resp;
+    }
+
+    /**
+     * Método que apresenta na tela o bloco e o número do apartamento da
+     * posição indicada, além do seu valor de leitura do mês, caso exista.
+     * @param index posição do apartamento na sessão de leitura
+     */
+    private void showApartment (int index) {
+        Apartment apt = this.session.getApartment(index);
+        this.edBlock.setText(apt.getBlock());
+        this.edApt.setText(apt.getFormatedNum());
+        if (this.session.hasRead(index)) {
+            this.edValue.setText("" + this.session.getReadValue(index));
+
+        }
+        else {
+            this.edValue.setText("0");
+
+        }
+    }
+
+    /**
+     * Método que cadastra a leitura apresentada na tela e carrega o próximo
+     * apartamento ou o anterior. Inicialmente os valores inseridos na interface
+     * são verificados, e o apartamento é buscado na sessão. Quando esses dados
+     * são validados, a leitura é cadastrada. Caso não exista apartamento
+     * seguinte (ou anterior), a tela permanece no atual.
+     * @param forward true para carregar o próximo apartamento, false para o anterior
+     */
+    private void saveReadAndMove (boolean forward) {
+        if (this.session == null) {
+            this.showLoadingMessage();
+            return;
+        }
+        String aptBlock = String.valueOf(this.edBlock.getText());
+        int aptNum = this.parseNum(String.valueOf(this.edApt.getText()));
+        int readValue = 0;
+        String valueTest = String.valueOf(this.edValue.getText());
+        if (!valueTest.contentEquals("")) {
+            readValue = Integer.parseInt(valueTest);
+
+        }
+        int index = this.session.indexOf(aptBlock, aptNum);
+
+        if (index != ReadSession.NOT_FOUND) {
+            DbExecutors.addCallback(this.session.saveRead(index, readValue),
+                    new ReadCallback<Void>() {
+                @Override
+                public void onResult(Void result) {
+                }
+            });
+
+            int target = forward ? this.session.next(index) : this.session.previous(index);
+            if (target != ReadSession.NOT_FOUND) {
+                this.showApartment(target);
+            }
+        }
+        else {
+            String text = "Bloco ou número de apartamento inexistente.";
+            Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+
+        }
+    }
+
+    /**
+     * Método que avisa na tela que a sessão de leitura ainda está sendo carregada.
+     */
+    private void showLoadingMessage () {
+        String text = "Carregando apartamentos, aguarde...";
+        Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * ReadCallback: retorno das operações assíncronas da tela de leitura.
+     * Em caso de erro, uma mensagem é apresentada na tela.
+     */
+    private abstract class ReadCallback<T> implements ResultCallback<T> {
+
+        @Override
+        public void onError(Throwable t) {
+            String text = "Ocorreu um erro: " + t.getMessage();
+            Toast.makeText(getBaseContext(), text, Toast.LENGTH_SHORT).show();
+        }
+    }
 }
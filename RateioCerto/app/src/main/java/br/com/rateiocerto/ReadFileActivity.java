@@ -7,6 +7,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.io.File;
+import java.io.FilenameFilter;
 
 /**
  * Rateio Certo
@@ -27,7 +28,8 @@ public class ReadFileActivity extends AppCompatActivity {
 
     /**
      * Método de criação da tela de gerenciamento das planilhas. Aqui é definida qual
-     * pasta estão as planilhas a serem listadas. Também são inicializados e configurados
+     * pasta estão as planilhas a serem listadas, sendo mostradas apenas as do
+     * condomínio selecionado. Também são inicializados e configurados
      * todos os elementos de tela responsáveis por essa listagem.
      * @param savedInstanceState
      */
@@ -42,7 +44,14 @@ public class ReadFileActivity extends AppCompatActivity {
 
         setTitle(R.string.title_save_sheet);
         File dir = new File(filePath);
-        String [] list = dir.list();
+        final String prefix = ((RateioApplication) getApplication())
+                .getDataRWManager().getNameCondominium() + "_";
+        String [] list = dir.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                return name.startsWith(prefix);
+            }
+        });
 
         this.recyclerView.setHasFixedSize(true);
 
@@ -3,6 +3,7 @@ package br.com.rateiocerto.basics;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
@@ -16,11 +17,13 @@ import androidx.room.PrimaryKey;
  * O número identificador é gerado automaticamente para registro no BD.
  * block: string que armazena o nome ou código do bloco o qual pertence o apartamento.
  * num: inteiro que representa o número do apartamento.
+ * A tabela é indexada por bloco e número, que é a ordem de navegação entre
+ * os apartamentos.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
 
-@Entity
+@Entity(indices = {@Index(value = {"bloco", "numero"})})
 public class Apartment {
 
 	@PrimaryKey (autoGenerate = true)
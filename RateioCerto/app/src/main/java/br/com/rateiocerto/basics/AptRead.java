@@ -2,6 +2,8 @@ package br.com.rateiocerto.basics;
 
 import androidx.room.DatabaseView;
 
+import br.com.rateiocerto.engine.RateioSchema;
+
 /**
  * Rateio Certo
  *
@@ -9,10 +11,7 @@ import androidx.room.DatabaseView;
  * das informações dos atributos pertencentes às tabelas Apartments e ReadData para
  * a classe AptRead, a qual representa cada linha dessa view.
  */
-@DatabaseView ("SELECT Apartment.id_apt, Apartment.bloco, " +
-        "Apartment.numero, ReadData.data_leitura AS readDataDateRead, " +
-        "ReadData.valor_leitura AS readDataValueRead FROM Apartment INNER JOIN " +
-        "ReadData ON (Apartment.id_apt = ReadData.id_apt) ORDER BY Apartment.id_apt ASC")
+@DatabaseView (AptRead.VIEW_QUERY)
 
 /**
  * Rateio Certo
@@ -26,15 +25,21 @@ import androidx.room.DatabaseView;
  * numero: inteiro que representa o número do apartamento.
  * readDataDateRead: string contendo a data de leitura da tabela ReadData
  * readDataValueRead: inteiro contendo o valor de leitura da tabela
+ * readDataPeriod: inteiro contendo o período (ano * 100 + mês) da leitura
  *
  * @Author: Severino José (biujose@gmail.com)
  */
 public class AptRead {
+
+    //consulta da view, também usada na migração do BD para recriá-la
+    public static final String VIEW_QUERY = RateioSchema.APT_READ_VIEW_QUERY;
+
     public int id_apt;
     public String bloco;
     public int numero;
     public String readDataDateRead;
     public long readDataValueRead;
+    public int readDataPeriod;
 
     /**
      * Método que fornece o identificador do Apartamento.
@@ -76,6 +81,14 @@ public class AptRead {
         return readDataValueRead;
     }
 
+    /**
+     * Método que fornece o período da leitura, no formato ano * 100 + mês.
+     * @return o período da leitura
+     */
+    public int getReadDataPeriod() {
+        return readDataPeriod;
+    }
+
     /**
      * Método que fornece o número do Apartamento em formato texto.
      * O formato depende da quantidade de algarismos desejada pelo cliente.
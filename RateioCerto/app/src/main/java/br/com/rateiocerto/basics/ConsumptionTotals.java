@@ -0,0 +1,34 @@
+package br.com.rateiocerto.basics;
+
+/**
+ * Rateio Certo
+ *
+ * ConsumptionTotals: classe que representa o resultado da consulta de totais
+ * da planilha de consumo, entre dois períodos de leitura. Considera apenas os
+ * apartamentos que possuem leitura nos dois períodos.
+ * Os atributos de ConsumptionTotals são:
+ * pairedApts: quantidade de apartamentos com leitura nos dois períodos.
+ * totalVolume: soma dos consumos desses apartamentos no intervalo.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class ConsumptionTotals {
+    public int pairedApts;
+    public long totalVolume;
+
+    /**
+     * Método que fornece a quantidade de apartamentos com leitura nos dois períodos.
+     * @return a quantidade de apartamentos
+     */
+    public int getPairedApts() {
+        return pairedApts;
+    }
+
+    /**
+     * Método que fornece o volume total consumido no intervalo.
+     * @return a soma dos consumos
+     */
+    public long getTotalVolume() {
+        return totalVolume;
+    }
+}
@@ -0,0 +1,137 @@
+package br.com.rateiocerto.basics;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+
+/**
+ * Rateio Certo
+ *
+ * PeriodSummary: Classe que representa os totais das leituras de um período.
+ * É usada para registrar uma tabela de mesmo nome dentro do Banco de dados, a qual
+ * é mantida pelo próprio BD, através de gatilhos (triggers) sobre a tabela ReadData.
+ * Assim, os totais de um período são obtidos pela chave primária, sem percorrer
+ * o histórico de leituras.
+ * Os atributos de um PeriodSummary são:
+ * period: chave numérica do período (ano * 100 + mês).
+ * totalReads: quantidade de leituras cadastradas no período.
+ * sumReads: soma dos valores de leitura do período.
+ * minRead: menor valor de leitura do período, ou null caso não haja leituras.
+ * maxRead: maior valor de leitura do período, ou null caso não haja leituras.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@Entity
+public class PeriodSummary {
+
+	@PrimaryKey
+	@ColumnInfo (name = "periodo")
+	int period;
+
+	@ColumnInfo (name = "total_leituras")
+	int totalReads;
+
+	@ColumnInfo (name = "soma_leituras")
+	long sumReads;
+
+	@ColumnInfo (name = "min_leitura")
+	Integer minRead;
+
+	@ColumnInfo (name = "max_leitura")
+	Integer maxRead;
+
+	/**
+	 * Método que fornece o período dos totais, no formato ano * 100 + mês.
+	 * @return inteiro do período
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Método que permite alterar o período dos totais.
+	 * @param period o novo período (ano * 100 + mês)
+	 */
+	public void setPeriod(int period) {
+		this.period = period;
+	}
+
+	/**
+	 * Método que fornece a quantidade de leituras do período.
+	 * @return a quantidade de leituras
+	 */
+	public int getTotalReads() {
+		return totalReads;
+	}
+
+	/**
+	 * Método que permite alterar a quantidade de leituras do período.
+	 * @param totalReads a nova quantidade de leituras
+	 */
+	public void setTotalReads(int totalReads) {
+		this.totalReads = totalReads;
+	}
+
+	/**
+	 * Método que fornece a soma dos valores de leitura do período.
+	 * @return a soma dos valores de leitura
+	 */
+	public long getSumReads() {
+		return sumReads;
+	}
+
+	/**
+	 * Método que permite alterar a soma dos valores de leitura do período.
+	 * @param sumReads a nova soma dos valores de leitura
+	 */
+	public void setSumReads(long sumReads) {
+		this.sumReads = sumReads;
+	}
+
+	/**
+	 * Método que fornece o menor valor de leitura do período.
+	 * @return o menor valor de leitura, ou null caso não haja leituras
+	 */
+	public Integer getMinRead() {
+		return minRead;
+	}
+
+	/**
+	 * Método que permite alterar o menor valor de leitura do período.
+	 * @param minRead o novo menor valor de leitura
+	 */
+	public void setMinRead(Integer minRead) {
+		this.minRead = minRead;
+	}
+
+	/**
+	 * Método que fornece o maior valor de leitura do período.
+	 * @return o maior valor de leitura, ou null caso não haja leituras
+	 */
+	public Integer getMaxRead() {
+		return maxRead;
+	}
+
+	/**
+	 * Método que permite alterar o maior valor de leitura do período.
+	 * @param maxRead o novo maior valor de leitura
+	 */
+	public void setMaxRead(Integer maxRead) {
+		this.maxRead = maxRead;
+	}
+
+	/**
+	 * Método que fornece uma cópia dos totais do período.
+	 * @return a cópia dos totais
+	 */
+	public PeriodSummary copy () {
+		PeriodSummary resp = new PeriodSummary();
+		resp.period = this.period;
+		resp.totalReads = this.totalReads;
+		resp.sumReads = this.sumReads;
+		resp.minRead = this.minRead;
+		resp.maxRead = this.maxRead;
+		return resp;
+	}
+}
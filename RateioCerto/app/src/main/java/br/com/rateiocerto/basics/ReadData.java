@@ -3,8 +3,11 @@ package br.com.rateiocerto.basics;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import java.time.LocalDate;
+
 
 /**
  * Rateio Certo
@@ -17,10 +20,15 @@ import androidx.room.PrimaryKey;
  * idApt: identificador inteiro do apartamento vinculado e previamente cadastrado.
  * dateRead: string da data de leitura realizada.
  * valueRead: número que representa o valor de uma leitura realizada.
+ * period: chave numérica do período (ano * 100 + mês) da leitura, derivada de dateRead.
+ * É indexada junto ao id do apartamento, permitindo buscas por período sem
+ * a conversão da data em texto de cada linha. O par (idApt, period) é único,
+ * ou seja, cada apartamento possui no máximo uma leitura por período.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
-@Entity
+@Entity (indices = {@Index (value = {"id_apt", "periodo"}, unique = true),
+		@Index (value = {"periodo"})})
 public class ReadData {
 
 	@PrimaryKey (autoGenerate = true)
@@ -39,6 +47,9 @@ public class ReadData {
 	@ColumnInfo (name = "valor_leitura")
 	int readValue;
 
+	@ColumnInfo (name = "periodo", defaultValue = "0")
+	int period;
+
 	/**
 	 * Constrututor padrão da classe, quando não há informações prévias da leitura.
 	 */
@@ -47,6 +58,7 @@ public class ReadData {
 		this.idApt = 0;
 		this.dateRead = "2019-01-01";
 		this.readValue = 0;
+		this.period = ReadData.periodOf(this.dateRead);
 	}
 
 	/**
@@ -61,6 +73,7 @@ public class ReadData {
 		this.idApt = idApt;
 		this.dateRead = dateRead;
 		this.readValue = readValue;
+		this.period = ReadData.periodOf(dateRead);
 	}
 
 	/**
@@ -79,6 +92,7 @@ public class ReadData {
 		this.idApt = idApt;
 		this.dateRead = dateRead;
 		this.readValue = readValue;
+		this.period = ReadData.periodOf(dateRead);
 	}
 
 	/**
@@ -123,10 +137,12 @@ public class ReadData {
 
 	/**
 	 * Método que permite alterar a data de realização da leitura.
+	 * O período da leitura é recalculado a partir da nova data.
 	 * @param dateRead o nova data a ser carregada
 	 */
 	public void setDateRead(String dateRead) {
 		this.dateRead = dateRead;
+		this.period = ReadData.periodOf(dateRead);
 	}
 
 	/**
@@ -144,4 +160,69 @@ public class ReadData {
 	public void setReadValue(int readValue) {
 		this.readValue = readValue;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Método que fornece o período da leitura, no formato ano * 100 + mês.
+	 * @return inteiro do período da leitura
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Método que permite alterar o período da leitura.
+	 * @param period o novo período (ano * 100 + mês) a ser carregado
+	 */
+	public void setPeriod(int period) {
+		this.period = period;
+	}
+
+	/**
+	 * Método que fornece uma cópia da leitura, com o mesmo período.
+	 * @return a cópia da leitura
+	 */
+	public ReadData copy () {
+		ReadData resp = new ReadData(this.idRead, this.idApt, this.dateRead, this.readValue);
+		resp.period = this.period;
+		return resp;
+	}
+
+	/**
+	 * Método que calcula a chave de período a partir do ano e mês.
+	 * @param year ano do período
+	 * @param month mês do período
+	 * @return o período no formato ano * 100 + mês
+	 */
+	public static int periodOf (int year, int month) {
+		return year * 100 + month;
+	}
+
+	/**
+	 * Método que calcula a chave de período a partir de uma data de leitura,
+	 * no formato AAAA-MM-DD. Caso a data seja inválida, retorna zero.
+	 * @param dateRead string da data de leitura
+	 * @return o período no formato ano * 100 + mês
+	 */
+	public static int periodOf (String dateRead) {
+		int resp = 0;
+		if (dateRead != null && dateRead.length() >= 7) {
+			try {
+				resp = ReadData.periodOf(Integer.parseInt(dateRead.substring(0,4)),
+						Integer.parseInt(dateRead.substring(5,7)));
+			}
+			catch (NumberFormatException e) {
+				resp = 0;
+			}
+		}
+		return resp;
+	}
+
+	/**
+	 * Método que retorna a chave do período atual, de acordo com a data do sistema.
+	 * @return o período atual no formato ano * 100 + mês
+	 */
+	public static int currentPeriod () {
+		LocalDate now = LocalDate.now();
+		return ReadData.periodOf(now.getYear(), now.getMonthValue());
+	}
+}
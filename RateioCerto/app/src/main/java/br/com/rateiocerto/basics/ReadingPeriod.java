@@ -0,0 +1,150 @@
+package br.com.rateiocerto.basics;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import br.com.rateiocerto.engine.RateioSchema;
+
+
+/**
+ * Rateio Certo
+ *
+ * ReadingPeriod: Classe que representa um período de leitura do condomínio.
+ * É usada para registrar uma tabela de mesmo nome dentro do Banco de dados.
+ * Um período é aberto automaticamente pelo BD quando a sua primeira leitura é
+ * cadastrada, e fechado explicitamente quando a planilha do período é gerada.
+ * A planilha sempre compara o período fechado com o último período fechado
+ * anterior a ele.
+ * Os atributos de um ReadingPeriod são:
+ * period: chave numérica do período (ano * 100 + mês).
+ * status: situação do período, aberto (STATUS_OPEN) ou fechado (STATUS_CLOSED).
+ * closedAt: data e hora do fechamento do período, ou null caso esteja aberto.
+ * totalReads: quantidade de leituras do período no momento do fechamento.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@Entity (indices = {@Index (value = {"status", "periodo"})})
+public class ReadingPeriod {
+
+	//situação de um período ainda em leitura
+	public static final int STATUS_OPEN = RateioSchema.PERIOD_OPEN;
+
+	//situação de um período com leitura concluída
+	public static final int STATUS_CLOSED = RateioSchema.PERIOD_CLOSED;
+
+	@PrimaryKey
+	@ColumnInfo (name = "periodo")
+	int period;
+
+	@ColumnInfo (name = "status")
+	int status;
+
+	@ColumnInfo (name = "fechado_em")
+	String closedAt;
+
+	@ColumnInfo (name = "total_leituras")
+	int totalReads;
+
+	/**
+	 * Método que fornece o período, no formato ano * 100 + mês.
+	 * @return inteiro do período
+	 */
+	public int getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Método que permite alterar o período.
+	 * @param period o novo período (ano * 100 + mês)
+	 */
+	public void setPeriod(int period) {
+		this.period = period;
+	}
+
+	/**
+	 * Método que fornece a situação do período.
+	 * @return STATUS_OPEN ou STATUS_CLOSED
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Método que permite alterar a situação do período.
+	 * @param status a nova situação, STATUS_OPEN ou STATUS_CLOSED
+	 */
+	public void setStatus(int status) {
+		this.status = status;
+	}
+
+	/**
+	 * Método que verifica se o período está fechado.
+	 * @return true caso o período esteja fechado. Caso contrário, false
+	 */
+	public boolean isClosed() {
+		return status == ReadingPeriod.STATUS_CLOSED;
+	}
+
+	/**
+	 * Método que fornece a data e hora do fechamento do período.
+	 * @return string da data e hora do fechamento, ou null caso esteja aberto
+	 */
+	public String getClosedAt() {
+		return closedAt;
+	}
+
+	/**
+	 * Método que permite alterar a data e hora do fechamento do período.
+	 * @param closedAt string da data e hora do fechamento
+	 */
+	public void setClosedAt(String closedAt) {
+		this.closedAt = closedAt;
+	}
+
+	/**
+	 * Método que fornece a quantidade de leituras do período no fechamento.
+	 * @return a quantidade de leituras
+	 */
+	public int getTotalReads() {
+		return totalReads;
+	}
+
+	/**
+	 * Método que permite alterar a quantidade de leituras do período.
+	 * @param totalReads a nova quantidade de leituras
+	 */
+	public void setTotalReads(int totalReads) {
+		this.totalReads = totalReads;
+	}
+
+	/**
+	 * Método que fornece o ano do período.
+	 * @return o ano do período
+	 */
+	public int getYear() {
+		return period / 100;
+	}
+
+	/**
+	 * Método que fornece o mês do período.
+	 * @return o mês do período
+	 */
+	public int getMonth() {
+		return period % 100;
+	}
+
+	/**
+	 * Método que fornece uma cópia do período.
+	 * @return a cópia do período
+	 */
+	public ReadingPeriod copy () {
+		ReadingPeriod resp = new ReadingPeriod();
+		resp.period = this.period;
+		resp.status = this.status;
+		resp.closedAt = this.closedAt;
+		resp.totalReads = this.totalReads;
+		return resp;
+	}
+}
@@ -0,0 +1,180 @@
+package br.com.rateiocerto.businiess;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.engine.AptCsvLine;
+
+/**
+ * Rateio Certo
+ *
+ * AptCsvImporter: classe que realiza o carregamento dos apartamentos de um
+ * condomínio a partir de um arquivo CSV, cujas linhas estão no formato
+ * "bloco,numero". O arquivo é lido em blocos de linhas (chunks), e cada bloco
+ * é inserido no BD de uma só vez, dentro de uma única transação.
+ * Linhas mal formatadas não interrompem o carregamento: são contabilizadas
+ * e informadas ao ouvinte, e a leitura segue para a próxima linha.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class AptCsvImporter {
+
+    //quantidade padrão de apartamentos inseridos por transação
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * ImportListener: interface que recebe as notificações do carregamento,
+     * como o progresso a cada bloco inserido e os erros de cada linha.
+     */
+    public interface ImportListener {
+
+        /**
+         * Método chamado após a inserção de cada bloco de apartamentos.
+         * @param linesRead quantidade de linhas lidas até o momento
+         * @param aptsInserted quantidade de apartamentos inseridos até o momento
+         */
+        void onProgress (int linesRead, int aptsInserted);
+
+        /**
+         * Método chamado quando uma linha do arquivo não pode ser convertida
+         * em apartamento.
+         * @param lineNumber número da linha no arquivo, iniciando em 1
+         * @param line conteúdo da linha
+         * @param reason descrição do erro encontrado
+         */
+        void onLineError (int lineNumber, String line, String reason);
+    }
+
+    private DatabaseRateio db;
+    private int chunkSize;
+    private int linesRead;
+    private int aptsInserted;
+    private int lineErrors;
+
+    /**
+     * Construtor da classe, com o tamanho padrão de bloco.
+     * @param db referência do banco de dados do condomínio
+     */
+    public AptCsvImporter (DatabaseRateio db) {
+        this(db, AptCsvImporter.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Construtor da classe.
+     * @param db referência do banco de dados do condomínio
+     * @param chunkSize quantidade de apartamentos inseridos por transação
+     */
+    public AptCsvImporter (DatabaseRateio db, int chunkSize) {
+        this.db = db;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    /**
+     * Método que realiza o carregamento do arquivo de apartamentos. As linhas
+     * são lidas em sequência e acumuladas até completar um bloco, o qual é
+     * então gravado numa transação. Linhas vazias são ignoradas.
+     * @param filePath caminho do arquivo CSV de apartamentos
+     * @param listener ouvinte do progresso e dos erros, podendo ser null
+     * @return a quantidade de apartamentos inseridos
+     * @throws IOException erro retornado caso haja um problema na leitura do arquivo
+     */
+    public int importFile (String filePath, ImportListener listener) throws IOException {
+        this.linesRead = 0;
+        this.aptsInserted = 0;
+        this.lineErrors = 0;
+        List<Apartment> chunk = new ArrayList<>(this.chunkSize);
+
+        BufferedReader bf = new BufferedReader(new FileReader(filePath));
+        try {
+            String lineData = bf.readLine();
+            while (lineData != null) {
+                this.linesRead++;
+                if (!lineData.trim().isEmpty()) {
+                    try {
+                        chunk.add(AptCsvImporter.parseLine(lineData));
+                    }
+                    catch (IllegalArgumentException e) {
+                        this.lineErrors++;
+                        if (listener != null) {
+                            listener.onLineError(this.linesRead, lineData, e.getMessage());
+                        }
+                    }
+                }
+                if (chunk.size() >= this.chunkSize) {
+                    this.insertChunk(chunk, listener);
+                }
+                lineData = bf.readLine();
+            }
+            if (!chunk.isEmpty()) {
+                this.insertChunk(chunk, listener);
+            }
+        }
+        finally {
+            bf.close();
+        }
+        return this.aptsInserted;
+    }
+
+    /**
+     * Método que grava um bloco de apartamentos numa única transação, e
+     * esvazia a lista para o próximo bloco.
+     * @param chunk lista de apartamentos a ser gravada
+     * @param listener ouvinte do progresso, podendo ser null
+     */
+    private void insertChunk (final List<Apartment> chunk, ImportListener listener) {
+        Tracer.Span span = Tracer.begin("import", "insertChunk");
+        this.db.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                db.ApartmentDao().insertAptList(chunk);
+            }
+        });
+        span.arg("rows", chunk.size()).end();
+        this.aptsInserted += chunk.size();
+        chunk.clear();
+        if (listener != null) {
+            listener.onProgress(this.linesRead, this.aptsInserted);
+        }
+    }
+
+    /**
+     * Método que converte uma linha do arquivo, no formato "bloco,numero",
+     * em um novo apartamento. A conversão é feita pelo AptCsvLine, do motor
+     * de rateio.
+     * @param lineData linha do arquivo
+     * @return o apartamento correspondente à linha
+     * @throws IllegalArgumentException caso a linha não esteja no formato esperado
+     */
+    public static Apartment parseLine (String lineData) {
+        AptCsvLine line = AptCsvLine.parse(lineData);
+        return new Apartment(line.getBlock(), line.getNum());
+    }
+
+    /**
+     * Método que retorna a quantidade de linhas lidas no último carregamento.
+     * @return a quantidade de linhas lidas
+     */
+    public int getLinesRead () {
+        return this.linesRead;
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos inseridos no último carregamento.
+     * @return a quantidade de apartamentos inseridos
+     */
+    public int getAptsInserted () {
+        return this.aptsInserted;
+    }
+
+    /**
+     * Método que retorna a quantidade de linhas com erro no último carregamento.
+     * @return a quantidade de linhas com erro
+     */
+    public int getLineErrors () {
+        return this.lineErrors;
+    }
+}
@@ -0,0 +1,190 @@
+package br.com.rateiocerto.businiess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import br.com.rateiocerto.basics.Apartment;
+
+/**
+ * Rateio Certo
+ *
+ * AptNavigationIndex: classe que representa a ordem de navegação entre os
+ * apartamentos de um condomínio, ordenados por bloco e número. A posição de
+ * cada apartamento nessa ordem é calculada uma única vez, de modo que o
+ * apartamento seguinte, o anterior ou o primeiro de um bloco são obtidos sem
+ * consultas ao BD, e sem depender da sequência dos identificadores (que pode
+ * ter lacunas após remoções ou recarregamentos).
+ * Os objetos dessa classe são imutáveis: quando a tabela de apartamentos é
+ * alterada, um novo índice deve ser construído.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class AptNavigationIndex {
+
+    //posição retornada quando o apartamento ou bloco não existe no índice
+    public static final int NOT_FOUND = -1;
+
+    private final Apartment [] apts;
+    //pares (id << 32 | posição), ordenados por id, para a busca por identificador
+    private final long [] idPositions;
+    private final Map<String, Integer> positionByBlockNum;
+    private final Map<String, Integer> firstPositionByBlock;
+    private final List<String> blocks;
+
+    /**
+     * Construtor da classe. Os apartamentos recebidos são ordenados por bloco
+     * e número, caso ainda não estejam.
+     * @param aptList lista de todos os apartamentos do condomínio
+     */
+    public AptNavigationIndex (List<Apartment> aptList) {
+        int size = aptList.size();
+        this.apts = aptList.toArray(new Apartment[size]);
+        Arrays.sort(this.apts, new Comparator<Apartment>() {
+            @Override
+            public int compare(Apartment a1, Apartment a2) {
+                int resp = String.valueOf(a1.getBlock()).compareTo(String.valueOf(a2.getBlock()));
+                if (resp == 0) {
+                    resp = Integer.compare(a1.getNum(), a2.getNum());
+                }
+                return resp;
+            }
+        });
+
+        this.idPositions = new long [size];
+        this.positionByBlockNum = new HashMap<>(size * 2);
+        this.firstPositionByBlock = new HashMap<>();
+        List<String> blockList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Apartment apt = this.apts[i];
+            this.idPositions[i] = ((long) apt.getId() << 32) | i;
+            this.positionByBlockNum.put(AptNavigationIndex.key(apt.getBlock(), apt.getNum()), i);
+            if (!this.firstPositionByBlock.containsKey(apt.getBlock())) {
+                this.firstPositionByBlock.put(apt.getBlock(), i);
+                blockList.add(apt.getBlock());
+            }
+        }
+        Arrays.sort(this.idPositions);
+        this.blocks = Collections.unmodifiableList(blockList);
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos do índice.
+     * @return a quantidade de apartamentos
+     */
+    public int size () {
+        return this.apts.length;
+    }
+
+    /**
+     * Método que retorna o apartamento de uma posição do índice.
+     * @param position posição do apartamento
+     * @return o apartamento correspondente
+     */
+    public Apartment get (int position) {
+        return this.apts[position];
+    }
+
+    /**
+     * Método que retorna a lista dos blocos, na ordem de navegação.
+     * @return a lista dos nomes dos blocos
+     */
+    public List<String> getBlocks () {
+        return this.blocks;
+    }
+
+    /**
+     * Método que busca a posição de um apartamento, a partir do bloco e número.
+     * @param block nome do bloco
+     * @param num número do apartamento
+     * @return a posição do apartamento, ou NOT_FOUND caso não exista
+     */
+    public int positionOf (String block, int num) {
+        Integer resp = this.positionByBlockNum.get(AptNavigationIndex.key(block, num));
+        return resp != null ? resp : AptNavigationIndex.NOT_FOUND;
+    }
+
+    /**
+     * Método que busca a posição de um apartamento, a partir do seu identificador.
+     * @param idApt identificador do apartamento
+     * @return a posição do apartamento, ou NOT_FOUND caso não exista
+     */
+    public int positionOfId (int idApt) {
+        int low = 0;
+        int high = this.idPositions.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = (int) (this.idPositions[mid] >> 32);
+            if (id < idApt) {
+                low = mid + 1;
+            }
+            else if (id > idApt) {
+                high = mid - 1;
+            }
+            else {
+                return (int) this.idPositions[mid];
+            }
+        }
+        return AptNavigationIndex.NOT_FOUND;
+    }
+
+    /**
+     * Método que retorna a posição do próximo apartamento.
+     * @param position posição de referência
+     * @return a posição seguinte, ou NOT_FOUND caso seja o último
+     */
+    public int next (int position) {
+        return position + 1 < this.apts.length ? position + 1 : AptNavigationIndex.NOT_FOUND;
+    }
+
+    /**
+     * Método que retorna a posição do apartamento anterior.
+     * @param position posição de referência
+     * @return a posição anterior, ou NOT_FOUND caso seja o primeiro
+     */
+    public int previous (int position) {
+        return position > 0 ? position - 1 : AptNavigationIndex.NOT_FOUND;
+    }
+
+    /**
+     * Método que retorna a posição do primeiro apartamento de um bloco.
+     * @param block nome do bloco
+     * @return a posição do primeiro apartamento, ou NOT_FOUND caso o bloco não exista
+     */
+    public int firstOfBlock (String block) {
+        Integer resp = this.firstPositionByBlock.get(block);
+        return resp != null ? resp : AptNavigationIndex.NOT_FOUND;
+    }
+
+    /**
+     * Método que monta o conjunto das posições dos apartamentos indicados
+     * pelos identificadores. Identificadores inexistentes são ignorados.
+     * @param idApts identificadores dos apartamentos
+     * @return o conjunto das posições correspondentes
+     */
+    public BitSet positionsOfIds (List<Integer> idApts) {
+        BitSet resp = new BitSet(this.apts.length);
+        for (Integer idApt : idApts) {
+            int position = this.positionOfId(idApt);
+            if (position != AptNavigationIndex.NOT_FOUND) {
+                resp.set(position);
+            }
+        }
+        return resp;
+    }
+
+    /**
+     * Método que monta a chave de busca de um apartamento, pelo bloco e número.
+     * @param block nome do bloco
+     * @param num número do apartamento
+     * @return a chave de busca
+     */
+    private static String key (String block, int num) {
+        return block + '\u0000' + num;
+    }
+}
@@ -0,0 +1,279 @@
+package br.com.rateiocerto.businiess;
+
+import android.database.Cursor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rateio Certo
+ *
+ * CallMetrics: classe que registra as métricas das chamadas aos DAOs e ao
+ * gerenciador da camada de negócio: quantidade de chamadas, de erros e de
+ * linhas retornadas, e o histograma das latências de cada método.
+ * A instrumentação é feita envolvendo a interface chamada num Proxy, de
+ * forma que o código instrumentado não é alterado. O registro não bloqueia
+ * as linhas de execução que fazem as chamadas.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class CallMetrics {
+
+    /**
+     * MethodStats: métricas de um método instrumentado.
+     */
+    public static class MethodStats {
+
+        private final String name;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder uncounted = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        MethodStats (String name) {
+            this.name = name;
+        }
+
+        /**
+         * Método que registra uma chamada ao método.
+         * @param nanos duração da chamada, em nanossegundos
+         * @param rows quantidade de linhas retornadas, ou UNKNOWN_ROWS
+         * @param error indica se a chamada terminou com erro
+         */
+        void record (long nanos, int rows, boolean error) {
+            this.calls.increment();
+            if (rows != CallMetrics.UNKNOWN_ROWS) {
+                this.rows.add(rows);
+            }
+            else {
+                this.uncounted.increment();
+            }
+            if (error) {
+                this.errors.increment();
+            }
+            this.latency.record(nanos / 1000);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long getCalls() {
+            return this.calls.sum();
+        }
+
+        public long getErrors() {
+            return this.errors.sum();
+        }
+
+        /**
+         * Método que retorna a soma das linhas retornadas pelas chamadas.
+         * @return a quantidade de linhas, ou UNKNOWN_ROWS caso nenhuma chamada
+         *         tenha retornado linhas contáveis, como os métodos que retornam cursores
+         */
+        public long getRows() {
+            long calls = this.calls.sum();
+            if (calls > 0 && this.uncounted.sum() == calls) {
+                return CallMetrics.UNKNOWN_ROWS;
+            }
+            return this.rows.sum();
+        }
+
+        public LatencyHistogram getLatency() {
+            return this.latency;
+        }
+    }
+
+    //quantidade de linhas não contabilizada, como a dos cursores
+    public static final int UNKNOWN_ROWS = -1;
+
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Método que retorna as métricas de um método, criadas no primeiro acesso.
+     * @param name nome do método, no formato "Interface.método"
+     * @return as métricas do método
+     */
+    public MethodStats statsOf (String name) {
+        MethodStats resp = this.methods.get(name);
+        if (resp == null) {
+            MethodStats created = new MethodStats(name);
+            resp = this.methods.putIfAbsent(name, created);
+            if (resp == null) {
+                resp = created;
+            }
+        }
+        return resp;
+    }
+
+    /**
+     * Método que registra uma chamada a um método.
+     * @param name nome do método, no formato "Interface.método"
+     * @param nanos duração da chamada, em nanossegundos
+     * @param rows quantidade de linhas retornadas, ou UNKNOWN_ROWS
+     * @param error indica se a chamada terminou com erro
+     */
+    public void record (String name, long nanos, int rows, boolean error) {
+        this.statsOf(name).record(nanos, rows, error);
+    }
+
+    /**
+     * Método que envolve um objeto numa implementação instrumentada da sua
+     * interface. Cada chamada aos métodos da interface é repassada ao objeto
+     * e registrada com o nome "prefixo.método".
+     * @param iface a interface a ser instrumentada
+     * @param target o objeto que implementa a interface
+     * @param prefix prefixo dos nomes dos métodos
+     * @param <T> o tipo da interface
+     * @return a implementação instrumentada
+     */
+    public <T> T wrap (Class<T> iface, final T target, final String prefix) {
+        final ConcurrentHashMap<Method, MethodStats> stats = new ConcurrentHashMap<>();
+        Object proxy = Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface},
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object p, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(target, args);
+                }
+                MethodStats s = stats.get(method);
+                if (s == null) {
+                    s = statsOf(prefix + "." + method.getName());
+                    stats.put(method, s);
+                }
+                long start = System.nanoTime();
+                try {
+                    Object resp = method.invoke(target, args);
+                    s.record(System.nanoTime() - start, CallMetrics.rowsOf(resp), false);
+                    return resp;
+                }
+                catch (InvocationTargetException e) {
+                    s.record(System.nanoTime() - start, 0, true);
+                    throw e.getCause();
+                }
+            }
+        });
+        return iface.cast(proxy);
+    }
+
+    /**
+     * Método que retorna a quantidade de linhas de um resultado: o tamanho
+     * das listas e arrays, nenhuma para null, e uma para os demais. As linhas
+     * dos cursores não são contadas (UNKNOWN_ROWS), pois Cursor.getCount
+     * percorre todo o resultado antes da leitura, o que desfaria a leitura
+     * em fluxo e somaria esse percurso à latência medida.
+     * @param result o resultado de uma chamada
+     * @return a quantidade de linhas, ou UNKNOWN_ROWS
+     */
+    static int rowsOf (Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Cursor) {
+            return CallMetrics.UNKNOWN_ROWS;
+        }
+        if (result.getClass().isArray()) {
+            return Array.getLength(result);
+        }
+        return 1;
+    }
+
+    /**
+     * Método que grava as métricas num arquivo JSON, com um objeto por
+     * método, em ordem alfabética, seguido dos contadores dos caches. As
+     * latências são em microssegundos.
+     * @param file arquivo de destino
+     * @param condominium nome do condomínio
+     * @param caches caches cujos contadores são gravados junto às métricas
+     * @throws IOException erro retornado caso o arquivo não possa ser gravado
+     */
+    public void writeJson (File file, String condominium, List<EntityCache<?, ?>> caches)
+            throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        Map<String, MethodStats> sorted = new TreeMap<>(this.methods);
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            out.write("{\n  \"condominium\": \"" + CallMetrics.escape(condominium) + "\",\n");
+            out.write("  \"generatedAt\": \"" + LocalDateTime.now().withNano(0) + "\",\n");
+            out.write("  \"methods\": [");
+            String sep = "\n";
+            for (MethodStats s : sorted.values()) {
+                LatencyHistogram h = s.getLatency();
+                out.write(sep + "    {\"name\": \"" + CallMetrics.escape(s.getName()) + "\""
+                        + ", \"calls\": " + s.getCalls()
+                        + ", \"errors\": " + s.getErrors()
+                        + ", \"rows\": " + s.getRows()
+                        + ", \"latencyUs\": {\"mean\": " + h.getMean()
+                        + ", \"p50\": " + h.getPercentile(50)
+                        + ", \"p90\": " + h.getPercentile(90)
+                        + ", \"p99\": " + h.getPercentile(99)
+                        + ", \"max\": " + h.getMax() + "}}");
+                sep = ",\n";
+            }
+            out.write("\n  ],\n  \"caches\": [");
+            sep = "\n";
+            for (EntityCache<?, ?> c : caches) {
+                out.write(sep + "    {\"name\": \"" + CallMetrics.escape(c.getName()) + "\""
+                        + ", \"capacity\": " + c.getCapacity()
+                        + ", \"size\": " + c.size()
+                        + ", \"hits\": " + c.getHits()
+                        + ", \"misses\": " + c.getMisses()
+                        + ", \"evictions\": " + c.getEvictions()
+                        + ", \"invalidations\": " + c.getInvalidations() + "}");
+                sep = ",\n";
+            }
+            out.write("\n  ]\n}\n");
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Método que prepara um texto para ser gravado como string JSON.
+     * @param text o texto
+     * @return o texto com aspas, barras e caracteres de controle escapados
+     */
+    static String escape (String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,128 @@
+package br.com.rateiocerto.businiess;
+
+import java.util.BitSet;
+
+/**
+ * Rateio Certo
+ *
+ * CompletionTracker: classe que acompanha quais apartamentos já possuem leitura
+ * no período aberto. Cada apartamento é representado por um bit, na sua posição
+ * do índice de navegação (AptNavigationIndex), e a quantidade de lidos é mantida
+ * a cada marcação. Assim, a verificação de leitura completa e a contagem de
+ * pendentes não dependem de consultas ao BD, e os apartamentos sem leitura são
+ * percorridos diretamente pelos bits vazios.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class CompletionTracker {
+
+    //posição retornada quando não há apartamento sem leitura
+    public static final int NOT_FOUND = AptNavigationIndex.NOT_FOUND;
+
+    private final int size;
+    private final BitSet read;
+    private int totalRead;
+
+    /**
+     * Construtor da classe, sem nenhum apartamento lido.
+     * @param size quantidade de apartamentos acompanhados
+     */
+    public CompletionTracker (int size) {
+        this(size, new BitSet(size));
+    }
+
+    /**
+     * Construtor da classe, a partir das posições já lidas.
+     * @param size quantidade de apartamentos acompanhados
+     * @param readPositions conjunto das posições dos apartamentos já lidos
+     */
+    public CompletionTracker (int size, BitSet readPositions) {
+        this.size = size;
+        this.read = (BitSet) readPositions.clone();
+        if (this.read.length() > size) {
+            this.read.clear(size, this.read.length());
+        }
+        this.totalRead = this.read.cardinality();
+    }
+
+    /**
+     * Método que marca o apartamento de uma posição como lido.
+     * @param position posição do apartamento
+     * @return true caso o apartamento ainda não estivesse lido. Caso contrário, false
+     */
+    public boolean markRead (int position) {
+        if (this.read.get(position)) {
+            return false;
+        }
+        this.read.set(position);
+        this.totalRead++;
+        return true;
+    }
+
+    /**
+     * Método que verifica se o apartamento de uma posição já foi lido.
+     * @param position posição do apartamento
+     * @return true caso o apartamento tenha leitura. Caso contrário, false
+     */
+    public boolean isRead (int position) {
+        return this.read.get(position);
+    }
+
+    /**
+     * Método que verifica se todos os apartamentos possuem leitura.
+     * @return true caso a leitura esteja completa. Caso contrário, false
+     */
+    public boolean isComplete () {
+        return this.totalRead == this.size;
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos lidos.
+     * @return a quantidade de apartamentos lidos
+     */
+    public int getTotalRead () {
+        return this.totalRead;
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos ainda sem leitura.
+     * @return a quantidade de apartamentos pendentes
+     */
+    public int getRemaining () {
+        return this.size - this.totalRead;
+    }
+
+    /**
+     * Método que retorna a posição do próximo apartamento sem leitura, sem
+     * retornar ao início. Permite percorrer todos os pendentes, a partir
+     * de nextMissing(0) e seguindo com nextMissing(posição + 1).
+     * @param from posição inicial da busca, inclusive
+     * @return a posição do apartamento sem leitura, ou NOT_FOUND ao final
+     */
+    public int nextMissing (int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int resp = this.read.nextClearBit(from);
+        return resp < this.size ? resp : CompletionTracker.NOT_FOUND;
+    }
+
+    /**
+     * Método que retorna a posição do próximo apartamento sem leitura, a
+     * partir de uma posição e seguindo a ordem de navegação. Ao chegar ao
+     * último apartamento, a busca continua a partir do primeiro.
+     * @param from posição inicial da busca, inclusive
+     * @return a posição do apartamento sem leitura, ou NOT_FOUND caso a
+     * leitura esteja completa
+     */
+    public int nextUnread (int from) {
+        if (this.isComplete()) {
+            return CompletionTracker.NOT_FOUND;
+        }
+        int resp = this.nextMissing(from < this.size ? from : 0);
+        if (resp == CompletionTracker.NOT_FOUND) {
+            resp = this.nextMissing(0);
+        }
+        return resp;
+    }
+}
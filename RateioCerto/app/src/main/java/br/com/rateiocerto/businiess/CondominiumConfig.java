@@ -0,0 +1,97 @@
+package br.com.rateiocerto.businiess;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rateio Certo
+ *
+ * CondominiumConfig: classe que representa o arquivo de configuração do App
+ * (rateio_config.ini). Cada linha sem o sinal de igual contém o nome de um
+ * condomínio gerenciado no aparelho, sendo o primeiro deles o selecionado ao
+ * abrir o App. As linhas no formato chave=valor contêm as opções, como a
+ * instrumentação das chamadas (metrics=true) e o rastreamento das etapas
+ * (trace=true). Linhas vazias e nomes repetidos são ignorados.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class CondominiumConfig {
+
+    //constante que indica o nome do arquivo de configuração em br.com.rateiocerto/data/files
+    public static final String CONFIG_FILE = "rateio_config.ini";
+
+    //opção do arquivo de configuração que liga a instrumentação das chamadas (metrics=true)
+    public static final String OPTION_METRICS = "metrics";
+
+    //opção do arquivo de configuração que liga o rastreamento das etapas (trace=true)
+    public static final String OPTION_TRACE = "trace";
+
+    private final List<String> names = new ArrayList<>();
+    private boolean metricsEnabled;
+    private boolean traceEnabled;
+
+    /**
+     * Método que carrega o arquivo de configuração da pasta indicada.
+     * @param homePath pasta do App, terminada em "/"
+     * @return a configuração carregada
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     */
+    public static CondominiumConfig read (String homePath) throws IOException {
+        CondominiumConfig resp = new CondominiumConfig();
+        BufferedReader bf = new BufferedReader(new FileReader(homePath + CondominiumConfig.CONFIG_FILE));
+        try {
+            String line = bf.readLine();
+            while (line != null) {
+                resp.parseLine(line);
+                line = bf.readLine();
+            }
+        }
+        finally {
+            bf.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que interpreta uma linha do arquivo de configuração.
+     * @param line a linha lida
+     */
+    void parseLine (String line) {
+        String text = line.trim();
+        int sep = text.indexOf('=');
+        if (sep < 0) {
+            if (!text.isEmpty() && !this.names.contains(text)) {
+                this.names.add(text);
+            }
+        }
+        else if (sep > 0 && Boolean.parseBoolean(text.substring(sep + 1).trim())) {
+            String key = text.substring(0, sep).trim();
+            if (key.equals(CondominiumConfig.OPTION_METRICS)) {
+                this.metricsEnabled = true;
+            }
+            else if (key.equals(CondominiumConfig.OPTION_TRACE)) {
+                this.traceEnabled = true;
+            }
+        }
+    }
+
+    /**
+     * Método que retorna os nomes dos condomínios, na ordem do arquivo.
+     * @return os nomes dos condomínios
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(this.names);
+    }
+
+    public boolean isMetricsEnabled() {
+        return this.metricsEnabled;
+    }
+
+    public boolean isTraceEnabled() {
+        return this.traceEnabled;
+    }
+}
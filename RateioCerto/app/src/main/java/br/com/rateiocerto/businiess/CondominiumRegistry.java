@@ -0,0 +1,156 @@
+package br.com.rateiocerto.businiess;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rateio Certo
+ *
+ * CondominiumRegistry: classe que mantém os condomínios gerenciados no aparelho,
+ * listados no arquivo de configuração (CondominiumConfig). Cada condomínio tem o
+ * seu gerenciador da camada de negócio (DataRWManager), criado no primeiro uso e
+ * mantido durante a execução do App, com os seus caches, logs, planilhas e
+ * métricas. Assim, a troca do condomínio selecionado é imediata: os bancos de
+ * dados continuam abertos pelo DatabaseRegistry, até o seu limite de bancos
+ * abertos, e os demais são reabertos no próximo acesso.
+ * Uma instância dessa classe pertence à aplicação (RateioApplication).
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class CondominiumRegistry {
+
+    private String homePath;
+    private DatabaseRegistry databaseRegistry;
+    private CondominiumConfig config;
+    private String current;
+    private Map<String, DataRWManager> managers = new HashMap<>();
+    private Map<String, DataRWManagerAsync> asyncManagers = new HashMap<>();
+
+    /**
+     * Construtor da classe. O arquivo de configuração é lido nesse momento,
+     * e o primeiro condomínio listado passa a ser o selecionado. Com o
+     * rastreamento ligado na configuração, o Tracer é ativado.
+     * @param homePath string que indica o caminho da pasta do App
+     * @param databaseRegistry registro de bancos de dados da aplicação
+     */
+    public CondominiumRegistry (String homePath, DatabaseRegistry databaseRegistry) {
+        this.homePath = homePath;
+        this.databaseRegistry = databaseRegistry;
+        try {
+            this.config = CondominiumConfig.read(homePath + "/");
+        }
+        catch (IOException e) {
+            this.config = new CondominiumConfig();
+        }
+        if (!this.config.getNames().isEmpty()) {
+            this.current = this.config.getNames().get(0);
+        }
+        if (this.config.isTraceEnabled()) {
+            Tracer.enable(new File(homePath + "/trace"));
+        }
+    }
+
+    /**
+     * Método que retorna os nomes dos condomínios, na ordem da configuração.
+     * @return os nomes dos condomínios, podendo ser uma lista vazia
+     */
+    public List<String> getNames () {
+        return this.config.getNames();
+    }
+
+    /**
+     * Método que retorna o nome do condomínio selecionado.
+     * @return o nome do condomínio, ou null caso nenhum esteja configurado
+     */
+    public synchronized String getCurrent () {
+        return this.current;
+    }
+
+    /**
+     * Método que seleciona o condomínio a ser usado pelas telas.
+     * @param nameCondominium nome do condomínio, presente na configuração
+     */
+    public synchronized void select (String nameCondominium) {
+        if (!this.config.getNames().contains(nameCondominium)) {
+            throw new IllegalArgumentException("Condomínio não configurado: " + nameCondominium);
+        }
+        this.current = nameCondominium;
+    }
+
+    /**
+     * Método que retorna o gerenciador do condomínio selecionado.
+     * @return o gerenciador da camada de negócio
+     */
+    public synchronized DataRWManager getManager () {
+        if (this.current == null) {
+            throw new IllegalStateException("Nenhum condomínio em " + CondominiumConfig.CONFIG_FILE);
+        }
+        return this.getManager(this.current);
+    }
+
+    /**
+     * Método que retorna o gerenciador do condomínio indicado, criado no
+     * primeiro acesso.
+     * @param nameCondominium nome do condomínio
+     * @return o gerenciador da camada de negócio
+     */
+    public synchronized DataRWManager getManager (String nameCondominium) {
+        DataRWManager resp = this.managers.get(nameCondominium);
+        if (resp == null) {
+            resp = new DataRWManager(this.homePath, nameCondominium, this.databaseRegistry,
+                    this.config.isMetricsEnabled());
+            this.managers.put(nameCondominium, resp);
+        }
+        return resp;
+    }
+
+    /**
+     * Método que retorna a versão não bloqueante do gerenciador do condomínio
+     * selecionado.
+     * @return o gerenciador assíncrono da camada de negócio
+     */
+    public synchronized DataRWManagerAsync getManagerAsync () {
+        return this.getManagerAsync(this.getManager().getNameCondominium());
+    }
+
+    /**
+     * Método que retorna a versão não bloqueante do gerenciador do condomínio
+     * indicado, criada no primeiro acesso.
+     * @param nameCondominium nome do condomínio
+     * @return o gerenciador assíncrono da camada de negócio
+     */
+    public synchronized DataRWManagerAsync getManagerAsync (String nameCondominium) {
+        DataRWManagerAsync resp = this.asyncManagers.get(nameCondominium);
+        if (resp == null) {
+            resp = new DataRWManagerAsync(this.getManager(nameCondominium), DbExecutors.db());
+            this.asyncManagers.put(nameCondominium, resp);
+        }
+        return resp;
+    }
+
+    /**
+     * Método que retorna os gerenciadores já criados, usados, por exemplo,
+     * para gravar os logs e as métricas pendentes.
+     * @return os gerenciadores criados
+     */
+    public synchronized List<DataRWManager> getOpenManagers () {
+        return Collections.unmodifiableList(new ArrayList<>(this.managers.values()));
+    }
+
+    public String getHomePath () {
+        return this.homePath;
+    }
+
+    public DatabaseRegistry getDatabaseRegistry () {
+        return this.databaseRegistry;
+    }
+
+    public boolean isMetricsEnabled () {
+        return this.config.isMetricsEnabled();
+    }
+}
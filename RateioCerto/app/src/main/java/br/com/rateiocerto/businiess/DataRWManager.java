@@ -1,24 +1,34 @@
 package br.com.rateiocerto.businiess;
 
-import android.content.Context;
+import android.database.Cursor;
 
-import androidx.room.Room;
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.sql.Timestamp;
-import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import br.com.rateiocerto.basics.Apartment;
 import br.com.rateiocerto.basics.AptRead;
+import br.com.rateiocerto.basics.ConsumptionTotals;
+import br.com.rateiocerto.basics.PeriodSummary;
 import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.basics.ReadingPeriod;
+import br.com.rateiocerto.engine.CsvReportWriter;
+import br.com.rateiocerto.engine.RateioEngine;
+import br.com.rateiocerto.interfaces.ApartmentDao;
+import br.com.rateiocerto.interfaces.AptReadDao;
 import br.com.rateiocerto.interfaces.GuiBackendManager;
+import br.com.rateiocerto.interfaces.PeriodSummaryDao;
+import br.com.rateiocerto.interfaces.ReadDataDao;
+import br.com.rateiocerto.interfaces.ReadingPeriodDao;
 
 /**
  * Rateio Certo
@@ -32,41 +42,374 @@ import br.com.rateiocerto.interfaces.GuiBackendManager;
  */
 public class DataRWManager implements GuiBackendManager {
 
-    //constante que indica o nome do arquivo de configuração em br.com.rateiocerto/data/files
-    static String CONFIG_FILE = "rateio_config.ini";
+    //quantidade máxima de leituras atuais mantidas no cache
+    static final int READ_CACHE_CAPACITY = 2048;
+
+    //tabelas observadas no InvalidationTracker, para o índice de navegação e os caches
+    private static final String [] OBSERVED_TABLES = {"Apartment", "ReadData",
+            "PeriodSummary", "ReadingPeriod"};
+
+    //tabelas alteradas pela gravação de leituras (PeriodSummary e ReadingPeriod pelos gatilhos)
+    private static final Set<String> READ_TABLES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("ReadData", "PeriodSummary", "ReadingPeriod")));
 
     private String homePath;
     private String nameCondominium;
-    public DatabaseRateio db;
-    Context c;
+    private DatabaseRegistry registry;
+    private RateioLogger logger;
+    private AptNavigationIndex navIndex;
+    private DatabaseRateio observedDb;
+    private CallMetrics metrics;
+    private volatile InstrumentedDaos instrumentedDaos;
+    private GuiBackendManager backend;
+
+    //caches das consultas repetidas, esvaziados quando as tabelas indicadas são alteradas;
+    //as entidades são copiadas, e as listas de ids são imutáveis
+    private final EntityCache<Integer, Integer> totalApartments =
+            new EntityCache<>("totalApartments", 1, "Apartment");
+    private final EntityCache<Long, ReadData> currentReads =
+            new EntityCache<>("currentReads", DataRWManager.READ_CACHE_CAPACITY,
+                    new EntityCache.Copier<ReadData>() {
+                @Override
+                public ReadData copy(ReadData value) {
+                    return value.copy();
+                }
+            }, "ReadData");
+    private final EntityCache<Integer, List<Integer>> readAptIds =
+            new EntityCache<>("readAptIds", 2, "ReadData");
+    private final EntityCache<Integer, PeriodSummary> periodSummaries =
+            new EntityCache<>("periodSummaries", 24, new EntityCache.Copier<PeriodSummary>() {
+                @Override
+                public PeriodSummary copy(PeriodSummary value) {
+                    return value.copy();
+                }
+            }, "ReadData", "PeriodSummary");
+    private final EntityCache<Integer, ReadingPeriod> lastClosedPeriods =
+            new EntityCache<>("lastClosedPeriods", 24, new EntityCache.Copier<ReadingPeriod>() {
+                @Override
+                public ReadingPeriod copy(ReadingPeriod value) {
+                    return value.copy();
+                }
+            }, "ReadingPeriod");
+    private final List<EntityCache<?, ?>> caches = Arrays.<EntityCache<?, ?>>asList(
+            this.totalApartments, this.currentReads, this.readAptIds,
+            this.periodSummaries, this.lastClosedPeriods);
+
+    //bloqueio das gerações de planilha, que escrevem no mesmo arquivo temporário
+    private final Object sheetLock = new Object();
+
+    /**
+     * InstrumentedDaos: DAOs instrumentados de uma instância do banco de dados.
+     */
+    private static class InstrumentedDaos {
+
+        final DatabaseRateio db;
+        final ApartmentDao apartmentDao;
+        final ReadDataDao readDataDao;
+        final AptReadDao aptReadDao;
+        final PeriodSummaryDao periodSummaryDao;
+        final ReadingPeriodDao readingPeriodDao;
+
+        InstrumentedDaos (DatabaseRateio db, CallMetrics metrics) {
+            this.db = db;
+            this.apartmentDao = metrics.wrap(ApartmentDao.class, db.ApartmentDao(), "ApartmentDao");
+            this.readDataDao = metrics.wrap(ReadDataDao.class, db.ReadDataDao(), "ReadDataDao");
+            this.aptReadDao = metrics.wrap(AptReadDao.class, db.AptReadDao(), "AptReadDao");
+            this.periodSummaryDao = metrics.wrap(PeriodSummaryDao.class, db.PeriodSummaryDao(),
+                    "PeriodSummaryDao");
+            this.readingPeriodDao = metrics.wrap(ReadingPeriodDao.class, db.ReadingPeriodDao(),
+                    "ReadingPeriodDao");
+        }
+    }
 
     /**
      * Construtor da classe. É responsável por verificar qual condomínio
-     * foi escolhido para ser gerenciado, inicializando o banco de dados
-     * correspondente às informações do mesmo.
+     * foi escolhido para ser gerenciado. O banco de dados correspondente
+     * às informações do mesmo é obtido do registro compartilhado pela
+     * aplicação, sendo aberto apenas no primeiro acesso.
      * @param homePath string que indica o caminho e nome do arquivo
      *                 com o nome do condomínio
-     * @param c contexto da interface gráfica, usado para carregar o BD
+     * @param registry registro de bancos de dados da aplicação
      */
-    public DataRWManager(String homePath, Context c) {
+    public DataRWManager(String homePath, DatabaseRegistry registry) {
         this.homePath = homePath + "/";
         this.readNameCondominium ();
-        this.c = c;
-        this.db = Room.databaseBuilder(c.getApplicationContext(), DatabaseRateio.class,
-                "database_" + this.nameCondominium).allowMainThreadQueries().build();
+        this.registry = registry;
+    }
+
+    /**
+     * Construtor da classe para um condomínio já escolhido, usado pelo
+     * CondominiumRegistry quando o aparelho gerencia vários condomínios.
+     * Os logs, as planilhas e as métricas de cada condomínio são gravados
+     * em arquivos com o seu nome.
+     * @param homePath string que indica o caminho da pasta do App
+     * @param nameCondominium nome do condomínio gerenciado
+     * @param registry registro de bancos de dados da aplicação
+     * @param metricsEnabled true caso a instrumentação das chamadas esteja ligada
+     */
+    public DataRWManager(String homePath, String nameCondominium, DatabaseRegistry registry,
+                         boolean metricsEnabled) {
+        this.homePath = homePath + "/";
+        this.nameCondominium = nameCondominium;
+        this.registry = registry;
+        if (metricsEnabled) {
+            this.metrics = new CallMetrics();
+        }
+    }
+
+    /**
+     * Método que retorna o banco de dados do condomínio gerenciado. O banco
+     * é obtido do registro a cada chamada, pois pode ter sido fechado pela
+     * aplicação e reaberto posteriormente.
+     * @return o banco de dados do condomínio
+     */
+    public DatabaseRateio getDatabase () {
+        return this.registry.getDatabase(this.nameCondominium);
+    }
+
+    /**
+     * Método que reserva o banco de dados do condomínio durante uma operação,
+     * impedindo que o registro o feche até a chamada de releaseDatabase. As
+     * reservas são contadas, podendo ser aninhadas.
+     * @return o banco de dados do condomínio, o mesmo até o fim da reserva
+     */
+    public DatabaseRateio acquireDatabase () {
+        return this.registry.acquire(this.nameCondominium);
+    }
+
+    /**
+     * Método que encerra uma reserva feita com acquireDatabase.
+     */
+    public void releaseDatabase () {
+        this.registry.release(this.nameCondominium);
+    }
+
+    /**
+     * Método que retorna os DAOs instrumentados do banco de dados atual,
+     * criados novamente quando o banco é reaberto pelo registro. Só é
+     * chamado com a instrumentação ligada.
+     * @param db o banco de dados do condomínio
+     * @return os DAOs instrumentados
+     */
+    private InstrumentedDaos instrumentedDaos (DatabaseRateio db) {
+        InstrumentedDaos resp = this.instrumentedDaos;
+        if (resp == null || resp.db != db) {
+            resp = new InstrumentedDaos(db, this.metrics);
+            this.instrumentedDaos = resp;
+        }
+        return resp;
+    }
+
+    //DAOs do banco de dados atual, ou de uma instância indicada (como a de uma transação),
+    //instrumentados caso a instrumentação esteja ligada
+
+    private ApartmentDao apartmentDao () {
+        return this.apartmentDao(this.getDatabase());
+    }
+
+    private ApartmentDao apartmentDao (DatabaseRateio db) {
+        return this.metrics == null ? db.ApartmentDao() : this.instrumentedDaos(db).apartmentDao;
+    }
+
+    private ReadDataDao readDataDao () {
+        return this.readDataDao(this.getDatabase());
+    }
+
+    private ReadDataDao readDataDao (DatabaseRateio db) {
+        return this.metrics == null ? db.ReadDataDao() : this.instrumentedDaos(db).readDataDao;
+    }
+
+    private AptReadDao aptReadDao () {
+        return this.aptReadDao(this.getDatabase());
+    }
+
+    private AptReadDao aptReadDao (DatabaseRateio db) {
+        return this.metrics == null ? db.AptReadDao() : this.instrumentedDaos(db).aptReadDao;
+    }
+
+    private PeriodSummaryDao periodSummaryDao () {
+        return this.periodSummaryDao(this.getDatabase());
+    }
+
+    private PeriodSummaryDao periodSummaryDao (DatabaseRateio db) {
+        return this.metrics == null ? db.PeriodSummaryDao() : this.instrumentedDaos(db).periodSummaryDao;
+    }
+
+    private ReadingPeriodDao readingPeriodDao () {
+        return this.readingPeriodDao(this.getDatabase());
+    }
+
+    private ReadingPeriodDao readingPeriodDao (DatabaseRateio db) {
+        return this.metrics == null ? db.ReadingPeriodDao() : this.instrumentedDaos(db).readingPeriodDao;
+    }
+
+    /**
+     * Método que retorna as métricas das chamadas do condomínio.
+     * @return as métricas, ou null caso a instrumentação esteja desligada
+     */
+    public CallMetrics getMetrics () {
+        return this.metrics;
+    }
+
+    /**
+     * Método que retorna o gerenciador a ser usado pelas telas e tarefas.
+     * Com a instrumentação ligada, as chamadas ao gerenciador são registradas
+     * nas métricas; caso contrário, é retornado o próprio gerenciador.
+     * @return o gerenciador da camada de negócio
+     */
+    public synchronized GuiBackendManager getBackend () {
+        if (this.backend == null) {
+            this.backend = this.metrics == null ? this :
+                    this.metrics.wrap(GuiBackendManager.class, this, "DataRWManager");
+        }
+        return this.backend;
+    }
+
+    /**
+     * Método que grava as métricas das chamadas, junto aos contadores dos
+     * caches, em log/metrics-(condomínio).json.
+     * Deve ser chamado fora da linha da interface gráfica. Não faz nada caso a
+     * instrumentação esteja desligada.
+     * @throws IOException erro retornado caso o arquivo não possa ser gravado
+     */
+    public void dumpMetrics () throws IOException {
+        if (this.metrics != null) {
+            try {
+                this.metrics.writeJson(new File(this.homePath + "log/metrics-" +
+                        this.nameCondominium + ".json"), this.nameCondominium, this.caches);
+            }
+            catch (IOException e) {
+                this.writeLog("dumpMetrics: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Método que retorna o índice de navegação entre os apartamentos do
+     * condomínio. O índice é construído no primeiro acesso e mantido em
+     * memória, sendo descartado sempre que a tabela Apartment é alterada,
+     * ou quando o banco de dados é reaberto pelo registro.
+     * @return o índice de navegação atualizado
+     */
+    public synchronized AptNavigationIndex getNavigationIndex () {
+        this.getObservedDatabase();
+        if (this.navIndex == null) {
+            this.navIndex = new AptNavigationIndex(this.apartmentDao().listAllApartmentsOrdered());
+        }
+        return this.navIndex;
+    }
+
+    /**
+     * Método que descarta o índice de navegação, o qual será reconstruído
+     * no próximo acesso.
+     */
+    private synchronized void invalidateNavigationIndex () {
+        this.navIndex = null;
+    }
+
+    /**
+     * Método que retorna o banco de dados do condomínio, registrando no seu
+     * InvalidationTracker o observador das tabelas usadas pelo índice de
+     * navegação e pelos caches. Quando o banco é reaberto pelo registro, o
+     * observador é registrado no novo banco, e os dados em memória são
+     * descartados.
+     * @return o banco de dados do condomínio
+     */
+    private synchronized DatabaseRateio getObservedDatabase () {
+        DatabaseRateio db = this.getDatabase();
+        if (this.observedDb != db) {
+            db.getInvalidationTracker().addObserver(
+                    new InvalidationTracker.Observer(DataRWManager.OBSERVED_TABLES) {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    onTablesChanged(tables);
+                }
+            });
+            this.observedDb = db;
+            this.navIndex = null;
+            for (EntityCache<?, ?> c : this.caches) {
+                c.invalidate();
+            }
+        }
+        return db;
+    }
+
+    /**
+     * Método chamado quando tabelas do BD são alteradas, pelo
+     * InvalidationTracker ou pelas gravações do próprio gerenciador. Apenas
+     * os dados que dependem dessas tabelas são descartados.
+     * @param tables nomes das tabelas alteradas
+     */
+    private void onTablesChanged (Set<String> tables) {
+        if (tables.contains("Apartment")) {
+            this.invalidateNavigationIndex();
+        }
+        for (EntityCache<?, ?> c : this.caches) {
+            c.invalidate(tables);
+        }
+    }
+
+    /**
+     * Método chamado após a gravação de leituras pelo próprio gerenciador.
+     * Os caches são esvaziados pelas tabelas alteradas, da mesma forma que
+     * pelo InvalidationTracker, mas já no retorno da gravação: o aviso do
+     * InvalidationTracker é entregue em segundo plano, após o fim da
+     * transação, e uma consulta feita logo em seguida leria o valor anterior.
+     */
+    private void onReadsWritten () {
+        this.onTablesChanged(DataRWManager.READ_TABLES);
+    }
+
+    /**
+     * Método que monta a chave do cache de leituras.
+     * @param period período da leitura (ano * 100 + mês)
+     * @param idApt identificador do apartamento
+     * @return a chave (período << 32 | apartamento)
+     */
+    private static long readKey (int period, int idApt) {
+        return ((long) period << 32) | idApt;
+    }
+
+    /**
+     * Método que retorna os caches das consultas do condomínio, com os seus
+     * contadores de acertos e faltas.
+     * @return os caches
+     */
+    public List<EntityCache<?, ?>> getCaches () {
+        return this.caches;
+    }
+
+    /**
+     * Método que retorna o apartamento de uma posição do índice de navegação.
+     * @param index o índice de navegação
+     * @param position a posição do apartamento
+     * @return o apartamento, ou null caso a posição seja NOT_FOUND
+     */
+    private Apartment getAt (AptNavigationIndex index, int position) {
+        return position != AptNavigationIndex.NOT_FOUND ? index.get(position) : null;
     }
 
     /**
      * Método que carrega o nome do condomínio, armazenado num arquivo de
      * configuração indicado no construtor. Esse nome será usado para indicar
      * o banco de dados do condomínio e sua planilha gerada com as leituras.
+     * Havendo vários condomínios no arquivo, é usado o primeiro. As opções
+     * do arquivo, como a instrumentação das chamadas (metrics=true) e o
+     * rastreamento das etapas (trace=true), também são aplicadas.
      */
     private void readNameCondominium () {
         try {
-            FileReader fr = new FileReader(this.homePath + DataRWManager.CONFIG_FILE);
-            BufferedReader bf = new BufferedReader (fr);
-            this.nameCondominium = bf.readLine();
-            bf.close();
+            CondominiumConfig config = CondominiumConfig.read(this.homePath);
+            if (!config.getNames().isEmpty()) {
+                this.nameCondominium = config.getNames().get(0);
+            }
+            if (config.isMetricsEnabled()) {
+                this.metrics = new CallMetrics();
+            }
+            if (config.isTraceEnabled()) {
+                Tracer.enable(new File(this.homePath + "trace"));
+            }
         }
         catch (IOException e) {
             this.writeLog("readNameCondominium: " + e.getMessage());
@@ -81,10 +424,10 @@ public class DataRWManager implements GuiBackendManager {
      * @param month mês de referência da lista
      * @return a lista correspondente ao mês e ano recebidos.
      */
+    @Override
     public List<ReadData> getMonthListReadData (int year, int month) {
-        return this.db.ReadDataDao().
-                getMonthListReadData("" + year + "",
-                        "" + String.format("%02d", month) + "");
+        return this.readDataDao().
+                getMonthListReadData(ReadData.periodOf(year, month));
     }
 
     /**
@@ -95,16 +438,16 @@ public class DataRWManager implements GuiBackendManager {
      * @return a lista correspondente ao mês e ano recebidos.
      */
     public List<AptRead> getYearMonthListAptRead (int year, int month) {
-        return this.db.AptReadDao().
-                getYearMonthListAptRead("" + year + "",
-                        "" + String.format("%02d", month) + "");
+        return this.aptReadDao().
+                getYearMonthListAptRead(ReadData.periodOf(year, month));
     }
 
     /**
      * Método de remoção de todos os dados da tabela.
      */
     public void clearAllAptData () {
-        this.db.ApartmentDao().clearAllAptData();
+        this.apartmentDao().clearAllAptData();
+        this.onTablesChanged(new HashSet<>(Arrays.asList(DataRWManager.OBSERVED_TABLES)));
     }
 
     /**
@@ -113,8 +456,17 @@ public class DataRWManager implements GuiBackendManager {
      * @param idApt identificador do apartamento ao qual se deseja a leitura atual
      * @return leitura atual do apartamento. Caso contrário, null
      */
+    @Override
     public ReadData getCurrentReadDataById (int idApt) {
-        return this.db.ReadDataDao().getCurrentReadDataById(idApt);
+        this.getObservedDatabase();
+        final int period = ReadData.currentPeriod();
+        return this.currentReads.get(DataRWManager.readKey(period, idApt),
+                new EntityCache.Loader<Long, ReadData>() {
+            @Override
+            public ReadData load(Long key) {
+                return readDataDao().getCurrentReadDataById(key.intValue(), period);
+            }
+        });
     }
 
     /**
@@ -124,18 +476,21 @@ public class DataRWManager implements GuiBackendManager {
      * @param message string contendo a mensagem de erro
      */
     public void writeLog (String message) {
-        String LOG_FILE_NAME = this.homePath + "log/" + this.nameCondominium + ".log";
-        FileWriter fLog = null;
-        Timestamp ts = new Timestamp (System.currentTimeMillis());
+        this.getLogger().error(message);
+    }
 
-        try {
-            fLog = new FileWriter(LOG_FILE_NAME, true);
-            fLog.write("["+ ts + "] " + message + "\n");
-            fLog.close();
-        }
-        catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Método que retorna o logger do condomínio, criado no primeiro acesso.
+     * O registro das mensagens é feito em segundo plano, sem bloquear a
+     * linha que as gerou.
+     * @return o logger do condomínio
+     */
+    public synchronized RateioLogger getLogger () {
+        if (this.logger == null) {
+            File logFile = new File(this.homePath + "log/" + this.nameCondominium + ".log");
+            this.logger = new RateioLogger(logFile);
         }
+        return this.logger;
     }
 
     /**
@@ -147,32 +502,49 @@ public class DataRWManager implements GuiBackendManager {
         return this.homePath;
     }
 
+    /**
+     * Método que retorna os totais de leitura do mês e ano indicados, mantidos
+     * pelo BD na tabela PeriodSummary.
+     * @param year ano de referência
+     * @param month mês de referência
+     * @return os totais do período, ou null caso não haja leituras no mesmo
+     */
+    public PeriodSummary getPeriodSummary (int year, int month) {
+        this.getObservedDatabase();
+        return this.periodSummaries.get(ReadData.periodOf(year, month),
+                new EntityCache.Loader<Integer, PeriodSummary>() {
+            @Override
+            public PeriodSummary load(Integer period) {
+                return periodSummaryDao().getPeriodSummary(period);
+            }
+        });
+    }
+
     /**
      * Método que retorna a soma dos valores de leitura realizados no mês e ano
-     * indicados pelos parâmetros.
+     * indicados pelos parâmetros. A soma é lida da tabela de totais por período,
+     * sem percorrer as leituras.
      * @param year ano de referência para o cálculo
      * @param month mês de referência para o cálculo
      * @return a soma dos valores de leitura, refentes ao mês e ano indicados
      */
     public long getSumYearMonthReads (int year, int month) {
-        return this.db.AptReadDao().
-                getSumYearMonthListAptRead("" + year, String.
-                        format("%02d", month));
+        PeriodSummary summary = this.getPeriodSummary(year, month);
+        return summary != null ? summary.getSumReads() : 0;
     }
 
     /**
-     * Método que retorna a quantidade de leituras contidas nas
-     * visualizações, de acordo com o mês e ano passados como parâmetros.
+     * Método que retorna a quantidade de leituras do mês e ano passados como
+     * parâmetros. A quantidade é lida da tabela de totais por período, sem
+     * percorrer as leituras.
      * @param year ano de referência para busca
      * @param month mês de referência para busca
-     * @return a soma das leituras correspondentes ao mês e ano recebidos
+     * @return a quantidade de leituras correspondentes ao mês e ano recebidos
      */
+    @Override
     public int getTotalYearMonthReads (int year, int month) {
-//        int resp = this.db.ReadDataDao().getTotalYearMonthReadData(
-//                ""+year, ""+ String.format ("%02d",month));
-        int resp = this.db.AptReadDao().
-                getTotalYearMonthAptRead(""+year, String.format ("%02d",month));
-        return resp;
+        PeriodSummary summary = this.getPeriodSummary(year, month);
+        return summary != null ? summary.getTotalReads() : 0;
     }
 
     /* #########################################################
@@ -187,9 +559,13 @@ public class DataRWManager implements GuiBackendManager {
      */
     @Override
     public int getTotalApartments () {
-        int resp = -1;
-        resp =  this.db.ApartmentDao().getTotalApartments ();
-        return resp;
+        this.getObservedDatabase();
+        return this.totalApartments.get(0, new EntityCache.Loader<Integer, Integer>() {
+            @Override
+            public Integer load(Integer key) {
+                return apartmentDao().getTotalApartments();
+            }
+        });
     }
 
     /**
@@ -211,18 +587,12 @@ public class DataRWManager implements GuiBackendManager {
      */
     @Override
     public boolean existApartment(String block, int num) {
-        boolean resp = false;
-        Apartment test = this.db.ApartmentDao()
-                .getApartment(block, "" + num);
-        if (test != null) {
-            resp = true;
-        }
-        return resp;
+        return this.getNavigationIndex().positionOf(block, num) != AptNavigationIndex.NOT_FOUND;
     }
 
     /**
      * Método que verifica se um apartamento é o primeiro da relação de
-     * cadastrados no sistema. Ou seja, o apartamento de menor identificador.
+     * cadastrados no sistema, na ordem de bloco e número.
      * Essa busca é baseada nas informações passadas como parâmatros.
      * @param block nome do bloco do apartamento
      * @param num número do apartamento
@@ -231,16 +601,15 @@ public class DataRWManager implements GuiBackendManager {
      */
     @Override
     public boolean isFirstApartment(String block, int num) {
-        boolean resp = false;
-        Apartment aptTest = this.getFirstApartment();
-        resp = (block.contentEquals(aptTest.getBlock()) &&
-                num == aptTest.getNum());
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        int position = index.positionOf(block, num);
+        return position != AptNavigationIndex.NOT_FOUND
+                && index.previous(position) == AptNavigationIndex.NOT_FOUND;
     }
 
     /**
      * Método que verifica se um apartamento é o últmo da relação de
-     * cadastrados no sistema. Ou seja, o apartamento de maior identificador.
+     * cadastrados no sistema, na ordem de bloco e número.
      * Essa busca é baseada nas informações passadas como parâmatros.
      * @param block nome do bloco do apartamento
      * @param num número do apartamento
@@ -249,24 +618,21 @@ public class DataRWManager implements GuiBackendManager {
      */
     @Override
     public boolean isLastApartment(String block, int num) {
-        boolean resp = false;
-        Apartment aptTest = this.db.ApartmentDao().
-                getLastApartment();
-        resp = (block.contentEquals(aptTest.getBlock()) &&
-                num == aptTest.getNum());
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        int position = index.positionOf(block, num);
+        return position != AptNavigationIndex.NOT_FOUND
+                && index.next(position) == AptNavigationIndex.NOT_FOUND;
     }
 
     /**
-     * Método que retorna o primeiro apartamento cadastrado, com
-     * o menor id disponível.
-     * @return o apartamento com o menor id
+     * Método que retorna o primeiro apartamento cadastrado, na ordem
+     * de bloco e número.
+     * @return o primeiro apartamento, ou null caso não haja apartamentos
      */
     @Override
     public Apartment getFirstApartment() {
-        Apartment resp = this.db.ApartmentDao().
-                getFirstApartment();
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        return index.size() > 0 ? index.get(0) : null;
     }
 
     /**
@@ -278,108 +644,129 @@ public class DataRWManager implements GuiBackendManager {
      */
     @Override
     public Apartment getApartment(String block, int num) {
-        Apartment resp = this.db.ApartmentDao()
-                .getApartment(block, "" + num);
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        return this.getAt(index, index.positionOf(block, num));
     }
 
     /**
-     * Método que retorna o próximo apartamento, cujo identificador
-     * é subsequente ao apartamento referente às informações passadas
+     * Método que retorna o próximo apartamento, na ordem de bloco e número,
+     * em relação ao apartamento referente às informações passadas
      * nos parâmetros.
      * @param block nome do bloco de referência
      * @param num número do apartamento de referência
-     * @return o próximo apartamento, com id subsequente ao da entrada
+     * @return o próximo apartamento, ou null caso a referência seja o último
+     * ou não exista
      */
     @Override
     public Apartment getNextApartment(String block, int num) {
-        Apartment resp;
-        Apartment actualApt = this.getApartment(block, num);
-        int actualId = actualApt.getId();
-        resp = this.db.ApartmentDao()
-                .getApartmentById(actualId + 1);
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        int position = index.positionOf(block, num);
+        if (position == AptNavigationIndex.NOT_FOUND) {
+            return null;
+        }
+        return this.getAt(index, index.next(position));
     }
 
     /**
-     * Método que retorna o apartamento anterior, cujo identificador
-     * é antecedente ao apartamento referente às informações passadas
+     * Método que retorna o apartamento anterior, na ordem de bloco e número,
+     * em relação ao apartamento referente às informações passadas
      * nos parâmetros.
      * @param block nome do bloco de referência
      * @param num número do apartamento de referência
-     * @return o apartamento anterior, com id antecedente ao da entrada
+     * @return o apartamento anterior, ou null caso a referência seja o primeiro
+     * ou não exista
      */
     @Override
     public Apartment getPreviousApartment(String block, int num) {
-        Apartment resp;
-        Apartment actualApt = this.getApartment(block, num);
-        int actualId = actualApt.getId();
-        resp = this.db.ApartmentDao()
-                .getApartmentById(actualId - 1);
-        return resp;
+        AptNavigationIndex index = this.getNavigationIndex();
+        int position = index.positionOf(block, num);
+        if (position == AptNavigationIndex.NOT_FOUND) {
+            return null;
+        }
+        return this.getAt(index, index.previous(position));
+    }
+
+    /**
+     * Método que retorna o primeiro apartamento de um bloco, na ordem
+     * de navegação.
+     * @param block nome do bloco
+     * @return o primeiro apartamento do bloco, ou null caso o bloco não exista
+     */
+    @Override
+    public Apartment getFirstApartmentOfBlock(String block) {
+        AptNavigationIndex index = this.getNavigationIndex();
+        return this.getAt(index, index.firstOfBlock(block));
+    }
+
+    /**
+     * Método que retorna o primeiro apartamento, na ordem de navegação,
+     * que ainda não possui leitura no mês atual.
+     * @return o primeiro apartamento sem leitura, ou null caso todos já
+     * tenham leitura
+     */
+    @Override
+    public Apartment getFirstUnreadApartment() {
+        AptNavigationIndex index = this.getNavigationIndex();
+        List<Integer> readIds = this.readAptIds.get(ReadData.currentPeriod(),
+                new EntityCache.Loader<Integer, List<Integer>>() {
+            @Override
+            public List<Integer> load(Integer period) {
+                return Collections.unmodifiableList(readDataDao().listReadAptIds(period));
+            }
+        });
+        CompletionTracker tracker = new CompletionTracker(index.size(),
+                index.positionsOfIds(readIds));
+        return this.getAt(index, tracker.nextUnread(0));
     }
 
     /**
      * Método que lista os nomes de blocos, os quais existem apartamentos
-     * cadastrados.
+     * cadastrados, na ordem de navegação.
      * @return a lista dos nomes dos blocos
      */
     @Override
     public Vector<String> listBlocks() {
-        Vector<String> resp = new Vector<>();
-        List<String> listBlock = this.db.ApartmentDao().listAllBlocks();
-        if (listBlock != null) {
-            resp.addAll(listBlock);
-        }
-        return resp;
+        return new Vector<>(this.getNavigationIndex().getBlocks());
     }
 
     /**
      * Método que faz a inserção ou atualização (caso já exista) de uma nova
-     * leitura.
+     * leitura. A gravação é feita num único comando, pois a leitura existente
+     * do apartamento no mesmo período é substituída pela restrição de unicidade.
      * @param r o objeto que representa a nova leitura
      */
     @Override
     public void insertUpdateReadData(ReadData r) {
-        ReadData rTest = this.db.ReadDataDao()
-                .getCurrentReadDataById(r.getIdApt());
-        if (rTest == null) {
-            this.db.ReadDataDao().insertReadData(r);
-        }
-        else if (r.getReadValue() != rTest.getReadValue()){
-            r.setIdRead(rTest.getIdRead());
-            this.db.ReadDataDao().updateReadData(r);
-        }
+        this.readDataDao().insertReadData(r);
+        this.onReadsWritten();
+    }
+
+    /**
+     * Método que faz a inserção ou atualização (caso já existam) de uma lista
+     * de leituras, numa única transação.
+     * @param list a lista de leituras a serem gravadas
+     */
+    @Override
+    public void insertUpdateReadDataList(List<ReadData> list) {
+        this.readDataDao().upsertReadDataList(list);
+        this.onReadsWritten();
     }
 
     /**
      * Método que retorna o ano e mês da penúltima leitura completa,
-     * anterior à leitura atual.
-     * Inicialmente, há um carregamento do primeiro apartamento e sua leitura
-     * no mês atual, com objetivo de obter qual mês e ano ocorreu a última leitura.
-     * Com as informações de data, o próximo passo é buscar a leitura anterior
-     * à data encontrada. Assim que o mês e ano dessa leitura anterior é encontrada,
-     * as mesmas são preparadas para retorno do método.
-     * @return array de string que armazena o ano e mês da penúltima leitura
+     * anterior à leitura atual. Corresponde ao último período fechado
+     * anterior ao mês atual, obtido numa única busca pelo índice
+     * (status, periodo) da tabela ReadingPeriod.
+     * @return array de string que armazena o ano e mês da penúltima leitura,
+     * ou strings vazias caso não exista período fechado anterior
      */
     @Override
     public String [] getLastYearMonthCompleteRead() {
         String [] resp = new String [2];
-        int idFirstApt = this.db.ApartmentDao().getFirstApartment().getId();
-        ReadData firstReadCurrent = db.ReadDataDao().getCurrentReadDataById(idFirstApt);
-        if (firstReadCurrent != null) {
-            String yearCurr =  firstReadCurrent.getDateRead().substring(0,4);
-            String monthCurr = firstReadCurrent.getDateRead().substring(5,7);
-            ReadData beforeRead = db.ReadDataDao().
-                    getLastReadPastMonth(yearCurr, monthCurr);
-            if (beforeRead != null) {
-                resp [0] = (beforeRead.getDateRead()).substring(0,4); //year
-                resp [1] = (beforeRead.getDateRead()).substring(5,7); //month
-            }
-            else {
-                resp [0] = "";
-                resp [1] = "";
-            }
+        ReadingPeriod lastClosed = this.getLastClosedPeriodBefore(ReadData.currentPeriod());
+        if (lastClosed != null) {
+            resp [0] = "" + lastClosed.getYear();
+            resp [1] = String.format("%02d", lastClosed.getMonth());
         }
         else {
             resp [0] = "";
@@ -388,6 +775,62 @@ public class DataRWManager implements GuiBackendManager {
         return resp;
     }
 
+    /**
+     * Método que retorna o último período fechado, anterior ao indicado. É a
+     * referência de comparação da planilha do período indicado.
+     * @param period período de referência (ano * 100 + mês)
+     * @return o último período fechado anterior, ou null caso não exista
+     */
+    public ReadingPeriod getLastClosedPeriodBefore (int period) {
+        this.getObservedDatabase();
+        return this.lastClosedPeriods.get(period,
+                new EntityCache.Loader<Integer, ReadingPeriod>() {
+            @Override
+            public ReadingPeriod load(Integer key) {
+                return readingPeriodDao().getLastClosedBefore(key);
+            }
+        });
+    }
+
+    /**
+     * Método que fecha o período de leitura do mês e ano indicados, numa única
+     * transação: a quantidade de leituras é obtida dos totais do período, e o
+     * período é marcado como fechado, com a data e hora do fechamento. Caso o
+     * período ainda não exista, o mesmo é criado já fechado. Fechar novamente
+     * um período apenas atualiza esses valores. O banco fica reservado durante
+     * a transação, e os DAOs usam a mesma instância da transação.
+     * @param year ano do período
+     * @param month mês do período
+     */
+    @Override
+    public void closePeriod(int year, int month) {
+        final int period = ReadData.periodOf(year, month);
+        final DatabaseRateio db = this.acquireDatabase();
+        try {
+            db.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    PeriodSummary summary = periodSummaryDao(db).getPeriodSummary(period);
+                    int totalReads = summary != null ? summary.getTotalReads() : 0;
+                    String closedAt = LocalDateTime.now().withNano(0).toString();
+                    int updated = readingPeriodDao(db).closeReadingPeriod(period, closedAt, totalReads);
+                    if (updated == 0) {
+                        ReadingPeriod p = new ReadingPeriod();
+                        p.setPeriod(period);
+                        p.setStatus(ReadingPeriod.STATUS_CLOSED);
+                        p.setClosedAt(closedAt);
+                        p.setTotalReads(totalReads);
+                        readingPeriodDao(db).upsertReadingPeriod(p);
+                    }
+                }
+            });
+        }
+        finally {
+            this.releaseDatabase();
+        }
+        this.onTablesChanged(Collections.singleton("ReadingPeriod"));
+    }
+
     /*
     @Override
     public void writeCSVSheet(int prevYear, int prevMonth, int currYear, int currMonth) throws IOException {
@@ -454,14 +897,18 @@ public class DataRWManager implements GuiBackendManager {
      * entre os meses e anos indicados nos parâmetros. A planilha contém
      * informações referentes ao nome do condomínio, consumo total dos
      * apartamentos, e o consumo individual de cada um.
-     * Inicialmente, é feita o carregamento das leituras dos meses passados
-     * como parâmetros. Depois, é feito um cálculo da soma das diferenças
-     * entre os valores dessas leituras, com relação a cada apartamento.
-     * A partir daí, inica-se a escrita do arquivo em formato CSV, com
-     * a geração de um cabeçalho contendo as informações do condomínio,
-     * o total de consumo (soma das diferenças), e uma lista contendo
-     * informações de cada apartamento, seu consumo individual e a
-     * porcentagem desse consumo em relação ao total.
+     * Inicialmente, é feita a consulta dos totais do intervalo, ou seja, a
+     * soma dos consumos dos apartamentos com leitura nos dois meses. Depois,
+     * uma única consulta retorna, por apartamento, as leituras dos dois meses
+     * já pareadas, percorrida por um cursor. Cada linha é escrita em formato
+     * CSV pelo CsvReportWriter assim que lida, com o consumo e a porcentagem
+     * calculados pelo RateioEngine, de forma que a memória usada não depende
+     * da quantidade de apartamentos. Antes das linhas, é escrito o cabeçalho
+     * com as informações do condomínio e o total de consumo. Apartamentos sem
+     * uma das leituras aparecem com o campo vazio e consumo zero. O banco fica
+     * reservado durante toda a geração. Gerações da mesma planilha, pedidas por
+     * tarefas diferentes (TaskWriteCSV e BatchExportJob), são feitas uma de cada
+     * vez, pois escrevem no mesmo arquivo temporário.
      * @param prevYear ano da leitura anterior a de referẽncia
      * @param prevMonth mês da leitura anterior a de referência
      * @param currYear ano referente à leitura atual ou de referência
@@ -473,54 +920,64 @@ public class DataRWManager implements GuiBackendManager {
         String fileName = this.getHomePath() + "output/" +
                 this.getNameCondominium () + "_" + currMonth +
                 "_" + currYear + ".csv";
-        List<AptRead> prevRead = this.getYearMonthListAptRead (prevYear, prevMonth);
-        List<AptRead> currRead = this.getYearMonthListAptRead (currYear, currMonth);
+        synchronized (this.sheetLock) {
+            int prevPeriod = ReadData.periodOf(prevYear, prevMonth);
+            int currPeriod = ReadData.periodOf(currYear, currMonth);
+            int written = 0;
 
-        long sumDiff = 0;
-        int totalData = currRead.size(); //this.getTotalApartments();
+            Tracer.Span span = Tracer.begin("report", "writeCSVSheet");
+            Tracer.Span phase = Tracer.begin("report", "totals");
+            DatabaseRateio db = null;
+            Cursor rows = null;
+            CsvReportWriter wr = null;
 
-        long currSumValueAptRead = this.getSumYearMonthReads(currYear, currMonth);
-        long prevSumValueAptRead = this.getSumYearMonthReads (prevYear, prevMonth);
-        sumDiff = Math.abs (currSumValueAptRead - prevSumValueAptRead);
+            try {
+                db = this.acquireDatabase();
+                ConsumptionTotals totals = this.aptReadDao(db).getConsumptionTotals(prevPeriod, currPeriod);
+                long totalVolume = totals.getTotalVolume();
+                phase.arg("pairedUnits", totals.getPairedApts()).end();
 
-        String fileHeader = "Condominio:," + this.getNameCondominium() + "\n"
-                + "Periodo:," + String.format("%02d", prevMonth) + "/" + prevYear
-                + " a " + String.format("%02d", currMonth) + "/" + currYear + "\n"
-                + ",,\n"
-                + "Volume total (m³):," + sumDiff + "\n"
-                + ",,\n"
-                + "Bloco,Apartamento,Leitura anterior (m³),Leitura atual (m³),"
-                + "Consumo unitário (m³),% rateio\n";
-        long valuePrev = 0;
-        long valueCurr = 0;
-        int valueDiff = 0;
-        double percentDiff = 0;
-        Apartment a;
-        String rowWr = "";
+                phase = Tracer.begin("report", "write");
+                rows = this.aptReadDao(db).getConsumptionCursor(prevPeriod, currPeriod);
+                wr = new CsvReportWriter(new File(fileName));
+                wr.writeHeader(this.getNameCondominium(), prevYear, prevMonth,
+                        currYear, currMonth, totalVolume);
+                int colBlock = rows.getColumnIndexOrThrow("bloco");
+                int colNum = rows.getColumnIndexOrThrow("numero");
+                int colPrev = rows.getColumnIndexOrThrow("valorAnterior");
+                int colCurr = rows.getColumnIndexOrThrow("valorAtual");
+                while (rows.moveToNext()) {
+                    long valuePrev = rows.isNull(colPrev) ? RateioEngine.NO_VALUE : rows.getLong(colPrev);
+                    long valueCurr = rows.isNull(colCurr) ? RateioEngine.NO_VALUE : rows.getLong(colCurr);
+                    long valueDiff = RateioEngine.consumption(valuePrev, valueCurr);
+                    wr.writeRow(rows.getString(colBlock), rows.getInt(colNum), valuePrev, valueCurr,
+                            valueDiff, RateioEngine.percent(valueDiff, totalVolume));
+                    written++;
+                }
+                phase.arg("rows", written).end();
 
-        try {
-            RandomAccessFile fr = new RandomAccessFile (new File(fileName), "rw");
-            fr.writeChars(fileHeader);
-            DecimalFormat df = new DecimalFormat("#0.00");
-            for (int i = 1; i <= totalData; i++) {
-                valuePrev = prevRead.get(i-1).getReadDataValueRead();
-                valueCurr = currRead.get(i-1).getReadDataValueRead();
-                valueDiff = (int) Math.abs (valueCurr - valuePrev);
-                percentDiff = ((double)valueDiff/(double)sumDiff)*100;
-
-                rowWr = currRead.get(i-1).getBloco() + "," + currRead.get(i-1).getFormatedNumero() + ","
-                        + valuePrev + "," + valueCurr + "," + valueDiff
-                        + "," + df.format(percentDiff).replace(",", ".") + "\n";
-                fr.writeChars(rowWr);
+                phase = Tracer.begin("report", "commit");
+                wr.commit();
 
             }
-            fr.close ();
-
-        }
-        catch (IOException e) {
-            this.writeLog("writeCSVSheet: " + e.getMessage());
-            throw e;
+            catch (IOException e) {
+                this.writeLog("writeCSVSheet: " + e.getMessage());
+                throw e;
 
+            }
+            finally {
+                phase.end();
+                if (rows != null) {
+                    rows.close();
+                }
+                if (wr != null) {
+                    wr.close();
+                }
+                if (db != null) {
+                    this.releaseDatabase();
+                }
+                span.arg("rows", written).end();
+            }
         }
     }
 
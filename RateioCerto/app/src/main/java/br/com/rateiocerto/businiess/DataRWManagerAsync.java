@@ -0,0 +1,316 @@
+package br.com.rateiocerto.businiess;
+
+import androidx.annotation.NonNull;
+import androidx.concurrent.futures.CallbackToFutureAdapter;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.interfaces.GuiBackendManager;
+import br.com.rateiocerto.interfaces.GuiBackendManagerAsync;
+
+/**
+ * Rateio Certo
+ *
+ * DataRWManagerAsync: classe que implementa a interface não bloqueante da camada
+ * de negócio. Cada chamada é repassada ao DataRWManager, mas executada na linha
+ * dedicada ao BD (DbExecutors.db), liberando a linha da interface gráfica.
+ * Como essa linha é única, as operações são executadas na ordem em que foram
+ * pedidas. Com a instrumentação ligada, as chamadas passam pelo gerenciador
+ * instrumentado (DataRWManager.getBackend), sendo medidas na linha do BD.
+ * Os DAOs continuam síncronos, sem os tipos assíncronos do Room (room-guava e
+ * room-rxjava2): uma chamada do gerenciador combina vários DAOs, os caches, a
+ * sessão de leitura e a reserva do banco, e por isso é a chamada inteira, e
+ * não cada consulta, que roda fora da linha da interface gráfica. A operação
+ * assíncrona é criada pelo CallbackToFutureAdapter.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class DataRWManagerAsync implements GuiBackendManagerAsync {
+
+    private final DataRWManager manager;
+    private final GuiBackendManager backend;
+    private final Executor executor;
+
+    /**
+     * Construtor da classe.
+     * @param manager gerenciador síncrono da camada de negócio
+     * @param executor executor no qual as operações serão realizadas
+     */
+    public DataRWManagerAsync (DataRWManager manager, Executor executor) {
+        this.manager = manager;
+        this.backend = manager.getBackend();
+        this.executor = executor;
+    }
+
+    /**
+     * Método que agenda uma operação no executor do BD, retornando o seu
+     * resultado como uma operação assíncrona. O banco do condomínio fica
+     * reservado durante a operação, não sendo fechado pelo DatabaseRegistry.
+     * @param task a operação a ser executada
+     * @param <T> o tipo do resultado da operação
+     * @return a operação assíncrona correspondente
+     */
+    public <T> ListenableFuture<T> submit (final Callable<T> task) {
+        return this.submit(task, true);
+    }
+
+    /**
+     * Método que agenda uma operação no executor do BD, indicando se ela usa o
+     * banco do condomínio. As operações que não usam o banco, como a gravação
+     * das métricas, não o reservam, e assim não o reabrem após a liberação de
+     * memória.
+     * @param task a operação a ser executada
+     * @param useDatabase true caso o banco deva ser reservado durante a operação
+     * @param <T> o tipo do resultado da operação
+     * @return a operação assíncrona correspondente
+     */
+    private <T> ListenableFuture<T> submit (final Callable<T> task, final boolean useDatabase) {
+        return CallbackToFutureAdapter.getFuture(new CallbackToFutureAdapter.Resolver<T>() {
+            @Override
+            public Object attachCompleter(@NonNull final CallbackToFutureAdapter.Completer<T> completer) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean leased = false;
+                        try {
+                            if (useDatabase) {
+                                manager.acquireDatabase();
+                                leased = true;
+                            }
+                            completer.set(task.call());
+                        }
+                        catch (Throwable t) {
+                            completer.setException(t);
+                        }
+                        finally {
+                            if (leased) {
+                                manager.releaseDatabase();
+                            }
+                        }
+                    }
+                });
+                return task;
+            }
+        });
+    }
+
+    @Override
+    public String getNameCondominium() {
+        return this.backend.getNameCondominium();
+    }
+
+    @Override
+    public ListenableFuture<Integer> getTotalApartments() {
+        return this.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return backend.getTotalApartments();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> existApartment(final String block, final int num) {
+        return this.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return backend.existApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> isFirstApartment(final String block, final int num) {
+        return this.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return backend.isFirstApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> isLastApartment(final String block, final int num) {
+        return this.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return backend.isLastApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getFirstApartment() {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getFirstApartment();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getApartment(final String block, final int num) {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getNextApartment(final String block, final int num) {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getNextApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getPreviousApartment(final String block, final int num) {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getPreviousApartment(block, num);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getFirstApartmentOfBlock(final String block) {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getFirstApartmentOfBlock(block);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Apartment> getFirstUnreadApartment() {
+        return this.submit(new Callable<Apartment>() {
+            @Override
+            public Apartment call() {
+                return backend.getFirstUnreadApartment();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Vector<String>> listBlocks() {
+        return this.submit(new Callable<Vector<String>>() {
+            @Override
+            public Vector<String> call() {
+                return backend.listBlocks();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<ReadData> getCurrentReadDataById(final int idApt) {
+        return this.submit(new Callable<ReadData>() {
+            @Override
+            public ReadData call() {
+                return backend.getCurrentReadDataById(idApt);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Integer> getTotalYearMonthReads(final int year, final int month) {
+        return this.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return backend.getTotalYearMonthReads(year, month);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> insertUpdateReadData(final ReadData r) {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                backend.insertUpdateReadData(r);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> insertUpdateReadDataList(final List<ReadData> list) {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                backend.insertUpdateReadDataList(list);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<String []> getLastYearMonthCompleteRead() {
+        return this.submit(new Callable<String []>() {
+            @Override
+            public String [] call() {
+                return backend.getLastYearMonthCompleteRead();
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> closePeriod(final int year, final int month) {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                backend.closePeriod(year, month);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeCSVSheet(final int prevYear, final int prevMonth, final int currYear, final int currMonth) {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                backend.writeCSVSheet(prevYear, prevMonth, currYear, currMonth);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<ReadSession> loadReadSession() {
+        return this.submit(new Callable<ReadSession>() {
+            @Override
+            public ReadSession call() {
+                int period = ReadData.currentPeriod();
+                return new ReadSession(manager.getNavigationIndex(),
+                        backend.getMonthListReadData(period / 100, period % 100),
+                        period, DataRWManagerAsync.this);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> dumpMetrics() {
+        return this.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                manager.dumpMetrics();
+                return null;
+            }
+        }, false);
+    }
+}
@@ -1,14 +1,22 @@
 package br.com.rateiocerto.businiess;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import br.com.rateiocerto.basics.Apartment;
 import br.com.rateiocerto.basics.AptRead;
+import br.com.rateiocerto.basics.PeriodSummary;
 import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.basics.ReadingPeriod;
+import br.com.rateiocerto.engine.RateioSchema;
 import br.com.rateiocerto.interfaces.ApartmentDao;
 import br.com.rateiocerto.interfaces.AptReadDao;
+import br.com.rateiocerto.interfaces.PeriodSummaryDao;
 import br.com.rateiocerto.interfaces.ReadDataDao;
+import br.com.rateiocerto.interfaces.ReadingPeriodDao;
 
 
 /**
@@ -22,9 +30,141 @@ import br.com.rateiocerto.interfaces.ReadDataDao;
  * @Author: Severino José (biujose@gmail.com)
  */
 
-@Database(entities = {Apartment.class, ReadData.class}, views = {AptRead.class}, version = 1)
+@Database(entities = {Apartment.class, ReadData.class, PeriodSummary.class,
+        ReadingPeriod.class}, views = {AptRead.class}, version = RateioSchema.VERSION)
 public abstract class DatabaseRateio extends RoomDatabase {
     public abstract ApartmentDao ApartmentDao ();
     public abstract ReadDataDao ReadDataDao ();
     public abstract AptReadDao AptReadDao ();
+    public abstract PeriodSummaryDao PeriodSummaryDao ();
+    public abstract ReadingPeriodDao ReadingPeriodDao ();
+
+    /**
+     * Método que cria os gatilhos de manutenção da tabela PeriodSummary,
+     * definidos em RateioSchema.
+     * @param database o banco de dados a ser alterado
+     */
+    static void createPeriodSummaryTriggers (SupportSQLiteDatabase database) {
+        for (String trigger : RateioSchema.PERIOD_SUMMARY_TRIGGERS) {
+            database.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Método que cria os gatilhos de abertura de períodos da tabela ReadingPeriod,
+     * definidos em RateioSchema.
+     * @param database o banco de dados a ser alterado
+     */
+    static void createReadingPeriodTriggers (SupportSQLiteDatabase database) {
+        for (String trigger : RateioSchema.READING_PERIOD_TRIGGERS) {
+            database.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Retorno de criação do BD. Os gatilhos não fazem parte do esquema gerado
+     * pelo Room, sendo criados aqui quando o BD é criado já na versão atual.
+     */
+    public static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase database) {
+            DatabaseRateio.createPeriodSummaryTriggers(database);
+            DatabaseRateio.createReadingPeriodTriggers(database);
+        }
+    };
+
+    /**
+     * Migração da versão 1 para a 2 do BD. Adiciona a coluna de período
+     * (ano * 100 + mês) na tabela ReadData, preenchida a partir da data de
+     * leitura já cadastrada, e cria os índices usados nas buscas por período.
+     * A view AptRead é recriada para expor o período das leituras.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE ReadData ADD COLUMN periodo INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE ReadData SET periodo = IFNULL (" +
+                    "CAST (STRFTIME ('%Y', data_leitura) AS INTEGER) * 100 + " +
+                    "CAST (STRFTIME ('%m', data_leitura) AS INTEGER), 0)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ReadData_id_apt_periodo` " +
+                    "ON `ReadData` (`id_apt`, `periodo`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ReadData_periodo` " +
+                    "ON `ReadData` (`periodo`)");
+            database.execSQL("DROP VIEW IF EXISTS `AptRead`");
+            database.execSQL("CREATE VIEW `AptRead` AS " + AptRead.VIEW_QUERY);
+        }
+    };
+
+    /**
+     * Migração da versão 2 para a 3 do BD. Remove leituras duplicadas de um
+     * mesmo apartamento e período, mantendo a mais recente, e torna único o
+     * índice (id_apt, periodo) da tabela ReadData.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DELETE FROM ReadData WHERE id_leitura NOT IN " +
+                    "(SELECT MAX (id_leitura) FROM ReadData GROUP BY id_apt, periodo)");
+            database.execSQL("DROP INDEX IF EXISTS `index_ReadData_id_apt_periodo`");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_ReadData_id_apt_periodo` " +
+                    "ON `ReadData` (`id_apt`, `periodo`)");
+        }
+    };
+
+    /**
+     * Migração da versão 3 para a 4 do BD. Cria o índice (bloco, numero) da
+     * tabela Apartment, usado na busca por apartamento e na ordem de navegação.
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_Apartment_bloco_numero` " +
+                    "ON `Apartment` (`bloco`, `numero`)");
+        }
+    };
+
+    /**
+     * Migração da versão 4 para a 5 do BD. Cria a tabela PeriodSummary, com os
+     * totais de leitura de cada período calculados a partir das leituras já
+     * cadastradas, e os gatilhos que a mantêm atualizada.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `PeriodSummary` (" +
+                    "`periodo` INTEGER NOT NULL, `total_leituras` INTEGER NOT NULL, " +
+                    "`soma_leituras` INTEGER NOT NULL, `min_leitura` INTEGER, " +
+                    "`max_leitura` INTEGER, PRIMARY KEY(`periodo`))");
+            database.execSQL("INSERT OR REPLACE INTO PeriodSummary (periodo, total_leituras, " +
+                    "soma_leituras, min_leitura, max_leitura) " +
+                    "SELECT periodo, COUNT (1), SUM (valor_leitura), MIN (valor_leitura), " +
+                    "MAX (valor_leitura) FROM ReadData GROUP BY periodo");
+            DatabaseRateio.createPeriodSummaryTriggers(database);
+        }
+    };
+
+    /**
+     * Migração da versão 5 para a 6 do BD. Cria a tabela ReadingPeriod, com um
+     * período para cada mês que já possui leituras. Os meses anteriores ao atual
+     * são considerados fechados, e o mês atual aberto. Também são criados os
+     * gatilhos que abrem os novos períodos.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `ReadingPeriod` (" +
+                    "`periodo` INTEGER NOT NULL, `status` INTEGER NOT NULL, " +
+                    "`fechado_em` TEXT, `total_leituras` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`periodo`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_ReadingPeriod_status_periodo` " +
+                    "ON `ReadingPeriod` (`status`, `periodo`)");
+            database.execSQL("INSERT OR REPLACE INTO ReadingPeriod " +
+                    "(periodo, status, fechado_em, total_leituras) " +
+                    "SELECT periodo, CASE WHEN periodo < " +
+                    "CAST (STRFTIME ('%Y%m', 'now', 'localtime') AS INTEGER) " +
+                    "THEN " + ReadingPeriod.STATUS_CLOSED + " ELSE " + ReadingPeriod.STATUS_OPEN +
+                    " END, NULL, total_leituras FROM PeriodSummary WHERE periodo > 0");
+            DatabaseRateio.createReadingPeriodTriggers(database);
+        }
+    };
 }
@@ -0,0 +1,266 @@
+package br.com.rateiocerto.businiess;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rateio Certo
+ *
+ * DatabaseRegistry: classe que mantém os bancos de dados dos condomínios abertos
+ * durante a execução do App. Cada banco é aberto uma única vez, somente quando
+ * usado pela primeira vez, e compartilhado por todas as telas e tarefas. Assim,
+ * evita-se a criação de várias conexões ao mesmo arquivo. Quando o sistema pede
+ * a liberação de memória, com o App em segundo plano, os bancos ociosos são
+ * fechados, sendo reabertos no próximo acesso.
+ * Como o aparelho pode gerenciar vários condomínios, a quantidade de bancos
+ * abertos é limitada: ao abrir um banco além do limite, o banco ocioso usado
+ * há mais tempo é fechado, sendo reaberto no seu próximo acesso.
+ * As operações que usam um banco o reservam (acquire) até o seu término
+ * (release). Um banco reservado nunca é fechado pelo limite de bancos abertos
+ * nem pela liberação de memória: enquanto todos os bancos abertos estiverem reservados, o limite é
+ * ultrapassado, e os bancos excedentes são fechados quando as suas reservas
+ * terminam.
+ * Os bancos não aceitam consultas na linha da interface gráfica: o acesso deve
+ * ser feito através do DataRWManagerAsync, ou de tarefas em segundo plano.
+ * Uma instância dessa classe pertence à aplicação (RateioApplication).
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class DatabaseRegistry {
+
+    //prefixo do nome do arquivo do BD de cada condomínio
+    static final String DB_NAME_PREFIX = "database_";
+
+    //extensão do BD pronto do condomínio, gerado pelo DatabaseBootstrap (tools)
+    static final String PREPACKAGED_EXTENSION = ".db";
+
+    //quantidade padrão de bancos de dados mantidos abertos ao mesmo tempo
+    public static final int DEFAULT_MAX_OPEN = 3;
+
+    private Context c;
+    private int maxOpen;
+    private LinkedHashMap<String, DatabaseRateio> openDatabases;
+    private Map<String, Integer> leases;
+
+    /**
+     * Construtor da classe, com a quantidade padrão de bancos abertos.
+     * @param c contexto da aplicação, usado para carregar os bancos de dados
+     */
+    public DatabaseRegistry (Context c) {
+        this(c, DatabaseRegistry.DEFAULT_MAX_OPEN);
+    }
+
+    /**
+     * Construtor da classe. Os bancos abertos são mantidos em ordem de uso,
+     * do usado há mais tempo ao mais recente.
+     * @param c contexto da aplicação, usado para carregar os bancos de dados
+     * @param maxOpen quantidade máxima de bancos ociosos mantidos abertos ao mesmo tempo
+     */
+    public DatabaseRegistry (Context c, int maxOpen) {
+        this.c = c.getApplicationContext();
+        this.maxOpen = maxOpen;
+        this.openDatabases = new LinkedHashMap<>(16, 0.75f, true);
+        this.leases = new HashMap<>();
+    }
+
+    /**
+     * Método que retorna o banco de dados do condomínio indicado. Caso ainda
+     * não esteja aberto, o banco é criado ou aberto nesse momento, com as
+     * migrações necessárias. Caso o banco ainda não exista e haja, na pasta do
+     * condomínio, um banco pronto gerado pelo DatabaseBootstrap, ele é copiado
+     * pelo Room e usado como banco inicial, dispensando a carga dos
+     * apartamentos. Com o rastreamento ligado, a abertura do banco é
+     * registrada no Tracer.
+     * @param nameCondominium nome do condomínio
+     * @return o banco de dados do condomínio
+     */
+    public synchronized DatabaseRateio getDatabase (String nameCondominium) {
+        DatabaseRateio resp = this.openDatabases.get(nameCondominium);
+        if (resp == null) {
+            RoomDatabase.Builder<DatabaseRateio> builder = Room.databaseBuilder(this.c,
+                    DatabaseRateio.class, DatabaseRegistry.DB_NAME_PREFIX + nameCondominium)
+                    .setQueryExecutor(DbExecutors.db())
+                    .setTransactionExecutor(DbExecutors.db())
+                    .addMigrations(DatabaseRateio.MIGRATION_1_2,
+                            DatabaseRateio.MIGRATION_2_3,
+                            DatabaseRateio.MIGRATION_3_4,
+                            DatabaseRateio.MIGRATION_4_5,
+                            DatabaseRateio.MIGRATION_5_6)
+                    .addCallback(DatabaseRateio.CALLBACK);
+            File prepackaged = this.getPrepackagedFile(nameCondominium);
+            if (prepackaged != null) {
+                builder.createFromFile(prepackaged);
+            }
+            if (Tracer.isEnabled()) {
+                builder.openHelperFactory(new TracingOpenHelperFactory(
+                        new FrameworkSQLiteOpenHelperFactory()));
+            }
+            resp = builder.build();
+            this.openDatabases.put(nameCondominium, resp);
+            this.closeIdleOverLimit(nameCondominium);
+        }
+        return resp;
+    }
+
+    /**
+     * Método que reserva o banco de dados do condomínio para uma operação,
+     * impedindo o seu fechamento até a chamada de release. As reservas são
+     * contadas, podendo ser feitas mais de uma vez, inclusive pela mesma linha.
+     * Enquanto reservado, getDatabase retorna sempre a mesma instância.
+     * @param nameCondominium nome do condomínio
+     * @return o banco de dados do condomínio
+     */
+    public synchronized DatabaseRateio acquire (String nameCondominium) {
+        DatabaseRateio resp = this.getDatabase(nameCondominium);
+        this.leases.put(nameCondominium, this.getLeases(nameCondominium) + 1);
+        return resp;
+    }
+
+    /**
+     * Método que encerra uma reserva feita com acquire. Ao terminar a última
+     * reserva, os bancos ociosos além do limite são fechados.
+     * @param nameCondominium nome do condomínio
+     */
+    public synchronized void release (String nameCondominium) {
+        int count = this.getLeases(nameCondominium) - 1;
+        if (count > 0) {
+            this.leases.put(nameCondominium, count);
+        }
+        else {
+            this.leases.remove(nameCondominium);
+            this.closeIdleOverLimit(null);
+        }
+    }
+
+    /**
+     * Método que fornece a quantidade de reservas do banco do condomínio.
+     * @param nameCondominium nome do condomínio
+     * @return a quantidade de reservas em andamento
+     */
+    public synchronized int getLeases (String nameCondominium) {
+        Integer resp = this.leases.get(nameCondominium);
+        return resp != null ? resp : 0;
+    }
+
+    /**
+     * Método que fecha os bancos ociosos usados há mais tempo, enquanto a
+     * quantidade de bancos abertos ultrapassar o limite. Os bancos reservados
+     * e o banco indicado, recém aberto, são mantidos.
+     * @param keep nome do condomínio cujo banco deve ser mantido, ou null
+     */
+    private void closeIdleOverLimit (String keep) {
+        Iterator<Map.Entry<String, DatabaseRateio>> it = this.openDatabases.entrySet().iterator();
+        while (this.openDatabases.size() > this.maxOpen && it.hasNext()) {
+            Map.Entry<String, DatabaseRateio> entry = it.next();
+            if (!entry.getKey().equals(keep) && !this.leases.containsKey(entry.getKey())) {
+                entry.getValue().close();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Método que retorna o banco pronto do condomínio, (pasta do App)/(condomínio)/
+     * (condomínio).db, quando ele existe e o banco do condomínio ainda não foi criado.
+     * @param nameCondominium nome do condomínio
+     * @return o arquivo do banco pronto, ou null caso não deva ser usado
+     */
+    private File getPrepackagedFile (String nameCondominium) {
+        File home = this.c.getExternalFilesDir("");
+        if (home == null || this.c.getDatabasePath(DatabaseRegistry.DB_NAME_PREFIX
+                + nameCondominium).exists()) {
+            return null;
+        }
+        File resp = new File(home, nameCondominium + "/" + nameCondominium
+                + DatabaseRegistry.PREPACKAGED_EXTENSION);
+        return resp.isFile() ? resp : null;
+    }
+
+    /**
+     * Método que fornece a quantidade máxima de bancos ociosos mantidos abertos.
+     * @return o limite de bancos abertos
+     */
+    public int getMaxOpen() {
+        return this.maxOpen;
+    }
+
+    /**
+     * Método que indica se o banco de dados do condomínio está aberto no registro.
+     * @param nameCondominium nome do condomínio
+     * @return true caso o banco esteja aberto
+     */
+    public synchronized boolean isOpen (String nameCondominium) {
+        return this.openDatabases.containsKey(nameCondominium);
+    }
+
+    /**
+     * Método que fecha o banco de dados do condomínio indicado, caso esteja
+     * aberto e não esteja reservado.
+     * @param nameCondominium nome do condomínio
+     * @return true caso o banco tenha sido fechado, ou já estivesse fechado
+     */
+    public synchronized boolean close (String nameCondominium) {
+        if (this.leases.containsKey(nameCondominium)) {
+            return false;
+        }
+        DatabaseRateio db = this.openDatabases.remove(nameCondominium);
+        if (db != null) {
+            db.close();
+        }
+        return true;
+    }
+
+    /**
+     * Método que fecha todos os bancos de dados abertos, inclusive os
+     * reservados. Deve ser usado apenas quando não há operações em andamento,
+     * como no encerramento dos testes.
+     */
+    public synchronized void closeAll () {
+        for (DatabaseRateio db : this.openDatabases.values()) {
+            db.close();
+        }
+        this.openDatabases.clear();
+    }
+
+    /**
+     * Método que fecha os bancos de dados abertos que não estão reservados.
+     * Os bancos em uso por tarefas em segundo plano continuam abertos, sendo
+     * fechados pelo limite de bancos abertos após o término das suas reservas.
+     * @return a quantidade de bancos fechados
+     */
+    public synchronized int closeIdle () {
+        int resp = 0;
+        Iterator<Map.Entry<String, DatabaseRateio>> it = this.openDatabases.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, DatabaseRateio> entry = it.next();
+            if (!this.leases.containsKey(entry.getKey())) {
+                entry.getValue().close();
+                it.remove();
+                resp++;
+            }
+        }
+        return resp;
+    }
+
+    /**
+     * Método chamado pela aplicação quando o sistema pede a liberação de memória.
+     * Os bancos ociosos são fechados apenas quando o App já não está visível; os
+     * bancos reservados por tarefas em andamento são mantidos.
+     * @param level nível de liberação de memória indicado pelo sistema
+     */
+    public void onTrimMemory (int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            this.closeIdle();
+        }
+    }
+}
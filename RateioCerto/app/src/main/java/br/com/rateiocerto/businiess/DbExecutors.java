@@ -0,0 +1,97 @@
+package br.com.rateiocerto.businiess;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import br.com.rateiocerto.interfaces.ResultCallback;
+
+/**
+ * Rateio Certo
+ *
+ * DbExecutors: classe que concentra as linhas de execução usadas no acesso ao BD.
+ * Todas as consultas e gravações do App rodam numa única linha dedicada, fora
+ * da linha da interface gráfica, o que garante a ordem das operações e evita
+ * disputa entre escritores no mesmo arquivo. Os resultados são entregues à
+ * interface gráfica através do executor da linha principal.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class DbExecutors {
+
+    private static ExecutorService dbExecutor;
+    private static Executor mainThreadExecutor;
+
+    /**
+     * Método que retorna o executor dedicado ao BD, criado no primeiro acesso.
+     * @return o executor de uma única linha de execução, em segundo plano
+     */
+    public static synchronized ExecutorService db () {
+        if (DbExecutors.dbExecutor == null) {
+            DbExecutors.dbExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "rateio-db");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return DbExecutors.dbExecutor;
+    }
+
+    /**
+     * Método que retorna o executor da linha principal, a da interface gráfica.
+     * @return o executor da linha principal
+     */
+    public static synchronized Executor mainThread () {
+        if (DbExecutors.mainThreadExecutor == null) {
+            final Handler handler = new Handler(Looper.getMainLooper());
+            DbExecutors.mainThreadExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+        return DbExecutors.mainThreadExecutor;
+    }
+
+    /**
+     * Método que registra um retorno para o resultado de uma operação assíncrona.
+     * O retorno é sempre chamado na linha da interface gráfica, seja com o
+     * resultado da operação ou com o erro ocorrido.
+     * @param future a operação assíncrona
+     * @param callback o retorno a ser chamado quando a operação terminar
+     * @param <T> o tipo do resultado da operação
+     */
+    public static <T> void addCallback (final ListenableFuture<T> future,
+                                        final ResultCallback<T> callback) {
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                T value;
+                try {
+                    value = future.get();
+                }
+                catch (ExecutionException e) {
+                    callback.onError(e.getCause());
+                    return;
+                }
+                catch (InterruptedException | CancellationException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResult(value);
+            }
+        }, DbExecutors.mainThread());
+    }
+}
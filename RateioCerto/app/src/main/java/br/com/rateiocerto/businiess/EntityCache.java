@@ -0,0 +1,236 @@
+package br.com.rateiocerto.businiess;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rateio Certo
+ *
+ * EntityCache: cache de leitura (read-through) dos resultados de uma consulta
+ * ao BD, indexados por uma chave. Os resultados são mantidos em ordem de uso,
+ * e o menos usado é descartado quando a capacidade é ultrapassada (LRU).
+ * Resultados nulos (como um apartamento ainda sem leitura) também são mantidos.
+ * Cada cache indica as tabelas das quais os seus resultados dependem, sendo
+ * esvaziado quando alguma delas é alterada (InvalidationTracker do Room, ou
+ * as gravações do próprio DataRWManager).
+ * Resultados mutáveis, como as entidades do Room, são mantidos e retornados
+ * como cópias (Copier), de forma que a alteração do objeto por um chamador
+ * não altera o cache nem os objetos dos demais chamadores.
+ * Os acertos, faltas, descartes e esvaziamentos são contados, para avaliar o
+ * ganho do cache.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class EntityCache<K, V> {
+
+    /**
+     * Loader: consulta executada quando a chave não está no cache.
+     */
+    public interface Loader<K, V> {
+
+        /**
+         * Método que carrega o resultado de uma chave do BD.
+         * @param key a chave
+         * @return o resultado da consulta, podendo ser null
+         */
+        V load (K key);
+    }
+
+    /**
+     * Copier: cópia de um resultado mutável.
+     */
+    public interface Copier<V> {
+
+        /**
+         * Método que copia um resultado não nulo.
+         * @param value o resultado
+         * @return a cópia do resultado
+         */
+        V copy (V value);
+    }
+
+    //marcador dos resultados nulos mantidos no cache
+    private static final Object NULL = new Object();
+
+    private final String name;
+    private final int capacity;
+    private final Set<String> tables;
+    private final Copier<V> copier;
+    private final LinkedHashMap<K, Object> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Construtor da classe, para resultados imutáveis.
+     * @param name nome do cache, usado nas métricas
+     * @param capacity quantidade máxima de resultados mantidos
+     * @param tables tabelas das quais os resultados dependem
+     */
+    public EntityCache (String name, int capacity, String... tables) {
+        this(name, capacity, null, tables);
+    }
+
+    /**
+     * Construtor da classe, para resultados mutáveis, que são copiados ao
+     * serem mantidos e a cada acerto.
+     * @param name nome do cache, usado nas métricas
+     * @param capacity quantidade máxima de resultados mantidos
+     * @param copier cópia dos resultados, ou null caso sejam imutáveis
+     * @param tables tabelas das quais os resultados dependem
+     */
+    public EntityCache (String name, final int capacity, Copier<V> copier, String... tables) {
+        this.name = name;
+        this.capacity = capacity;
+        this.copier = copier;
+        this.tables = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tables)));
+        this.entries = new LinkedHashMap<K, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+                if (size() > capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Método que retorna o resultado de uma chave, consultando o BD apenas
+     * quando a chave não está no cache. A consulta é feita fora do bloqueio
+     * do cache; caso o cache seja esvaziado durante a consulta, o resultado
+     * é retornado, mas não é mantido, pois pode estar desatualizado.
+     * Com um Copier, cada chamador recebe o seu próprio objeto.
+     * @param key a chave
+     * @param loader consulta ao BD
+     * @return o resultado da chave
+     */
+    @SuppressWarnings("unchecked")
+    public V get (K key, Loader<K, V> loader) {
+        long gen;
+        synchronized (this) {
+            Object value = this.entries.get(key);
+            if (value != null) {
+                this.hits.increment();
+                return value == EntityCache.NULL ? null : this.copyOf((V) value);
+            }
+            gen = this.generation;
+        }
+        this.misses.increment();
+        V resp = loader.load(key);
+        synchronized (this) {
+            if (gen == this.generation) {
+                this.entries.put(key, resp != null ? this.copyOf(resp) : EntityCache.NULL);
+            }
+        }
+        return resp;
+    }
+
+    /**
+     * Método que copia um resultado, caso o cache tenha um Copier.
+     * @param value o resultado, não nulo
+     * @return a cópia do resultado, ou o próprio resultado caso seja imutável
+     */
+    private V copyOf (V value) {
+        return this.copier != null ? this.copier.copy(value) : value;
+    }
+
+    /**
+     * Método que esvazia o cache.
+     */
+    public synchronized void invalidate () {
+        this.entries.clear();
+        this.generation++;
+        this.invalidations.increment();
+    }
+
+    /**
+     * Método que esvazia o cache caso alguma das tabelas alteradas seja
+     * uma das tabelas das quais ele depende.
+     * @param changed nomes das tabelas alteradas
+     * @return true caso o cache tenha sido esvaziado
+     */
+    public boolean invalidate (Set<String> changed) {
+        for (String table : changed) {
+            if (this.tables.contains(table)) {
+                this.invalidate();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Método que fornece o nome do cache, usado nas métricas.
+     * @return o nome do cache
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Método que fornece a quantidade máxima de resultados mantidos.
+     * @return a capacidade do cache
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Método que fornece as tabelas das quais os resultados dependem.
+     * @return os nomes das tabelas
+     */
+    public Set<String> getTables() {
+        return this.tables;
+    }
+
+    /**
+     * Método que fornece a quantidade de resultados mantidos no momento.
+     * @return a quantidade de resultados
+     */
+    public synchronized int size () {
+        return this.entries.size();
+    }
+
+    /**
+     * Método que fornece a quantidade de consultas atendidas pelo cache.
+     * @return a quantidade de acertos
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Método que fornece a quantidade de consultas feitas ao BD.
+     * @return a quantidade de faltas
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Método que fornece a quantidade de resultados descartados por falta de
+     * espaço.
+     * @return a quantidade de descartes
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Método que fornece a quantidade de vezes em que o cache foi esvaziado.
+     * @return a quantidade de esvaziamentos
+     */
+    public long getInvalidations() {
+        return this.invalidations.sum();
+    }
+}
@@ -0,0 +1,136 @@
+package br.com.rateiocerto.businiess;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rateio Certo
+ *
+ * LatencyHistogram: histograma de latências em microssegundos, no estilo do
+ * HdrHistogram. Os valores são distribuídos em faixas log-lineares: cada
+ * potência de 2 é dividida em SUB_BUCKETS faixas de mesmo tamanho, o que
+ * mantém o erro relativo abaixo de 1/SUB_BUCKETS em qualquer escala, com
+ * uma quantidade fixa e pequena de contadores.
+ * O registro é feito sem bloqueio, apenas com operações atômicas, podendo
+ * ser chamado por várias linhas de execução ao mesmo tempo.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class LatencyHistogram {
+
+    //bits das faixas de cada potência de 2
+    private static final int SUB_BITS = 4;
+
+    //quantidade de faixas de cada potência de 2
+    private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BITS;
+
+    //maior valor registrado sem truncamento, em microssegundos (~19 horas)
+    public static final long MAX_VALUE = (1L << 36) - 1;
+
+    //quantidade total de faixas
+    private static final int BUCKETS = LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LatencyHistogram.BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Método que registra uma latência.
+     * @param micros a latência, em microssegundos
+     */
+    public void record (long micros) {
+        long value = Math.max(0, Math.min(micros, LatencyHistogram.MAX_VALUE));
+        this.counts.incrementAndGet(LatencyHistogram.indexOf(value));
+        this.total.increment();
+        this.sum.add(value);
+        long curr = this.max.get();
+        while (value > curr && !this.max.compareAndSet(curr, value)) {
+            curr = this.max.get();
+        }
+    }
+
+    /**
+     * Método que retorna a quantidade de latências registradas.
+     * @return a quantidade de registros
+     */
+    public long getCount () {
+        return this.total.sum();
+    }
+
+    /**
+     * Método que retorna a média das latências registradas.
+     * @return a média, em microssegundos, ou 0 caso não haja registros
+     */
+    public long getMean () {
+        long count = this.total.sum();
+        return count > 0 ? this.sum.sum() / count : 0;
+    }
+
+    /**
+     * Método que retorna a maior latência registrada.
+     * @return a maior latência, em microssegundos
+     */
+    public long getMax () {
+        return this.max.get();
+    }
+
+    /**
+     * Método que retorna o percentil indicado das latências registradas. O
+     * valor retornado é o limite superior da faixa que contém o percentil,
+     * nunca maior que a maior latência registrada.
+     * @param percentile o percentil, entre 0 e 100
+     * @return a latência do percentil, em microssegundos, ou 0 caso não haja registros
+     */
+    public long getPercentile (double percentile) {
+        long [] snapshot = new long [LatencyHistogram.BUCKETS];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long acc = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            acc += snapshot[i];
+            if (acc >= target) {
+                return Math.min(LatencyHistogram.highestOf(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Método que retorna a faixa de um valor. Os valores menores que
+     * SUB_BUCKETS têm uma faixa cada; os demais são agrupados pelos
+     * SUB_BITS bits mais significativos.
+     * @param value o valor, entre 0 e MAX_VALUE
+     * @return o índice da faixa
+     */
+    static int indexOf (long value) {
+        if (value < LatencyHistogram.SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - LatencyHistogram.SUB_BITS;
+        int sub = (int) (value >>> shift) - LatencyHistogram.SUB_BUCKETS;
+        return LatencyHistogram.SUB_BUCKETS * (shift + 1) + sub;
+    }
+
+    /**
+     * Método que retorna o maior valor de uma faixa.
+     * @param index o índice da faixa
+     * @return o maior valor contido na faixa
+     */
+    static long highestOf (int index) {
+        if (index < LatencyHistogram.SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / LatencyHistogram.SUB_BUCKETS - 1;
+        long sub = LatencyHistogram.SUB_BUCKETS + index % LatencyHistogram.SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,353 @@
+package br.com.rateiocerto.businiess;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rateio Certo
+ *
+ * RateioLogger: classe responsável pelo registro de logs de um condomínio.
+ * As mensagens são apenas colocadas num buffer circular, sem bloqueio, pela
+ * linha que as gerou. Uma linha de execução em segundo plano descarrega esse
+ * buffer periodicamente, gravando as mensagens em lote num arquivo mantido
+ * aberto. Quando o arquivo ultrapassa o tamanho máximo, o mesmo é renomeado
+ * (condominio.log.1, .2, ...) e um novo arquivo é iniciado.
+ * Caso o buffer esteja cheio, as novas mensagens são descartadas, e a
+ * quantidade descartada é registrada no próximo lote.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class RateioLogger implements Closeable {
+
+    /**
+     * Level: níveis das mensagens de log, em ordem crescente de gravidade.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    //quantidade de mensagens do buffer circular (potência de 2)
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    //tamanho máximo aproximado do arquivo de log, em bytes, antes da rotação
+    public static final long DEFAULT_MAX_BYTES = 256 * 1024;
+
+    //quantidade de arquivos antigos mantidos após a rotação
+    public static final int DEFAULT_MAX_BACKUPS = 3;
+
+    //intervalo entre os descarregamentos do buffer, em milissegundos
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
+    /**
+     * Entry: mensagem armazenada no buffer. A formatação da linha só é
+     * feita no descarregamento, fora da linha que gerou a mensagem.
+     */
+    private static final class Entry {
+        final long time;
+        final Level level;
+        final String message;
+
+        Entry (long time, Level level, String message) {
+            this.time = time;
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    private final File file;
+    private final int capacity;
+    private final int mask;
+    private final long maxBytes;
+    private final int maxBackups;
+
+    private final AtomicReferenceArray<Entry> slots;
+    //próxima posição a ser ocupada por uma mensagem
+    private final AtomicLong tail;
+    //próxima posição a ser gravada no arquivo
+    private final AtomicLong head;
+    private final AtomicLong dropped;
+    private final Thread flusher;
+
+    private volatile Level minLevel;
+    private volatile boolean closed;
+
+    //campos usados apenas pela linha de descarregamento
+    private BufferedWriter out;
+    private long fileSize;
+    private final StringBuilder line;
+
+    /**
+     * Construtor da classe, com os valores padrão de capacidade e rotação.
+     * @param file arquivo de log do condomínio
+     */
+    public RateioLogger (File file) {
+        this(file, RateioLogger.DEFAULT_CAPACITY, RateioLogger.DEFAULT_MAX_BYTES,
+                RateioLogger.DEFAULT_MAX_BACKUPS);
+    }
+
+    /**
+     * Construtor da classe. Inicia a linha de descarregamento do buffer.
+     * @param file arquivo de log do condomínio
+     * @param capacity quantidade mínima de mensagens do buffer, arredondada
+     *                 para a próxima potência de 2
+     * @param maxBytes tamanho máximo aproximado do arquivo antes da rotação
+     * @param maxBackups quantidade de arquivos antigos mantidos
+     */
+    public RateioLogger (File file, int capacity, long maxBytes, int maxBackups) {
+        this.file = file;
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.maxBytes = maxBytes;
+        this.maxBackups = Math.max(0, maxBackups);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.minLevel = Level.INFO;
+        this.line = new StringBuilder(256);
+
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "rateio-log");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Método que define o nível mínimo das mensagens registradas. Mensagens
+     * de nível inferior são ignoradas, sem custo de armazenamento.
+     * @param level o nível mínimo
+     */
+    public void setLevel (Level level) {
+        this.minLevel = level;
+    }
+
+    /**
+     * Método que verifica se as mensagens de um nível serão registradas.
+     * @param level o nível a ser verificado
+     * @return true caso o nível esteja habilitado. Caso contrário, false
+     */
+    public boolean isEnabled (Level level) {
+        return !this.closed && level.ordinal() >= this.minLevel.ordinal();
+    }
+
+    /**
+     * Método que registra uma mensagem no buffer. Não há bloqueio nem acesso
+     * ao arquivo: caso o buffer esteja cheio, a mensagem é descartada.
+     * @param level nível da mensagem
+     * @param message texto da mensagem
+     */
+    public void log (Level level, String message) {
+        if (!this.isEnabled(level)) {
+            return;
+        }
+        long t;
+        do {
+            t = this.tail.get();
+            if (t - this.head.get() >= this.capacity) {
+                this.dropped.incrementAndGet();
+                return;
+            }
+        } while (!this.tail.compareAndSet(t, t + 1));
+        this.slots.set((int) (t & this.mask), new Entry(System.currentTimeMillis(), level, message));
+
+        //com o buffer pela metade, o descarregamento é antecipado
+        if (t - this.head.get() == (this.capacity >> 1)) {
+            LockSupport.unpark(this.flusher);
+        }
+    }
+
+    /**
+     * Método que registra uma mensagem de nível DEBUG.
+     * @param message texto da mensagem
+     */
+    public void debug (String message) {
+        this.log(Level.DEBUG, message);
+    }
+
+    /**
+     * Método que registra uma mensagem de nível INFO.
+     * @param message texto da mensagem
+     */
+    public void info (String message) {
+        this.log(Level.INFO, message);
+    }
+
+    /**
+     * Método que registra uma mensagem de nível WARN.
+     * @param message texto da mensagem
+     */
+    public void warn (String message) {
+        this.log(Level.WARN, message);
+    }
+
+    /**
+     * Método que registra uma mensagem de nível ERROR.
+     * @param message texto da mensagem
+     */
+    public void error (String message) {
+        this.log(Level.ERROR, message);
+    }
+
+    /**
+     * Método que antecipa o descarregamento do buffer, sem aguardar
+     * a sua conclusão.
+     */
+    public void requestFlush () {
+        LockSupport.unpark(this.flusher);
+    }
+
+    /**
+     * Método que encerra o logger. As mensagens pendentes são gravadas e o
+     * arquivo é fechado. Novas mensagens passam a ser ignoradas.
+     */
+    @Override
+    public void close () {
+        this.closed = true;
+        LockSupport.unpark(this.flusher);
+        try {
+            this.flusher.join(RateioLogger.FLUSH_INTERVAL_MS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Rotina da linha de descarregamento. O buffer é gravado a cada
+     * intervalo, ou antes, quando solicitado.
+     */
+    private void flushLoop () {
+        while (!this.closed) {
+            this.drain();
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(RateioLogger.FLUSH_INTERVAL_MS));
+        }
+        this.drain();
+        this.closeWriter();
+    }
+
+    /**
+     * Método que grava em lote todas as mensagens disponíveis no buffer.
+     * Em caso de erro de escrita, o arquivo é reaberto no próximo lote.
+     */
+    private void drain () {
+        long h = this.head.get();
+        int written = 0;
+        try {
+            Entry e = this.slots.get((int) (h & this.mask));
+            while (e != null) {
+                this.slots.set((int) (h & this.mask), null);
+                h++;
+                this.head.set(h);
+                this.write(e.time, e.level, e.message);
+                written++;
+                e = this.slots.get((int) (h & this.mask));
+            }
+            long lost = this.dropped.getAndSet(0);
+            if (lost > 0) {
+                this.write(System.currentTimeMillis(), Level.WARN,
+                        lost + " mensagens de log descartadas (buffer cheio)");
+                written++;
+            }
+            if (written > 0) {
+                this.out.flush();
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+            this.closeWriter();
+        }
+    }
+
+    /**
+     * Método que formata e escreve uma linha no arquivo, realizando a
+     * rotação caso o tamanho máximo seja atingido.
+     * @param time instante da mensagem, em milissegundos
+     * @param level nível da mensagem
+     * @param message texto da mensagem
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    private void write (long time, Level level, String message) throws IOException {
+        StringBuilder sb = this.line;
+        sb.setLength(0);
+        sb.append('[').append(new Timestamp(time)).append("] ")
+                .append(level.name()).append(' ').append(message).append('\n');
+
+        if (this.out == null) {
+            this.openWriter();
+        }
+        if (this.fileSize > 0 && this.fileSize + sb.length() > this.maxBytes) {
+            this.rotate();
+        }
+        this.out.append(sb);
+        this.fileSize += sb.length();
+    }
+
+    /**
+     * Método que abre o arquivo de log para acréscimo, criando a pasta
+     * caso não exista.
+     * @throws IOException erro retornado caso não seja possível abrir o arquivo
+     */
+    private void openWriter () throws IOException {
+        File dir = this.file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        this.fileSize = this.file.length();
+        this.out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(this.file, true), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Método que fecha o arquivo de log, caso esteja aberto.
+     */
+    private void closeWriter () {
+        if (this.out != null) {
+            try {
+                this.out.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            this.out = null;
+        }
+    }
+
+    /**
+     * Método que realiza a rotação dos arquivos: o arquivo mais antigo é
+     * removido, os demais são renomeados com o índice seguinte e o arquivo
+     * atual passa a ser o de índice 1. Então um novo arquivo é aberto.
+     * @throws IOException erro retornado caso não seja possível abrir o novo arquivo
+     */
+    private void rotate () throws IOException {
+        this.closeWriter();
+        if (this.maxBackups == 0) {
+            this.file.delete();
+        }
+        else {
+            new File(this.file.getPath() + "." + this.maxBackups).delete();
+            for (int i = this.maxBackups - 1; i >= 1; i--) {
+                File f = new File(this.file.getPath() + "." + i);
+                if (f.exists()) {
+                    f.renameTo(new File(this.file.getPath() + "." + (i + 1)));
+                }
+            }
+            this.file.renameTo(new File(this.file.getPath() + ".1"));
+        }
+        this.openWriter();
+    }
+}
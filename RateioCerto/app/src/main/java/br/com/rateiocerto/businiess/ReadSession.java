@@ -0,0 +1,174 @@
+package br.com.rateiocerto.businiess;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.interfaces.GuiBackendManagerAsync;
+
+/**
+ * Rateio Certo
+ *
+ * ReadSession: classe que mantém em memória os dados de uma sessão de leitura.
+ * Todos os apartamentos e as leituras do período atual são carregados uma única
+ * vez, em vetores indexados pela posição do apartamento no índice de navegação
+ * (AptNavigationIndex). Assim, a navegação entre apartamentos e o preenchimento
+ * dos valores de leitura não dependem de consultas ao BD. As novas leituras
+ * são gravadas primeiro na memória, e em seguida enviadas ao BD de forma
+ * assíncrona.
+ * Os métodos dessa classe devem ser chamados apenas pela linha da interface
+ * gráfica, após o carregamento.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class ReadSession {
+
+    //posição retornada quando o apartamento não existe na sessão
+    public static final int NOT_FOUND = AptNavigationIndex.NOT_FOUND;
+
+    private final GuiBackendManagerAsync backend;
+    private final int period;
+
+    private final AptNavigationIndex index;
+    private final int [] values;
+    private final CompletionTracker completion;
+
+    /**
+     * Construtor da classe. Deve ser chamado fora da linha da interface gráfica,
+     * pois organiza todas as leituras recebidas.
+     * @param index índice de navegação entre os apartamentos do condomínio
+     * @param readList lista das leituras do período da sessão
+     * @param period período da sessão (ano * 100 + mês)
+     * @param backend gerenciador assíncrono usado na gravação das leituras
+     */
+    public ReadSession (AptNavigationIndex index, List<ReadData> readList, int period,
+                        GuiBackendManagerAsync backend) {
+        this.backend = backend;
+        this.period = period;
+        this.index = index;
+
+        int size = index.size();
+        this.values = new int [size];
+        this.completion = new CompletionTracker(size);
+        for (ReadData r : readList) {
+            int i = index.positionOfId(r.getIdApt());
+            if (i != ReadSession.NOT_FOUND) {
+                this.completion.markRead(i);
+                this.values[i] = r.getReadValue();
+            }
+        }
+    }
+
+    /**
+     * Método que retorna o período da sessão.
+     * @return o período (ano * 100 + mês)
+     */
+    public int getPeriod () {
+        return this.period;
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos da sessão.
+     * @return a quantidade de apartamentos
+     */
+    public int size () {
+        return this.index.size();
+    }
+
+    /**
+     * Método que retorna o acompanhamento das leituras do período, com os
+     * apartamentos lidos e pendentes.
+     * @return o acompanhamento das leituras da sessão
+     */
+    public CompletionTracker getCompletion () {
+        return this.completion;
+    }
+
+    /**
+     * Método que retorna o apartamento de uma posição da sessão.
+     * @param index posição do apartamento
+     * @return o apartamento correspondente
+     */
+    public Apartment getApartment (int index) {
+        return this.index.get(index);
+    }
+
+    /**
+     * Método que busca a posição de um apartamento, a partir do bloco e número.
+     * @param block nome do bloco
+     * @param num número do apartamento
+     * @return a posição do apartamento, ou NOT_FOUND caso não exista
+     */
+    public int indexOf (String block, int num) {
+        return this.index.positionOf(block, num);
+    }
+
+    /**
+     * Método que retorna a posição do próximo apartamento.
+     * @param index posição de referência
+     * @return a posição seguinte, ou NOT_FOUND caso seja o último
+     */
+    public int next (int index) {
+        return this.index.next(index);
+    }
+
+    /**
+     * Método que retorna a posição do apartamento anterior.
+     * @param index posição de referência
+     * @return a posição anterior, ou NOT_FOUND caso seja o primeiro
+     */
+    public int previous (int index) {
+        return this.index.previous(index);
+    }
+
+    /**
+     * Método que verifica se o apartamento de uma posição já possui leitura no período.
+     * @param index posição do apartamento
+     * @return true caso exista a leitura. Caso contrário, false
+     */
+    public boolean hasRead (int index) {
+        return this.completion.isRead(index);
+    }
+
+    /**
+     * Método que retorna o valor de leitura do apartamento de uma posição.
+     * @param index posição do apartamento
+     * @return o valor de leitura, ou zero caso ainda não exista
+     */
+    public int getReadValue (int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Método que grava a leitura do apartamento de uma posição. O valor é
+     * atualizado imediatamente na memória, e a gravação no BD é agendada.
+     * A leitura pertence sempre ao período da sessão: a sua data é a data
+     * atual, caso esteja no período, ou o último dia do período, numa sessão
+     * aberta após o fim do mês.
+     * @param index posição do apartamento
+     * @param readValue valor de leitura
+     * @return a operação assíncrona de gravação no BD
+     */
+    public ListenableFuture<Void> saveRead (int index, int readValue) {
+        this.completion.markRead(index);
+        this.values[index] = readValue;
+        ReadData r = new ReadData(this.index.get(index).getId(),
+                this.readDate().toString(), readValue);
+        return this.backend.insertUpdateReadData(r);
+    }
+
+    /**
+     * Método que retorna a data das leituras gravadas na sessão, dentro do
+     * período da sessão.
+     * @return a data atual, caso esteja no período, ou o último dia do período
+     */
+    private LocalDate readDate () {
+        YearMonth month = YearMonth.of(this.period / 100, this.period % 100);
+        LocalDate today = LocalDate.now();
+        return YearMonth.from(today).equals(month) ? today : month.atEndOfMonth();
+    }
+}
@@ -0,0 +1,231 @@
+package br.com.rateiocerto.businiess;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rateio Certo
+ *
+ * Tracer: classe que registra intervalos (spans) de execução das etapas do App,
+ * como a abertura do BD, o carregamento dos apartamentos e a geração da
+ * planilha, com os seus tempos e quantidades de linhas. Os intervalos são
+ * gravados no formato de eventos de trace do Chrome (Trace Event Format), em
+ * trace/trace-(data e hora)-(sequência).json, podendo ser abertos em
+ * chrome://tracing ou no Perfetto. Cada arquivo contém os intervalos
+ * registrados desde a gravação anterior, e nunca substitui um arquivo já
+ * gravado, mesmo quando várias tarefas gravam no mesmo segundo.
+ * O rastreamento é ligado pela opção trace=true do arquivo de configuração. Com
+ * ele desligado, begin retorna um intervalo vazio, sem nenhum registro.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public final class Tracer {
+
+    //quantidade máxima de eventos mantidos em memória até a gravação
+    static final int MAX_EVENTS = 100000;
+
+    //identificador do processo nos eventos
+    private static final int PID = 1;
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    //sequência dos arquivos gravados, que diferencia as gravações no mesmo milissegundo
+    private static final AtomicInteger FILE_SEQUENCE = new AtomicInteger();
+
+    private static volatile Tracer active;
+
+    private final File dir;
+    private final long origin = System.nanoTime();
+    private final ConcurrentLinkedQueue<String> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final ConcurrentHashMap<Long, String> threads = new ConcurrentHashMap<>();
+
+    /**
+     * Span: intervalo de execução em andamento. Os argumentos são gravados
+     * junto ao evento, como as quantidades de linhas da etapa.
+     */
+    public static class Span {
+
+        //intervalo retornado com o rastreamento desligado
+        static final Span NONE = new Span(null, null, null);
+
+        private final Tracer tracer;
+        private final String category;
+        private final String name;
+        private final long start;
+        private StringBuilder args;
+
+        Span (Tracer tracer, String category, String name) {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.start = tracer != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Método que acrescenta um argumento numérico ao intervalo.
+         * @param key nome do argumento
+         * @param value valor do argumento
+         * @return o próprio intervalo
+         */
+        public Span arg (String key, long value) {
+            if (this.tracer != null) {
+                if (this.args == null) {
+                    this.args = new StringBuilder();
+                }
+                else {
+                    this.args.append(", ");
+                }
+                this.args.append('"').append(CallMetrics.escape(key)).append("\": ").append(value);
+            }
+            return this;
+        }
+
+        /**
+         * Método que encerra o intervalo, registrando o evento correspondente.
+         */
+        public void end () {
+            if (this.tracer != null) {
+                this.tracer.complete(this, System.nanoTime());
+            }
+        }
+    }
+
+    private Tracer (File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Método que liga o rastreamento, caso ainda não esteja ligado.
+     * @param dir pasta onde os arquivos de trace serão gravados
+     */
+    public static synchronized void enable (File dir) {
+        if (Tracer.active == null) {
+            Tracer.active = new Tracer(dir);
+        }
+    }
+
+    /**
+     * Método que indica se o rastreamento está ligado.
+     * @return true caso esteja ligado
+     */
+    public static boolean isEnabled () {
+        return Tracer.active != null;
+    }
+
+    /**
+     * Método que inicia um intervalo na linha de execução atual.
+     * @param category categoria do intervalo (task, db, report, ...)
+     * @param name nome do intervalo
+     * @return o intervalo iniciado, a ser encerrado com end
+     */
+    public static Span begin (String category, String name) {
+        Tracer t = Tracer.active;
+        return t != null ? new Span(t, category, name) : Span.NONE;
+    }
+
+    /**
+     * Método que grava os eventos registrados desde a gravação anterior num
+     * novo arquivo de trace. Deve ser chamado fora da linha da interface
+     * gráfica. Não faz nada caso o rastreamento esteja desligado ou não haja
+     * eventos.
+     * @return o arquivo gravado, ou null caso nada tenha sido gravado
+     * @throws IOException erro retornado caso o arquivo não possa ser gravado
+     */
+    public static File flush () throws IOException {
+        Tracer t = Tracer.active;
+        return t != null ? t.write() : null;
+    }
+
+    /**
+     * Método que registra um intervalo encerrado como um evento completo ("X").
+     * @param span o intervalo
+     * @param end instante de encerramento, em nanossegundos
+     */
+    private void complete (Span span, long end) {
+        if (this.size.incrementAndGet() > Tracer.MAX_EVENTS) {
+            this.size.decrementAndGet();
+            this.dropped.incrementAndGet();
+            return;
+        }
+        Thread th = Thread.currentThread();
+        long tid = th.getId();
+        if (!this.threads.containsKey(tid)) {
+            this.threads.put(tid, th.getName());
+        }
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"name\": \"").append(CallMetrics.escape(span.name))
+                .append("\", \"cat\": \"").append(CallMetrics.escape(span.category))
+                .append("\", \"ph\": \"X\", \"ts\": ").append((span.start - this.origin) / 1000)
+                .append(", \"dur\": ").append((end - span.start) / 1000)
+                .append(", \"pid\": ").append(Tracer.PID)
+                .append(", \"tid\": ").append(tid);
+        if (span.args != null) {
+            sb.append(", \"args\": {").append(span.args).append('}');
+        }
+        sb.append('}');
+        this.events.add(sb.toString());
+    }
+
+    /**
+     * Método que retira os eventos registrados e os grava num novo arquivo,
+     * junto aos nomes das linhas de execução. O arquivo é criado com
+     * createNewFile, e um nome já existente é trocado pelo da próxima
+     * sequência, de forma que um trace anterior nunca é sobrescrito.
+     * @return o arquivo gravado, ou null caso não haja eventos
+     * @throws IOException erro retornado caso o arquivo não possa ser gravado
+     */
+    private synchronized File write () throws IOException {
+        List<String> batch = new ArrayList<>();
+        String e = this.events.poll();
+        while (e != null) {
+            batch.add(e);
+            this.size.decrementAndGet();
+            e = this.events.poll();
+        }
+        if (batch.isEmpty()) {
+            return null;
+        }
+        this.dir.mkdirs();
+        String prefix = "trace-" + LocalDateTime.now().format(Tracer.FILE_DATE) + "-";
+        File resp = new File(this.dir, prefix + Tracer.FILE_SEQUENCE.incrementAndGet() + ".json");
+        while (!resp.createNewFile()) {
+            resp = new File(this.dir, prefix + Tracer.FILE_SEQUENCE.incrementAndGet() + ".json");
+        }
+        Writer out = new OutputStreamWriter(new FileOutputStream(resp), StandardCharsets.UTF_8);
+        try {
+            out.write("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [\n");
+            for (Long tid : this.threads.keySet()) {
+                out.write("{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": " + Tracer.PID
+                        + ", \"tid\": " + tid + ", \"args\": {\"name\": \""
+                        + CallMetrics.escape(this.threads.get(tid)) + "\"}},\n");
+            }
+            int lost = this.dropped.getAndSet(0);
+            if (lost > 0) {
+                out.write("{\"name\": \"eventos descartados\", \"ph\": \"i\", \"s\": \"g\", \"ts\": 0, "
+                        + "\"pid\": " + Tracer.PID + ", \"tid\": 0, \"args\": {\"dropped\": " + lost + "}},\n");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                out.write(batch.get(i));
+                out.write(i < batch.size() - 1 ? ",\n" : "\n");
+            }
+            out.write("]}\n");
+        }
+        finally {
+            out.close();
+        }
+        return resp;
+    }
+}
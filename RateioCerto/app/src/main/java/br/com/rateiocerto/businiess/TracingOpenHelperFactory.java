@@ -0,0 +1,96 @@
+package br.com.rateiocerto.businiess;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+
+/**
+ * Rateio Certo
+ *
+ * TracingOpenHelperFactory: fábrica de acesso ao SQLite usada pelo Room, que
+ * registra no Tracer a abertura do banco de dados. O Room só abre o arquivo na
+ * primeira consulta, quando também são executadas a criação e as migrações;
+ * esse primeiro acesso é registrado como o intervalo "db.open". Os acessos
+ * seguintes são repassados diretamente à fábrica original.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class TracingOpenHelperFactory implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory delegate;
+
+    /**
+     * Construtor da classe.
+     * @param delegate fábrica que efetivamente cria o acesso ao SQLite
+     */
+    public TracingOpenHelperFactory (SupportSQLiteOpenHelper.Factory delegate) {
+        this.delegate = delegate;
+    }
+
+    @NonNull
+    @Override
+    public SupportSQLiteOpenHelper create(@NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+        return new TracingOpenHelper(this.delegate.create(configuration));
+    }
+
+    /**
+     * TracingOpenHelper: acesso ao SQLite que registra o primeiro acesso ao banco.
+     */
+    private static class TracingOpenHelper implements SupportSQLiteOpenHelper {
+
+        private final SupportSQLiteOpenHelper helper;
+        private volatile boolean opened;
+
+        TracingOpenHelper (SupportSQLiteOpenHelper helper) {
+            this.helper = helper;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return this.helper.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean enabled) {
+            this.helper.setWriteAheadLoggingEnabled(enabled);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            if (this.opened) {
+                return this.helper.getWritableDatabase();
+            }
+            Tracer.Span span = Tracer.begin("db", "db.open");
+            try {
+                SupportSQLiteDatabase resp = this.helper.getWritableDatabase();
+                this.opened = true;
+                return resp;
+            }
+            finally {
+                span.end();
+            }
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            if (this.opened) {
+                return this.helper.getReadableDatabase();
+            }
+            Tracer.Span span = Tracer.begin("db", "db.open");
+            try {
+                SupportSQLiteDatabase resp = this.helper.getReadableDatabase();
+                this.opened = true;
+                return resp;
+            }
+            finally {
+                span.end();
+            }
+        }
+
+        @Override
+        public void close() {
+            this.opened = false;
+            this.helper.close();
+        }
+    }
+}
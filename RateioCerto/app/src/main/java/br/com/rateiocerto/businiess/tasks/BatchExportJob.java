@@ -0,0 +1,453 @@
+package br.com.rateiocerto.businiess.tasks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.basics.ReadingPeriod;
+import br.com.rateiocerto.businiess.CondominiumRegistry;
+import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.Tracer;
+
+/**
+ * Rateio Certo
+ *
+ * BatchExportJob: tarefa que gera, de uma só vez, as planilhas de um conjunto de
+ * pares (condomínio, período), como as planilhas do mês de todos os condomínios
+ * ou a regeneração do histórico de um condomínio. Cada planilha é comparada ao
+ * último período fechado anterior ao seu, e é gerada pelo writeCSVSheet do
+ * gerenciador do condomínio, que grava o arquivo linha a linha.
+ * As planilhas são distribuídas num conjunto limitado de linhas próprias da
+ * tarefa. Cada condomínio tem o seu BD, e as consultas simultâneas ao mesmo BD
+ * usam conexões distintas do Room. Os pares são ordenados por condomínio, de
+ * forma que apenas poucos BDs sejam usados ao mesmo tempo, e a quantidade de
+ * linhas é limitada aos bancos que o DatabaseRegistry mantém abertos. O banco
+ * de cada item fica reservado durante a sua geração, de forma que o registro
+ * não o feche enquanto estiver em uso, mesmo acima do limite.
+ * Ao final, o relatório com os tempos de cada planilha, as falhas e a vazão é
+ * retornado e gravado em log/batch-export-(data e hora).csv.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class BatchExportJob extends Job<BatchExportJob.Report> {
+
+    //quantidade padrão de planilhas geradas ao mesmo tempo
+    public static final int DEFAULT_PARALLELISM = 2;
+
+    /**
+     * Item: par (condomínio, período) de uma planilha.
+     */
+    public static class Item {
+
+        private final String condominium;
+        private final int period;
+
+        /**
+         * Construtor da classe.
+         * @param condominium nome do condomínio
+         * @param year ano do período
+         * @param month mês do período
+         */
+        public Item (String condominium, int year, int month) {
+            this.condominium = condominium;
+            this.period = ReadData.periodOf(year, month);
+        }
+
+        /**
+         * Método que fornece o nome do condomínio do item.
+         * @return o nome do condomínio
+         */
+        public String getCondominium() {
+            return this.condominium;
+        }
+
+        /**
+         * Método que fornece o período da planilha do item.
+         * @return o período (ano * 100 + mês)
+         */
+        public int getPeriod() {
+            return this.period;
+        }
+
+        @Override
+        public String toString() {
+            return this.condominium + "@" + this.period;
+        }
+    }
+
+    /**
+     * Result: resultado da geração da planilha de um item.
+     */
+    public static class Result {
+
+        //planilha gerada
+        public static final String STATUS_OK = "ok";
+
+        //planilha não gerada, por não haver período fechado anterior
+        public static final String STATUS_SKIPPED = "sem_referencia";
+
+        //planilha não gerada, por erro
+        public static final String STATUS_FAILED = "erro";
+
+        private final Item item;
+        private final String status;
+        private final int referencePeriod;
+        private final long nanos;
+        private final String error;
+
+        Result (Item item, String status, int referencePeriod, long nanos, String error) {
+            this.item = item;
+            this.status = status;
+            this.referencePeriod = referencePeriod;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * Método que fornece o item ao qual o resultado se refere.
+         * @return o par (condomínio, período)
+         */
+        public Item getItem() {
+            return this.item;
+        }
+
+        /**
+         * Método que fornece a situação da geração da planilha.
+         * @return STATUS_OK, STATUS_SKIPPED ou STATUS_FAILED
+         */
+        public String getStatus() {
+            return this.status;
+        }
+
+        /**
+         * Método que fornece o período fechado usado como referência.
+         * @return o período de referência, ou zero caso não exista
+         */
+        public int getReferencePeriod() {
+            return this.referencePeriod;
+        }
+
+        /**
+         * Método que fornece o tempo de geração da planilha.
+         * @return o tempo, em nanossegundos
+         */
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        /**
+         * Método que fornece o erro ocorrido na geração.
+         * @return a descrição do erro, ou null caso não tenha ocorrido
+         */
+        public String getError() {
+            return this.error;
+        }
+    }
+
+    /**
+     * Report: relatório da execução, com os resultados na ordem de conclusão.
+     */
+    public static class Report {
+
+        private final List<Result> results;
+        private final long elapsedNanos;
+        private final int parallelism;
+        private File file;
+
+        Report (List<Result> results, long elapsedNanos, int parallelism) {
+            this.results = Collections.unmodifiableList(results);
+            this.elapsedNanos = elapsedNanos;
+            this.parallelism = parallelism;
+        }
+
+        /**
+         * Método que fornece os resultados, na ordem de conclusão.
+         * @return os resultados de todos os itens
+         */
+        public List<Result> getResults() {
+            return this.results;
+        }
+
+        /**
+         * Método que fornece o tempo total da execução.
+         * @return o tempo, em nanossegundos
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         * Método que fornece a quantidade de planilhas geradas ao mesmo tempo.
+         * @return a quantidade de linhas usadas
+         */
+        public int getParallelism() {
+            return this.parallelism;
+        }
+
+        /**
+         * Método que fornece o arquivo em que o relatório foi gravado.
+         * @return o arquivo, ou null caso ainda não tenha sido gravado
+         */
+        public File getFile() {
+            return this.file;
+        }
+
+        /**
+         * Método que fornece a quantidade de planilhas geradas.
+         * @return a quantidade de itens com STATUS_OK
+         */
+        public int getSucceeded () {
+            return this.count(Result.STATUS_OK);
+        }
+
+        /**
+         * Método que fornece a quantidade de planilhas sem referência.
+         * @return a quantidade de itens com STATUS_SKIPPED
+         */
+        public int getSkipped () {
+            return this.count(Result.STATUS_SKIPPED);
+        }
+
+        /**
+         * Método que fornece a quantidade de planilhas com erro.
+         * @return a quantidade de itens com STATUS_FAILED
+         */
+        public int getFailed () {
+            return this.count(Result.STATUS_FAILED);
+        }
+
+        private int count (String status) {
+            int resp = 0;
+            for (Result r : this.results) {
+                if (r.getStatus().equals(status)) {
+                    resp++;
+                }
+            }
+            return resp;
+        }
+
+        /**
+         * Método que retorna a vazão da execução.
+         * @return a quantidade de planilhas geradas por segundo
+         */
+        public double getThroughput () {
+            return this.elapsedNanos > 0 ? this.getSucceeded() * 1e9 / this.elapsedNanos : 0;
+        }
+
+        /**
+         * Método que retorna o resumo da execução, a ser exibido ao final da tarefa.
+         * @return o resumo
+         */
+        public String getSummary () {
+            return String.format("%d planilha(s) gerada(s) em %d ms (%.1f/s), " +
+                    "%d sem referência, %d com erro.", this.getSucceeded(),
+                    this.elapsedNanos / 1000000, this.getThroughput(),
+                    this.getSkipped(), this.getFailed());
+        }
+
+        /**
+         * Método que grava o relatório em CSV, com uma linha por planilha e,
+         * ao final, a linha de totais, em UTF-8 (os nomes dos condomínios e as
+         * mensagens de erro podem ter acentos) e com o ponto como separador decimal.
+         * @param file arquivo de destino
+         * @throws IOException erro retornado caso o arquivo não possa ser gravado
+         */
+        void writeCsv (File file) throws IOException {
+            file.getParentFile().mkdirs();
+            Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+            try {
+                w.write("condominio,periodo,referencia,situacao,ms,erro\n");
+                for (Result r : this.results) {
+                    w.write(r.getItem().getCondominium() + "," + r.getItem().getPeriod() + ","
+                            + (r.getReferencePeriod() > 0 ? r.getReferencePeriod() : "") + ","
+                            + r.getStatus() + "," + r.getNanos() / 1000000 + ","
+                            + (r.getError() != null ? r.getError().replace(',', ';')
+                                    .replace('\n', ' ') : "") + "\n");
+                }
+                w.write("total," + this.results.size() + ",," + this.getSucceeded() + " ok/"
+                        + this.getFailed() + " erro," + this.elapsedNanos / 1000000 + ","
+                        + String.format(Locale.ROOT, "%.2f", this.getThroughput()) + " planilhas/s\n");
+            }
+            finally {
+                w.close();
+            }
+            this.file = file;
+        }
+    }
+
+    private final CondominiumRegistry condominiums;
+    private final List<Item> items;
+    private final boolean closePeriods;
+    private final int parallelism;
+
+    /**
+     * Construtor da classe.
+     * @param condominiums registro dos condomínios, do qual são obtidos os gerenciadores
+     * @param items pares (condomínio, período) das planilhas
+     * @param closePeriods true para fechar cada período antes da sua planilha,
+     *                     como no fechamento do mês; false para apenas regerar
+     * @param parallelism quantidade máxima de planilhas geradas ao mesmo tempo
+     */
+    public BatchExportJob (CondominiumRegistry condominiums, List<Item> items,
+                           boolean closePeriods, int parallelism) {
+        super("batchExport:" + closePeriods + ":" + items, Priority.EXPORT);
+        this.condominiums = condominiums;
+        this.items = new ArrayList<>(items);
+        this.closePeriods = closePeriods;
+        //limita as linhas aos bancos mantidos abertos, evitando que as reservas
+        //mantenham mais bancos abertos do que o registro permite
+        int maxOpen = condominiums.getDatabaseRegistry().getMaxOpen();
+        this.parallelism = Math.max(1, Math.min(Math.min(parallelism, maxOpen), items.size()));
+        Collections.sort(this.items, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                int resp = a.getCondominium().compareTo(b.getCondominium());
+                return resp != 0 ? resp : Integer.compare(a.getPeriod(), b.getPeriod());
+            }
+        });
+    }
+
+    /**
+     * Método que monta os itens do período indicado para todos os condomínios
+     * configurados.
+     * @param condominiums registro dos condomínios
+     * @param year ano do período
+     * @param month mês do período
+     * @return os itens, um por condomínio
+     */
+    public static List<Item> allCondominiums (CondominiumRegistry condominiums, int year, int month) {
+        List<Item> resp = new ArrayList<>();
+        for (String name : condominiums.getNames()) {
+            resp.add(new Item(name, year, month));
+        }
+        return resp;
+    }
+
+    /**
+     * Método que fornece a quantidade de planilhas geradas ao mesmo tempo,
+     * já limitada aos bancos mantidos abertos e à quantidade de itens.
+     * @return a quantidade de linhas da tarefa
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Rotina de execução da tarefa. Os itens são distribuídos nas linhas da
+     * tarefa e, a cada planilha concluída, a quantidade de itens concluídos
+     * é publicada como progresso. A falha de uma planilha não interrompe as
+     * demais. Com o cancelamento, os itens ainda não iniciados são descartados.
+     * @param handle controle da tarefa
+     * @return o relatório da execução
+     * @throws Exception erro retornado caso a execução seja interrompida
+     */
+    @Override
+    protected Report run(JobHandle<Report> handle) throws Exception {
+        Tracer.Span span = Tracer.begin("task", "BatchExportJob");
+        final AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(this.parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "rateio-export-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        List<Result> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            ExecutorCompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+            for (final Item item : this.items) {
+                completion.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return export(item);
+                    }
+                });
+            }
+            for (int i = 0; i < this.items.size(); i++) {
+                handle.checkCancelled();
+                results.add(completion.take().get());
+                handle.publishProgress(results.size());
+            }
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+            span.arg("items", this.items.size()).arg("done", results.size())
+                    .arg("threads", this.parallelism).end();
+            try {
+                Tracer.flush();
+            }
+            catch (IOException e) {
+                //o trace é apenas diagnóstico, e a falha na gravação não afeta as planilhas
+            }
+        }
+        Report resp = new Report(results, System.nanoTime() - start, this.parallelism);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        resp.writeCsv(new File(this.condominiums.getHomePath() + "/log/batch-export-" + stamp + ".csv"));
+        return resp;
+    }
+
+    /**
+     * Método que gera a planilha de um item, na linha da tarefa. O banco do
+     * condomínio fica reservado durante a geração. Os erros são registrados no
+     * resultado e no log do condomínio.
+     * @param item o par (condomínio, período)
+     * @return o resultado da geração
+     */
+    private Result export (Item item) {
+        Tracer.Span span = Tracer.begin("task", "batchItem");
+        long start = System.nanoTime();
+        DataRWManager manager = this.condominiums.getManager(item.getCondominium());
+        int year = item.getPeriod() / 100;
+        int month = item.getPeriod() % 100;
+        int reference = 0;
+        boolean leased = false;
+        try {
+            manager.acquireDatabase();
+            leased = true;
+            ReadingPeriod last = manager.getLastClosedPeriodBefore(item.getPeriod());
+            if (this.closePeriods) {
+                manager.closePeriod(year, month);
+            }
+            if (last == null) {
+                return new Result(item, Result.STATUS_SKIPPED, 0, System.nanoTime() - start, null);
+            }
+            reference = last.getPeriod();
+            manager.writeCSVSheet(last.getYear(), last.getMonth(), year, month);
+            return new Result(item, Result.STATUS_OK, reference, System.nanoTime() - start, null);
+        }
+        catch (IOException | RuntimeException e) {
+            manager.writeLog("BatchExportJob " + item + ": " + e.getMessage());
+            return new Result(item, Result.STATUS_FAILED, reference, System.nanoTime() - start,
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        finally {
+            if (leased) {
+                manager.releaseDatabase();
+            }
+            span.arg("period", item.getPeriod()).end();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.rateiocerto.businiess.tasks;
+
+/**
+ * Rateio Certo
+ *
+ * Job: classe base das tarefas executadas em segundo plano pelo JobScheduler.
+ * Cada tarefa tem uma chave, que identifica tarefas idênticas (a mesma
+ * planilha, o mesmo arquivo de carga), e uma prioridade, que define a ordem
+ * de execução das tarefas pendentes.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public abstract class Job<T> {
+
+    /**
+     * Priority: prioridades das tarefas, da maior para a menor.
+     */
+    public enum Priority {
+        //gravações pedidas diretamente pelo usuário, que aguarda o resultado
+        INTERACTIVE,
+        //geração de planilhas
+        EXPORT,
+        //cargas de dados em lote
+        BULK
+    }
+
+    private final String key;
+    private final Priority priority;
+
+    /**
+     * Construtor da classe.
+     * @param key chave da tarefa; tarefas pendentes ou em execução com a mesma chave são executadas uma única vez
+     * @param priority prioridade da tarefa
+     */
+    protected Job (String key, Priority priority) {
+        this.key = key;
+        this.priority = priority;
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    public Priority getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Método que executa a tarefa, numa linha de execução do JobScheduler.
+     * A tarefa deve verificar periodicamente o cancelamento, através de
+     * handle.checkCancelled, nos pontos em que pode ser interrompida.
+     * @param handle controle da tarefa, usado para publicar o progresso e
+     *               verificar o cancelamento
+     * @return o resultado da tarefa
+     * @throws Exception erro ocorrido na execução
+     */
+    protected abstract T run (JobHandle<T> handle) throws Exception;
+}
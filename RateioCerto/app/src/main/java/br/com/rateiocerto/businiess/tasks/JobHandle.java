@@ -0,0 +1,260 @@
+package br.com.rateiocerto.businiess.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import br.com.rateiocerto.interfaces.JobListener;
+
+/**
+ * Rateio Certo
+ *
+ * JobHandle: controle de uma tarefa agendada no JobScheduler. Permite
+ * acompanhar o estado da tarefa, registrar ouvintes e cancelá-la. Também é
+ * passado à própria tarefa, que o usa para publicar o seu progresso e
+ * verificar se foi cancelada.
+ * Os ouvintes são chamados no executor de retornos do JobScheduler (a linha da
+ * interface gráfica); um ouvinte registrado após o término da tarefa recebe o
+ * resultado imediatamente.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class JobHandle<T> implements Runnable, Comparable<JobHandle<?>> {
+
+    /**
+     * State: estados de uma tarefa.
+     */
+    public enum State {
+        PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED
+    }
+
+    private final Job<T> job;
+    private final JobScheduler scheduler;
+    private final long sequence;
+    private final List<JobListener<T>> listeners = new ArrayList<>();
+    private volatile boolean cancelRequested;
+    private State state = State.PENDING;
+    private T result;
+    private Throwable error;
+
+    JobHandle (Job<T> job, JobScheduler scheduler, long sequence) {
+        this.job = job;
+        this.scheduler = scheduler;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Método que fornece a tarefa controlada.
+     * @return a tarefa
+     */
+    public Job<T> getJob() {
+        return this.job;
+    }
+
+    /**
+     * Método que fornece o estado atual da tarefa.
+     * @return o estado
+     */
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    /**
+     * Método que indica se a tarefa terminou, com sucesso, erro ou cancelamento.
+     * @return true caso a tarefa tenha terminado
+     */
+    public synchronized boolean isDone () {
+        return this.state != State.PENDING && this.state != State.RUNNING;
+    }
+
+    /**
+     * Método que indica se o cancelamento da tarefa foi pedido.
+     * @return true caso o cancelamento tenha sido pedido
+     */
+    public boolean isCancelled () {
+        return this.cancelRequested;
+    }
+
+    /**
+     * Método chamado pela tarefa nos pontos em que pode ser interrompida.
+     * @throws CancellationException caso o cancelamento tenha sido pedido
+     */
+    public void checkCancelled () {
+        if (this.cancelRequested) {
+            throw new CancellationException(this.job.getKey());
+        }
+    }
+
+    /**
+     * Método que pede o cancelamento da tarefa. Uma tarefa pendente é retirada
+     * da fila e não chega a ser executada; uma tarefa em execução é
+     * interrompida no próximo ponto de verificação (checkCancelled).
+     * A passagem de pendente a cancelada é feita sob o mesmo bloqueio usado
+     * por run, de forma que uma tarefa cancelada nunca chega a iniciar.
+     */
+    public void cancel () {
+        List<JobListener<T>> current;
+        synchronized (this) {
+            this.cancelRequested = true;
+            if (this.state != State.PENDING) {
+                return;
+            }
+            current = this.complete(State.CANCELLED, null, null);
+        }
+        this.scheduler.removeActive(this);
+        this.deliverAll(current);
+    }
+
+    /**
+     * Método chamado pela tarefa para publicar o seu progresso aos ouvintes.
+     * @param value valor do progresso, cujo significado depende da tarefa
+     */
+    public void publishProgress (final int value) {
+        for (final JobListener<T> l : this.snapshotListeners()) {
+            this.scheduler.callbackExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    l.onProgress(value);
+                }
+            });
+        }
+    }
+
+    /**
+     * Método que registra um ouvinte da tarefa. Um ouvinte já registrado não
+     * é duplicado.
+     * @param listener o ouvinte
+     */
+    public void addListener (JobListener<T> listener) {
+        synchronized (this) {
+            if (!this.isDone()) {
+                if (!this.listeners.contains(listener)) {
+                    this.listeners.add(listener);
+                }
+                return;
+            }
+        }
+        this.deliver(listener);
+    }
+
+    /**
+     * Método que remove um ouvinte da tarefa, por exemplo quando a tela que o
+     * registrou é destruída.
+     * @param listener o ouvinte
+     */
+    public synchronized void removeListener (JobListener<T> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Rotina executada numa linha do JobScheduler. Tarefas canceladas
+     * enquanto pendentes são ignoradas.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (this.state != State.PENDING) {
+                return;
+            }
+            this.state = State.RUNNING;
+        }
+        try {
+            this.finish(State.SUCCEEDED, this.job.run(this), null);
+        }
+        catch (CancellationException e) {
+            this.finish(State.CANCELLED, null, null);
+        }
+        catch (Throwable t) {
+            this.finish(State.FAILED, null, t);
+        }
+    }
+
+    /**
+     * Método que ordena as tarefas pendentes: primeiro pela prioridade, e
+     * depois pela ordem de agendamento.
+     */
+    @Override
+    public int compareTo(JobHandle<?> other) {
+        int resp = this.job.getPriority().compareTo(other.job.getPriority());
+        return resp != 0 ? resp : Long.compare(this.sequence, other.sequence);
+    }
+
+    /**
+     * Método que registra o término da tarefa, a retira da lista de tarefas
+     * ativas do JobScheduler e avisa os ouvintes.
+     * @param end estado final
+     * @param value resultado, em caso de sucesso
+     * @param t erro, em caso de falha
+     */
+    private void finish (State end, T value, Throwable t) {
+        List<JobListener<T>> current;
+        synchronized (this) {
+            if (this.isDone()) {
+                return;
+            }
+            current = this.complete(end, value, t);
+        }
+        this.scheduler.removeActive(this);
+        this.deliverAll(current);
+    }
+
+    /**
+     * Método que grava o estado final da tarefa, devendo ser chamado com o
+     * bloqueio da tarefa.
+     * @param end estado final
+     * @param value resultado, em caso de sucesso
+     * @param t erro, em caso de falha
+     * @return os ouvintes a serem avisados, fora do bloqueio
+     */
+    private List<JobListener<T>> complete (State end, T value, Throwable t) {
+        this.state = end;
+        this.result = value;
+        this.error = t;
+        List<JobListener<T>> resp = new ArrayList<>(this.listeners);
+        this.listeners.clear();
+        return resp;
+    }
+
+    /**
+     * Método que entrega o resultado da tarefa terminada aos ouvintes.
+     * @param current os ouvintes
+     */
+    private void deliverAll (List<JobListener<T>> current) {
+        for (JobListener<T> l : current) {
+            this.deliver(l);
+        }
+    }
+
+    /**
+     * Método que entrega o resultado da tarefa terminada a um ouvinte.
+     * @param listener o ouvinte
+     */
+    private void deliver (final JobListener<T> listener) {
+        final State end;
+        final T value;
+        final Throwable t;
+        synchronized (this) {
+            end = this.state;
+            value = this.result;
+            t = this.error;
+        }
+        this.scheduler.callbackExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (end == State.SUCCEEDED) {
+                    listener.onResult(value);
+                }
+                else if (end == State.FAILED) {
+                    listener.onError(t);
+                }
+                else {
+                    listener.onCancelled();
+                }
+            }
+        });
+    }
+
+    private synchronized List<JobListener<T>> snapshotListeners () {
+        return new ArrayList<>(this.listeners);
+    }
+}
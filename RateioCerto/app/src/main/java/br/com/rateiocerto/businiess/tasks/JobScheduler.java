@@ -0,0 +1,126 @@
+package br.com.rateiocerto.businiess.tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.rateiocerto.interfaces.JobListener;
+
+/**
+ * Rateio Certo
+ *
+ * JobScheduler: classe que executa as tarefas em segundo plano do App, como a
+ * carga dos apartamentos e a geração das planilhas, substituindo o AsyncTask.
+ * As tarefas rodam num conjunto limitado de linhas de execução, de forma que
+ * uma carga demorada não impede a geração de uma planilha. As tarefas
+ * pendentes são executadas por ordem de prioridade (Job.Priority) e, na
+ * mesma prioridade, por ordem de agendamento. Uma tarefa agendada enquanto
+ * outra idêntica (com a mesma chave) ainda está pendente ou em execução não é
+ * duplicada: é retornado o controle da tarefa já agendada. Assim, duas tarefas
+ * com a mesma chave nunca rodam ao mesmo tempo.
+ * Uma instância dessa classe pertence à aplicação (RateioApplication).
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class JobScheduler {
+
+    //quantidade padrão de linhas de execução das tarefas
+    public static final int DEFAULT_WORKERS = 2;
+
+    private final ThreadPoolExecutor executor;
+    private final Executor callbackExecutor;
+    private final Map<String, JobHandle<?>> active = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Construtor da classe.
+     * @param workers quantidade de linhas de execução das tarefas
+     * @param callbackExecutor executor no qual os ouvintes das tarefas são chamados
+     */
+    public JobScheduler (int workers, Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "rateio-job-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Método que agenda uma tarefa. Caso uma tarefa com a mesma chave ainda
+     * esteja pendente ou em execução, a nova não é agendada, e o ouvinte é
+     * registrado na tarefa existente. Isso vale também para uma tarefa cujo
+     * cancelamento foi pedido durante a execução, até que ela termine.
+     * @param job a tarefa
+     * @param listener ouvinte da tarefa, podendo ser null
+     * @param <T> o tipo do resultado da tarefa
+     * @return o controle da tarefa agendada
+     */
+    @SuppressWarnings("unchecked")
+    public <T> JobHandle<T> submit (Job<T> job, JobListener<T> listener) {
+        JobHandle<T> resp;
+        boolean created = false;
+        synchronized (this) {
+            resp = (JobHandle<T>) this.active.get(job.getKey());
+            if (resp == null) {
+                resp = new JobHandle<>(job, this, this.sequence.incrementAndGet());
+                this.active.put(job.getKey(), resp);
+                created = true;
+            }
+        }
+        if (listener != null) {
+            resp.addListener(listener);
+        }
+        if (created) {
+            this.executor.execute(resp);
+        }
+        return resp;
+    }
+
+    /**
+     * Método que retorna a quantidade de tarefas ainda não terminadas,
+     * pendentes ou em execução.
+     * @return a quantidade de tarefas ativas
+     */
+    public synchronized int getActiveCount () {
+        return this.active.size();
+    }
+
+    /**
+     * Método que encerra as linhas de execução após o término das tarefas
+     * já agendadas.
+     */
+    public void shutdown () {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Método que retira uma tarefa da lista de ativas, ao terminar ou ao ser
+     * cancelada enquanto pendente, e da fila de execução. A partir daí, uma
+     * nova tarefa com a mesma chave pode ser agendada.
+     * @param handle controle da tarefa
+     */
+    void removeActive (JobHandle<?> handle) {
+        synchronized (this) {
+            if (this.active.get(handle.getJob().getKey()) == handle) {
+                this.active.remove(handle.getJob().getKey());
+            }
+        }
+        this.executor.remove(handle);
+    }
+
+    Executor callbackExecutor () {
+        return this.callbackExecutor;
+    }
+}
@@ -1,83 +1,119 @@
 package br.com.rateiocerto.businiess.tasks;
 
-import android.os.AsyncTask;
-import android.widget.Toast;
-
-import androidx.appcompat.app.AppCompatActivity;
-
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 
-import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.businiess.AptCsvImporter;
+import br.com.rateiocerto.businiess.DataRWManager;
 import br.com.rateiocerto.businiess.DatabaseRateio;
+import br.com.rateiocerto.businiess.Tracer;
 
 /**
  * Rateio Certo
  *
  * TaskSetupAptTable: classe que implementa rotinas de execução em background
  * com o objetivo de cadastrar todos os apartamentos contidos num arquivo de
- * entrada. Essa execução roda independente do processamento da interface gráfica.
+ * entrada. Essa execução roda no JobScheduler, independente do processamento
+ * da interface gráfica, com a prioridade das cargas em lote.
+ * O carregamento é feito em blocos de apartamentos, cada um numa transação, com
+ * publicação do progresso e contagem das linhas com erro.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
-public class TaskSetupAptTable extends AsyncTask <Void, Void, String> {
+public class TaskSetupAptTable extends Job<String> {
+
+    //quantidade máxima de linhas com erro descritas no aviso final
+    private static final int MAX_ERRORS_REPORTED = 5;
 
-    public AppCompatActivity a;
     public String filePath;
-    public DatabaseRateio db;
+    public DataRWManager manager;
 
     /**
      * Constutor da classe. Recebe parâmetros vindos da interface gráfica
      * e necessários para operação prinipal.
-     * @param a Atvidade referência da interface gráfica
      * @param filePath caminho da pasta a qual o app lê e escreve os arquivos.
-     * @param db referência do banco de dados do condomínio
+     * @param manager gerenciador do condomínio, do qual o banco de dados é reservado
      */
-    public TaskSetupAptTable (AppCompatActivity a, String filePath, DatabaseRateio db) {
-        this.a = a;
+    public TaskSetupAptTable (String filePath, DataRWManager manager) {
+        super("setupAptTable:" + filePath, Priority.BULK);
         this.filePath = filePath;
-        this.db = db;
+        this.manager = manager;
     }
 
     /**
-     * Reimplementação do método da classe AsyncTask. Nele temos a criação
-     * de um aviso na tela de que o carregamento dos apartamentos iniciará.
+     * Rotina de execução da tarefa. Nela temos a leitura do arquivo e
+     * carregamento das informações, no BD, dos apartamentos, delegada ao
+     * AptCsvImporter. A cada bloco gravado, a quantidade de apartamentos
+     * carregados é publicada como progresso. As linhas com erro são ignoradas
+     * e listadas no aviso final. Quando todas as linhas são lidas, a execução
+     * termina. A tarefa só pode ser cancelada antes de iniciada: depois disso
+     * o carregamento vai até o fim, para não deixar a tabela parcialmente
+     * carregada. O banco do condomínio fica reservado durante todo o
+     * carregamento, não sendo fechado pelo DatabaseRegistry.
+     * Com o rastreamento ligado, o carregamento é registrado no Tracer, e o
+     * trace da execução é gravado ao final.
+     * @param handle controle da tarefa, usado para publicar o progresso
+     * @return a mensagem a ser exibida ao final da tarefa
      */
     @Override
-    protected void onPreExecute() {
-        String text = "Carregando dados iniciais, aguarde...";
-        Toast.makeText(this.a.getBaseContext(), text, Toast.LENGTH_SHORT).show();
-
+    protected String run(JobHandle<String> handle) {
+        Tracer.Span span = Tracer.begin("task", "TaskSetupAptTable");
+        try {
+            DatabaseRateio db = this.manager.acquireDatabase();
+            try {
+                return this.importApartments(db, handle, span);
+            }
+            finally {
+                this.manager.releaseDatabase();
+            }
+        }
+        finally {
+            span.end();
+            try {
+                Tracer.flush();
+            }
+            catch (IOException e) {
+                //o trace é apenas diagnóstico, e a falha na gravação não afeta o carregamento
+            }
+        }
     }
 
     /**
-     * Reimplementação do método da classe AsyncTask. Nele temos a rotina de
-     * leitura de cada linha do arquivo e carregamento das informações, no
-     * BD, do apartamento referente a essa linha. Quando todas as linhas
-     * são lidas, a execução termina.
+     * Método que carrega os apartamentos do arquivo no BD.
+     * @param db banco de dados do condomínio, reservado durante o carregamento
+     * @param handle controle da tarefa, usado para publicar o progresso
+     * @param span intervalo da tarefa, que recebe as quantidades de linhas
+     * @return a mensagem a ser exibida ao final da tarefa
      */
-    @Override
-    protected String doInBackground(Void... voids) {
+    private String importApartments (DatabaseRateio db, final JobHandle<String> handle,
+                                     Tracer.Span span) {
         String resp = "";
-        FileReader aptFile;
-        BufferedReader bf;
-        String lineData;
-        String [] aptData;
+        final StringBuilder errors = new StringBuilder();
+        final AptCsvImporter importer = new AptCsvImporter(db);
 
         try {
-            aptFile = new FileReader (this.filePath);
-            bf = new BufferedReader(aptFile);
-            lineData = bf.readLine();
-            while (lineData != null) {
-                aptData = lineData.split(",");
-                Apartment a = new Apartment (aptData[0], Integer.parseInt(aptData[1]));
-                this.db.ApartmentDao().insertApt(a);
-                lineData = bf.readLine();
+            int total = importer.importFile(this.filePath, new AptCsvImporter.ImportListener() {
+                @Override
+                public void onProgress(int linesRead, int aptsInserted) {
+                    handle.publishProgress(aptsInserted);
+                }
+
+                @Override
+                public void onLineError(int lineNumber, String line, String reason) {
+                    if (importer.getLineErrors() <= MAX_ERRORS_REPORTED) {
+                        if (errors.length() > 0) {
+                            errors.append(", ");
+                        }
+                        errors.append(lineNumber);
+                    }
+                }
+            });
+            span.arg("lines", importer.getLinesRead()).arg("rows", total)
+                    .arg("lineErrors", importer.getLineErrors());
+            resp = "Dados iniciais carregados: " + total + " apartamentos.";
+            if (importer.getLineErrors() > 0) {
+                resp = resp + "\n" + importer.getLineErrors() +
+                        " linha(s) com erro ignorada(s): " + errors;
             }
-            bf.close();
-            aptFile.close();
-            resp = "Dados iniciais carregados.";
         }
         catch (IOException e) {
             resp = "Ocorreu um erro: " + e.getMessage();
@@ -85,14 +121,4 @@ public class TaskSetupAptTable extends AsyncTask <Void, Void, String> {
         return resp;
 
     }
-
-    /**
-     * Reimplementação do método da classe AsyncTask. Nele temos a criação
-     * de um aviso na tela de que o carregamento dos apartamentos foi concluído.
-     */
-    @Override
-    protected void onPostExecute(String s) {
-        Toast.makeText(this.a.getBaseContext(), s, Toast.LENGTH_SHORT).show();
-
-    }
 }
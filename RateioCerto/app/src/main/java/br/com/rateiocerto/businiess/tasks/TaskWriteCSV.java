@@ -1,92 +1,99 @@
 package br.com.rateiocerto.businiess.tasks;
 
-import android.os.AsyncTask;
-import android.view.View;
-import android.widget.Toast;
-
 import java.io.IOException;
 import java.time.LocalDate;
 
-import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.Tracer;
+import br.com.rateiocerto.interfaces.GuiBackendManager;
 
 /**
  * Rateio Certo
  *
  * TaskWriteCSV: classe que implementa rotinas de execução em background
  * com o objetivo de gerar uma planilha com as leituras dos apartamentos.
- * Essa execução roda independente do processamento da interface gráfica.
+ * Essa execução roda no JobScheduler, independente do processamento da
+ * interface gráfica, com a prioridade das exportações. Pedidos repetidos da
+ * mesma planilha, enquanto o primeiro ainda está pendente ou em execução,
+ * geram uma única execução.
  *
  * @Author: Severino José (biujose@gmail.com)
  */
-public class TaskWriteCSV extends AsyncTask <Void, Void, String> {
+public class TaskWriteCSV extends Job<String> {
 
     private int lastYear;
     private int lastMonth;
     private int currYear;
     private int currMonth;
 
-    public View v;
-    public DataRWManager drw;
+    public GuiBackendManager drw;
 
     /**
      * Constutor da classe. Recebe parâmetros vindos da interface gráfica
      * e necessários para operação prinipal.
-     * @param v Atvidade referência da interface gráfica
-     * @param drw referência de uma instância DataRWManager inicializada
+     * @param drw referência do gerenciador da camada de negócio inicializado
      */
-    public TaskWriteCSV (View v, DataRWManager drw) {
-        this.v = v;
+    public TaskWriteCSV (GuiBackendManager drw) {
+        super("writeCSV:" + drw.getNameCondominium(), Priority.EXPORT);
         this.drw = drw;
     }
 
     /**
-     * Reimplementação do método da classe AsyncTask. Aqui ocorre o
-     * carregamento das variáveis necessárias para geração da planilha,
-     * com a conversão dos inteiros dos meses e anos em string.
-     * Também temos a criação de um aviso na tela de que o processamento
-     * de geração da planilha iniciará.
-     */
-    @Override
-    protected void onPreExecute() {
-        String [] lastDateRead = this.drw.getLastYearMonthCompleteRead();
-        this.lastYear = Integer.parseInt(lastDateRead [0]);
-        this.lastMonth = Integer.parseInt(lastDateRead [1]);
-        String currDateRead = LocalDate.now().toString();
-        this.currYear = Integer.parseInt(currDateRead.substring(0,4));
-        this.currMonth = Integer.parseInt(currDateRead.substring(5,7));
-
-        String text = "Criando a planilha, aguarde...";
-        Toast.makeText(this.v.getContext(), text, Toast.LENGTH_SHORT).show();
-
-    }
-
-    /**
-     * Reimplementação do método da classe AsyncTask. Nele temos a chamada
-     * do método pertencente à instância do DataRWManager, indicando como
-     * parâmetros as variáveis inicializadas na pre-execução.
+     * Rotina de execução da tarefa. Aqui ocorre o carregamento do mês e ano do
+     * último período fechado, anterior ao atual, e do mês e ano atuais. Em
+     * seguida o período atual é fechado, e temos a chamada do método
+     * pertencente à instância do DataRWManager, indicando esses valores como
+     * parâmetros. Caso não haja período fechado anterior, apenas o fechamento
+     * ocorre, e o período atual passa a ser a referência da próxima planilha.
+     * A tarefa pode ser cancelada antes do fechamento do período e antes da
+     * escrita da planilha.
+     * Com o rastreamento ligado, cada etapa é registrada no Tracer, e o trace
+     * da execução é gravado ao final.
+     * @param handle controle da tarefa
+     * @return a mensagem a ser exibida ao final da tarefa
+     * @throws IOException erro retornado caso haja um problema na geração
      */
     @Override
-    protected String doInBackground(Void... voids) {
-        String resp = "";
+    protected String run(JobHandle<String> handle) throws IOException {
+        Tracer.Span span = Tracer.begin("task", "TaskWriteCSV");
         try {
-            this.drw.writeCSVSheet(this.lastYear, this.lastMonth, this.currYear, this.currMonth);
-            resp = "Planilha salva com sucesso.";
-
+            return this.closeAndWriteSheet(handle);
         }
-        catch (IOException e) {
-            resp = "Ocorreu um erro: " + e.getMessage();
-
+        finally {
+            span.end();
+            try {
+                Tracer.flush();
+            }
+            catch (IOException e) {
+                //o trace é apenas diagnóstico, e a falha na gravação não afeta a planilha
+            }
         }
-        return resp;
     }
 
     /**
-     * Reimplementação do método da classe AsyncTask. Nele temos a criação
-     * de um aviso na tela de que o processamento de geração da planilha
-     * foi concluido.
+     * Método que fecha o período atual e gera a planilha, em relação ao
+     * último período fechado.
+     * @param handle controle da tarefa, usado para verificar o cancelamento
+     * @return a mensagem a ser exibida ao final da tarefa
+     * @throws IOException erro retornado caso haja um problema na geração
      */
-    @Override
-    protected void onPostExecute(String s) {
-        Toast.makeText(this.v.getContext(), s, Toast.LENGTH_SHORT).show();
+    private String closeAndWriteSheet (JobHandle<String> handle) throws IOException {
+        Tracer.Span phase = Tracer.begin("task", "getLastYearMonthCompleteRead");
+        String [] lastDateRead = this.drw.getLastYearMonthCompleteRead();
+        phase.end();
+        String currDateRead = LocalDate.now().toString();
+        this.currYear = Integer.parseInt(currDateRead.substring(0,4));
+        this.currMonth = Integer.parseInt(currDateRead.substring(5,7));
+        handle.checkCancelled();
+        phase = Tracer.begin("task", "closePeriod");
+        this.drw.closePeriod(this.currYear, this.currMonth);
+        phase.end();
+        if (lastDateRead [0].isEmpty()) {
+            return "Período fechado. Não há leitura anterior para comparação.";
+        }
+        this.lastYear = Integer.parseInt(lastDateRead [0]);
+        this.lastMonth = Integer.parseInt(lastDateRead [1]);
+        handle.checkCancelled();
+        this.drw.writeCSVSheet(this.lastYear, this.lastMonth, this.currYear, this.currMonth);
+        return "Planilha salva com sucesso.";
     }
 }
@@ -29,6 +29,13 @@ public interface ApartmentDao {
     @Insert
     void insertApt (Apartment apt);
 
+    /**
+     * Método de inserção de uma lista de apartamentos, numa única transação.
+     * @param list lista de objetos referentes às novas linhas inseridas na tabela
+     */
+    @Insert
+    void insertAptList (List<Apartment> list);
+
     /**
      * Método de remoção de um apartamento, comando DELETE do SQLite.
      * @param apt objeto referente à linha a ser removida na tabela
@@ -68,6 +75,14 @@ public interface ApartmentDao {
     @Query ("SELECT * FROM Apartment")
     List<Apartment> listAllApartments ();
 
+    /**
+     * Método que lista todos os apartametos cadastrados, ordenados
+     * por bloco e número.
+     * @return a lista ordenada de apartamentos cadastrados
+     */
+    @Query ("SELECT * FROM Apartment ORDER BY bloco ASC, numero ASC")
+    List<Apartment> listAllApartmentsOrdered ();
+
     /**
      * Método que lista os nomes de blocos, os quais existem apartamentos
      * cadastrados.
@@ -1,11 +1,15 @@
 package br.com.rateiocerto.interfaces;
 
+import android.database.Cursor;
+
 import androidx.room.Dao;
 import androidx.room.Query;
 
 import java.util.List;
 
 import br.com.rateiocerto.basics.AptRead;
+import br.com.rateiocerto.basics.ConsumptionTotals;
+import br.com.rateiocerto.engine.RateioSchema;
 
 /**
  * Rateio Certo
@@ -29,65 +33,83 @@ public interface AptReadDao {
 
     /**
      * Método que retorna a quantidade de leituras contidas nas
-     * visualizações, de acordo com o mês e ano passados como parâmetros.
-     * @param year ano de referência para busca
-     * @param month mês de referência para busca
-     * @return a soma das leituras correspondentes ao mês e ano recebidos
+     * visualizações, de acordo com o período passado como parâmetro.
+     * @param period período (ano * 100 + mês) de referência para busca
+     * @return a quantidade de leituras correspondentes ao período recebido
      */
-    @Query ("SELECT COUNT(1) FROM AptRead WHERE " +
-            "(STRFTIME ('%Y', readDataDateRead) = (:year) " +
-            "AND STRFTIME ('%m', readDataDateRead) = (:month))")
-    int getTotalYearMonthAptRead (String year, String month);
+    @Query ("SELECT COUNT(1) FROM AptRead WHERE (readDataPeriod = :period)")
+    int getTotalYearMonthAptRead (int period);
 
     /**
      * Método que busca a linha de visualização, com informações de leitura
-     * atual do apartamento, cujo id é passado como parâmetro.
+     * do apartamento no período indicado, cujo id é passado como parâmetro.
      * @param idApt id do apartamento a ser buscado
-     * @return a linha contendo informações da leitura atual do apartamento recebido
+     * @param period período (ano * 100 + mês) da leitura desejada
+     * @return a linha contendo informações da leitura do apartamento recebido
      */
-    @Query ("SELECT * FROM AptRead WHERE (id_apt = :idApt) AND " +
-            "(STRFTIME('%m', readDataDateRead) = STRFTIME ('%m','now'))")
-    AptRead getCurrentAptReadById (int idApt);
+    @Query ("SELECT * FROM AptRead WHERE (id_apt = :idApt) AND (readDataPeriod = :period)")
+    AptRead getCurrentAptReadById (int idApt, int period);
 
     /**
      * Método que retorna uma lista de visualizações de leitura referentes
-     * ao mês e ano passados como parâmetros.
-     * @param year ano de referência da lista
-     * @param month mês de referência da lista
-     * @return a lista correspondente ao mês e ano recebidos.
+     * ao período passado como parâmetro.
+     * @param period período (ano * 100 + mês) de referência da lista
+     * @return a lista correspondente ao período recebido.
      */
-    @Query ("SELECT * FROM AptRead WHERE " +
-            "(STRFTIME ('%Y', readDataDateRead) = (:year) " +
-            "AND STRFTIME ('%m', readDataDateRead) = (:month))")
-    List<AptRead> getYearMonthListAptRead (String year, String month);
+    @Query ("SELECT * FROM AptRead WHERE (readDataPeriod = :period)")
+    List<AptRead> getYearMonthListAptRead (int period);
 
     /**
-     * Método que retorna uma visualização de leitura referente ao mês e
-     * ano imediatamente anteriores ao mês e ano passados como parâmetro.
+     * Método que retorna uma visualização de leitura referente ao período
+     * imediatamente anterior ao período passado como parâmetro.
      * Ou seja, retorna uma visualização de leitura do mês anterior
      * (ou menos), o qual possui a penúltima lista de leituras
-     * realizadas (em relação ao mês e ano indicado nos parâmetros).
-     * @param year ano de referência para busca
-     * @param month mês de referência para busca
+     * realizadas (em relação ao período indicado no parâmetro).
+     * @param period período (ano * 100 + mês) de referência para busca
      * @return uma visualzação de leitura correspondente ao mês (ou ano) anterior.
      */
-    @Query ("SELECT * FROM AptRead WHERE ((STRFTIME ('%Y', readDataDateRead) = :year)" +
-            "AND (STRFTIME ('%m', readDataDateRead) < :month))" +
-            "OR (STRFTIME ('%Y', readDataDateRead) < :year) " +
-            "ORDER BY id_apt DESC LIMIT (1)")
-    AptRead getLastAptReadPastMonth (String year, String month);
+    @Query ("SELECT * FROM AptRead WHERE (readDataPeriod < :period) " +
+            "ORDER BY readDataPeriod DESC, id_apt DESC LIMIT (1)")
+    AptRead getLastAptReadPastMonth (int period);
+
+    /**
+     * Método que retorna a soma dos valores de leitura realizados no período
+     * indicado pelo parâmetro.
+     * @param period período (ano * 100 + mês) de referência para o cálculo
+     * @return a soma dos valores de leitura, refentes ao período indicado
+     */
+    @Query ("SELECT SUM (readDataValueRead) FROM AptRead WHERE (readDataPeriod = :period)")
+    int getSumYearMonthListAptRead (int period);
 
     /**
-     * Método que retorna a soma dos valores de leitura realizados no mês e ano
-     * indicados pelos parâmetros.
-     * @param year ano de referência para o cálculo
-     * @param month mês de referência para o cálculo
-     * @return a soma dos valores de leitura, refentes ao mês e ano indicados
+     * Método que retorna um cursor com uma linha por apartamento, contendo as
+     * leituras dos dois períodos indicados. As leituras são pareadas pelo id
+     * do apartamento, através de buscas no índice (id_apt, periodo).
+     * Apartamentos sem leitura em um dos períodos aparecem com o valor
+     * correspondente nulo; os sem leitura em ambos são omitidos. As colunas
+     * são id_apt, bloco, numero, valorAnterior e valorAtual. O consumo de
+     * cada linha é calculado pelo RateioEngine. A consulta é compartilhada
+     * com as ferramentas (RateioSchema.CONSUMPTION_QUERY).
+     * @param prevPeriod período (ano * 100 + mês) da leitura anterior
+     * @param currPeriod período (ano * 100 + mês) da leitura atual
+     * @return o cursor ordenado pelo id do apartamento
      */
-    @Query ("SELECT SUM (readDataValueRead) FROM AptRead WHERE " +
-            "(STRFTIME ('%Y', readDataDateRead) = (:year) " +
-            "AND STRFTIME ('%m', readDataDateRead) = (:month))")
-    int getSumYearMonthListAptRead (String year, String month);
+    @Query (RateioSchema.CONSUMPTION_QUERY)
+    Cursor getConsumptionCursor (int prevPeriod, int currPeriod);
 
-    //Todo: Desenvolver queries necessarias à geração da planilha, como a soma das diferencas
+    /**
+     * Método que retorna os totais da planilha de consumo entre os dois
+     * períodos indicados: a quantidade de apartamentos com leitura em
+     * ambos e a soma dos seus consumos, calculada como no RateioEngine.
+     * @param prevPeriod período (ano * 100 + mês) da leitura anterior
+     * @param currPeriod período (ano * 100 + mês) da leitura atual
+     * @return os totais do intervalo
+     */
+    @Query ("SELECT COUNT (1) AS pairedApts, " +
+            "IFNULL (SUM (ABS (curr.valor_leitura - prev.valor_leitura)), 0) AS totalVolume " +
+            "FROM ReadData AS curr INNER JOIN ReadData AS prev ON " +
+            "(prev.id_apt = curr.id_apt AND prev.periodo = :prevPeriod) " +
+            "INNER JOIN Apartment ON (Apartment.id_apt = curr.id_apt) " +
+            "WHERE (curr.periodo = :currPeriod)")
+    ConsumptionTotals getConsumptionTotals (int prevPeriod, int currPeriod);
 }
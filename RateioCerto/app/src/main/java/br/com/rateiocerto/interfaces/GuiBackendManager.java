@@ -1,6 +1,7 @@
 package br.com.rateiocerto.interfaces;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Vector;
 
 import br.com.rateiocerto.basics.Apartment;
@@ -99,6 +100,20 @@ public interface GuiBackendManager {
      */
     Apartment getPreviousApartment(String block, int num);
 
+    /**
+     * Método que retorna o primeiro apartamento de um bloco, na ordem de navegação.
+     * @param block nome do bloco
+     * @return o primeiro apartamento do bloco, ou null caso o bloco não exista
+     */
+    Apartment getFirstApartmentOfBlock(String block);
+
+    /**
+     * Método que retorna o primeiro apartamento, na ordem de navegação, que
+     * ainda não possui leitura no mês atual.
+     * @return o primeiro apartamento sem leitura, ou null caso todos tenham leitura
+     */
+    Apartment getFirstUnreadApartment();
+
     /**
      * Método que lista os nomes de blocos, os quais existem apartamentos
      * cadastrados.
@@ -106,6 +121,31 @@ public interface GuiBackendManager {
      */
     Vector<String> listBlocks();
 
+    /**
+     * Método que retorna uma lista de leituras referentes ao mês e ano passados como
+     * parâmetros.
+     * @param year ano de referência da lista
+     * @param month mês de referência da lista
+     * @return a lista correspondente ao mês e ano recebidos.
+     */
+    List<ReadData> getMonthListReadData (int year, int month);
+
+    /**
+     * Método que retorna a leitura cadastrada no mês atual de um apartamento.
+     * @param idApt identificador do apartamento
+     * @return leitura atual do apartamento. Caso contrário, null
+     */
+    ReadData getCurrentReadDataById (int idApt);
+
+    /**
+     * Método que retorna a quantidade de leituras realizadas no mês e ano
+     * indicados.
+     * @param year ano de referência
+     * @param month mês de referência
+     * @return a quantidade de leituras do mês e ano recebidos
+     */
+    int getTotalYearMonthReads (int year, int month);
+
     /**
      * Método que faz a inserção ou atualização (caso já exista) de uma nova
      * leitura.
@@ -113,6 +153,13 @@ public interface GuiBackendManager {
      */
     void insertUpdateReadData (ReadData r);
 
+    /**
+     * Método que faz a inserção ou atualização (caso já existam) de uma lista
+     * de leituras, numa única transação.
+     * @param list a lista de leituras a serem gravadas
+     */
+    void insertUpdateReadDataList (List<ReadData> list);
+
     /**
      * Método que retorna o ano e mês da penúltima leitura completa,
      * anterior à leitura atual.
@@ -120,6 +167,14 @@ public interface GuiBackendManager {
      */
     String [] getLastYearMonthCompleteRead();
 
+    /**
+     * Método que fecha o período de leitura do mês e ano indicados, o qual
+     * passa a ser a referência anterior das próximas planilhas.
+     * @param year ano do período
+     * @param month mês do período
+     */
+    void closePeriod(int year, int month);
+
     /**
      * Método responsável por realizar a geração da planilha de consumo,
      * entre os meses e anos indicados nos parâmetros. A planilha contém
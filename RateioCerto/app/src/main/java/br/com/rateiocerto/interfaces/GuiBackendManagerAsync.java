@@ -0,0 +1,179 @@
+package br.com.rateiocerto.interfaces;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.List;
+import java.util.Vector;
+
+import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.businiess.ReadSession;
+
+/**
+ * Rateio Certo
+ *
+ * GuiBackendManagerAsync: versão não bloqueante da interface GuiBackendManager.
+ * Cada método agenda a operação correspondente na linha de execução dedicada
+ * ao BD e retorna imediatamente uma operação assíncrona (ListenableFuture), cujo
+ * resultado pode ser recebido na interface gráfica através de DbExecutors.addCallback.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+
+public interface GuiBackendManagerAsync {
+
+    /**
+     * Método que retorna o nome do condomínio, cujo BD foi carregado.
+     * Não acessa o BD, por isso não é assíncrono.
+     * @return a string do nome do condomínio
+     */
+    String getNameCondominium();
+
+    /**
+     * Método que retorna a quantidade de apartamentos cadastrados no BD.
+     * @return a quantidade de apartamentos cadastrados
+     */
+    ListenableFuture<Integer> getTotalApartments();
+
+    /**
+     * Método que verifica se um apartamento está cadastrado no sistema.
+     * @param block nome do bloco do apartamento
+     * @param num número do apartamento
+     * @return true caso o apartamento esteja cadastrado. Caso contrário, false
+     */
+    ListenableFuture<Boolean> existApartment(String block, int num);
+
+    /**
+     * Método que verifica se um apartamento é o primeiro da relação de cadastrados.
+     * @param block nome do bloco do apartamento
+     * @param num número do apartamento
+     * @return true caso o apartamento seja o primeiro. Caso contrário, false
+     */
+    ListenableFuture<Boolean> isFirstApartment(String block, int num);
+
+    /**
+     * Método que verifica se um apartamento é o último da relação de cadastrados.
+     * @param block nome do bloco do apartamento
+     * @param num número do apartamento
+     * @return true caso o apartamento seja o último. Caso contrário, false
+     */
+    ListenableFuture<Boolean> isLastApartment(String block, int num);
+
+    /**
+     * Método que retorna o primeiro apartamento cadastrado.
+     * @return o primeiro apartamento
+     */
+    ListenableFuture<Apartment> getFirstApartment();
+
+    /**
+     * Método de busca por um apartamento cadastrado, de acordo com o nome do bloco e o número.
+     * @param block nome do bloco a ser pesquisado
+     * @param num número do apartamento a ser pesquisado
+     * @return o apartamento, ou null caso não exista
+     */
+    ListenableFuture<Apartment> getApartment(String block, int num);
+
+    /**
+     * Método que retorna o apartamento seguinte ao indicado nos parâmetros.
+     * @param block nome do bloco de referência
+     * @param num número do apartamento de referência
+     * @return o próximo apartamento, ou null caso não exista
+     */
+    ListenableFuture<Apartment> getNextApartment(String block, int num);
+
+    /**
+     * Método que retorna o apartamento anterior ao indicado nos parâmetros.
+     * @param block nome do bloco de referência
+     * @param num número do apartamento de referência
+     * @return o apartamento anterior, ou null caso não exista
+     */
+    ListenableFuture<Apartment> getPreviousApartment(String block, int num);
+
+    /**
+     * Método que retorna o primeiro apartamento de um bloco, na ordem de navegação.
+     * @param block nome do bloco
+     * @return o primeiro apartamento do bloco, ou null caso o bloco não exista
+     */
+    ListenableFuture<Apartment> getFirstApartmentOfBlock(String block);
+
+    /**
+     * Método que retorna o primeiro apartamento, na ordem de navegação, que
+     * ainda não possui leitura no mês atual.
+     * @return o primeiro apartamento sem leitura, ou null caso todos tenham leitura
+     */
+    ListenableFuture<Apartment> getFirstUnreadApartment();
+
+    /**
+     * Método que lista os nomes de blocos, os quais existem apartamentos cadastrados.
+     * @return a lista dos nomes dos blocos
+     */
+    ListenableFuture<Vector<String>> listBlocks();
+
+    /**
+     * Método que retorna a leitura do mês atual de um apartamento.
+     * @param idApt identificador do apartamento
+     * @return a leitura atual do apartamento, ou null caso não exista
+     */
+    ListenableFuture<ReadData> getCurrentReadDataById(int idApt);
+
+    /**
+     * Método que retorna a quantidade de leituras do mês e ano indicados.
+     * @param year ano de referência
+     * @param month mês de referência
+     * @return a quantidade de leituras do período
+     */
+    ListenableFuture<Integer> getTotalYearMonthReads(int year, int month);
+
+    /**
+     * Método que faz a inserção ou atualização (caso já exista) de uma nova leitura.
+     * @param r o objeto que representa a nova leitura
+     * @return operação concluída quando a leitura for gravada
+     */
+    ListenableFuture<Void> insertUpdateReadData(ReadData r);
+
+    /**
+     * Método que faz a inserção ou atualização de uma lista de leituras, numa única transação.
+     * @param list a lista de leituras a serem gravadas
+     * @return operação concluída quando as leituras forem gravadas
+     */
+    ListenableFuture<Void> insertUpdateReadDataList(List<ReadData> list);
+
+    /**
+     * Método que retorna o ano e mês da penúltima leitura completa, anterior à leitura atual.
+     * @return array de string que armazena o ano e mês da penúltima leitura
+     */
+    ListenableFuture<String []> getLastYearMonthCompleteRead();
+
+    /**
+     * Método que fecha o período de leitura do mês e ano indicados, o qual
+     * passa a ser a referência anterior das próximas planilhas.
+     * @param year ano do período
+     * @param month mês do período
+     * @return operação concluída quando o período for fechado
+     */
+    ListenableFuture<Void> closePeriod(int year, int month);
+
+    /**
+     * Método responsável por realizar a geração da planilha de consumo, entre os meses e anos indicados.
+     * @param prevYear ano da leitura anterior a de referência
+     * @param prevMonth mês da leitura anterior a de referência
+     * @param currYear ano referente à leitura atual
+     * @param currMonth mês referente à leitura atual
+     * @return operação concluída quando a planilha for gravada, ou com o erro de escrita
+     */
+    ListenableFuture<Void> writeCSVSheet(int prevYear, int prevMonth, int currYear, int currMonth);
+
+    /**
+     * Método que carrega uma sessão de leitura, com todos os apartamentos e
+     * as leituras do período atual em memória.
+     * @return a sessão de leitura carregada
+     */
+    ListenableFuture<ReadSession> loadReadSession();
+
+    /**
+     * Método que grava as métricas das chamadas do condomínio em
+     * log/metrics-(condomínio).json, caso a instrumentação esteja ligada.
+     * @return operação concluída quando o arquivo for gravado
+     */
+    ListenableFuture<Void> dumpMetrics();
+}
@@ -0,0 +1,24 @@
+package br.com.rateiocerto.interfaces;
+
+/**
+ * Rateio Certo
+ *
+ * JobListener: interface de retorno das tarefas executadas pelo JobScheduler.
+ * Além do resultado ou do erro, recebe o progresso da tarefa e o aviso de
+ * cancelamento. Seus métodos são chamados na linha da interface gráfica.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public interface JobListener<T> extends ResultCallback<T> {
+
+    /**
+     * Método chamado quando a tarefa publica o seu progresso.
+     * @param value valor do progresso, cujo significado depende da tarefa
+     */
+    void onProgress (int value);
+
+    /**
+     * Método chamado quando a tarefa é cancelada antes de terminar.
+     */
+    void onCancelled ();
+}
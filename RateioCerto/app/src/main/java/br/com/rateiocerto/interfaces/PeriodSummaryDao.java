@@ -0,0 +1,28 @@
+package br.com.rateiocerto.interfaces;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import br.com.rateiocerto.basics.PeriodSummary;
+
+/**
+ * Rateio Certo
+ *
+ * PeriodSummaryDao: interface que possui os métodos responsáveis pelas consultas
+ * SQLite referentes à tabela PeriodSummary. A tabela é mantida por gatilhos do
+ * BD, por isso não há métodos de gravação.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+
+@Dao
+public interface PeriodSummaryDao {
+
+    /**
+     * Método que retorna os totais de leitura de um período.
+     * @param period período de referência (ano * 100 + mês)
+     * @return os totais do período, ou null caso não haja leituras no mesmo
+     */
+    @Query ("SELECT * FROM PeriodSummary WHERE (periodo = :period)")
+    PeriodSummary getPeriodSummary (int period);
+}
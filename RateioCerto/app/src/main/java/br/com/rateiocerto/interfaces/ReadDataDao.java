@@ -24,12 +24,23 @@ import br.com.rateiocerto.basics.ReadData;
 public interface ReadDataDao {
 
     /**
-     * Método de inserção de uma leitura, comando INSERT do SQLite.
-     * @param r objeto referente à nova linha inserida na tabela
+     * Método de inserção ou atualização de uma leitura, num único comando
+     * INSERT OR REPLACE do SQLite. Como o par (id_apt, periodo) é único,
+     * uma leitura já existente do apartamento no mesmo período é substituída.
+     * @param r objeto referente à leitura a ser inserida ou atualizada
      */
     @Insert (onConflict = OnConflictStrategy.REPLACE)
     void insertReadData (ReadData r);
 
+    /**
+     * Método de inserção ou atualização de uma lista de leituras. Todas as
+     * linhas são gravadas numa única transação, com o mesmo comportamento
+     * de substituição do método insertReadData.
+     * @param list lista de leituras a serem inseridas ou atualizadas
+     */
+    @Insert (onConflict = OnConflictStrategy.REPLACE)
+    void upsertReadDataList (List<ReadData> list);
+
     /**
      * Método de remoção de uma leitura, comando DELETE do SQLite.
      * @param r objeto referente à linha a ser removida na tabela
@@ -51,14 +62,12 @@ public interface ReadDataDao {
     void clearAllReadData ();
 
     /**
-     * Método que remove as leituras referentes ao mês e ano indicados
-     * como parâmetros.
-     * @param year ano indicado para seleção
-     * @param month mês indicado para seleção
+     * Método que remove as leituras referentes ao período indicado
+     * como parâmetro.
+     * @param period período (ano * 100 + mês) indicado para seleção
      */
-    @Query ("DELETE FROM ReadData WHERE STRFTIME ('%Y', data_leitura) = (:year) " +
-            "AND STRFTIME ('%m', data_leitura) = (:month)")
-    void clearReadList (String year, String month);
+    @Query ("DELETE FROM ReadData WHERE (periodo = :period)")
+    void clearReadList (int period);
 
     /**
      * Método que busca por uma leitura cadastrada, a qual contenha o mesmo
@@ -70,51 +79,52 @@ public interface ReadDataDao {
     ReadData getReadData (int idRead);
 
     /**
-     * Método que retorna a soma dos valores de leitura realizados no mês e ano
-     * indicados pelos parâmetros.
-     * @param year ano de referência para o cálculo
-     * @param month mês de referência para o cálculo
-     * @return a soma dos valores de leitura, refentes ao mês e ano indicados
+     * Método que retorna a quantidade de leituras realizadas no período
+     * indicado pelo parâmetro.
+     * @param period período (ano * 100 + mês) de referência para o cálculo
+     * @return a quantidade de leituras, refentes ao período indicado
      */
-    @Query ("SELECT COUNT (1) FROM ReadData WHERE " +
-            "(STRFTIME ('%Y', data_leitura) = (:year) " +
-            "AND STRFTIME ('%m', data_leitura) = (:month))")
-    int getTotalYearMonthReadData (String year, String month);
+    @Query ("SELECT COUNT (1) FROM ReadData WHERE (periodo = :period)")
+    int getTotalYearMonthReadData (int period);
 
     /**
-     * Método que retorna a leitura cadastrada no mês atual de um apartamento,
+     * Método que retorna a leitura cadastrada no período indicado de um apartamento,
      * cujo identificador é passado como parâmetro.
      * @param idApt identificador do apartamento ao qual se deseja a leitura atual
-     * @return leitura atual do apartamento. Caso contrário, null
+     * @param period período (ano * 100 + mês) da leitura desejada
+     * @return leitura do apartamento no período. Caso contrário, null
+     */
+    @Query ("SELECT * FROM ReadData WHERE (id_apt = :idApt) AND (periodo = :period)")
+    ReadData getCurrentReadDataById (int idApt, int period);
+
+    /**
+     * Método que retorna uma lista de leituras referentes ao período passado como
+     * parâmetro.
+     * @param period período (ano * 100 + mês) de referência da lista
+     * @return a lista correspondente ao período recebido.
      */
-    @Query ("SELECT * FROM ReadData WHERE (id_apt = :idApt) AND " +
-            "(STRFTIME('%m', data_leitura) = STRFTIME ('%m','now'))")
-    ReadData getCurrentReadDataById (int idApt);
+    @Query ("SELECT * FROM ReadData WHERE (periodo = :period) ORDER BY id_apt ASC")
+    List<ReadData> getMonthListReadData (int period);
 
     /**
-     * Método que retorna uma lista de leituras referentes ao mês e ano passados como
-     * parâmetros.
-     * @param year ano de referência da lista
-     * @param month mês de referência da lista
-     * @return a lista correspondente ao mês e ano recebidos.
+     * Método que lista os identificadores dos apartamentos com leitura
+     * no período indicado.
+     * @param period período de referência (ano * 100 + mês)
+     * @return a lista de identificadores de apartamentos
      */
-    @Query ("SELECT * FROM ReadData WHERE ((STRFTIME ('%Y', data_leitura) = :year) " +
-            "AND (STRFTIME('%m', data_leitura) = :month)) ORDER BY id_apt ASC")
-    List<ReadData> getMonthListReadData (String year, String month);
+    @Query ("SELECT id_apt FROM ReadData WHERE (periodo = :period)")
+    List<Integer> listReadAptIds (int period);
 
     /**
-     * Método que retorna uma leitura referente ao mês e ano imediatamente
-     * anteriores ao mês e ano passados como parâmetro. Ou seja, retorna uma leitura
+     * Método que retorna uma leitura referente ao período imediatamente
+     * anterior ao período passado como parâmetro. Ou seja, retorna uma leitura
      * do mês anterior (ou menos), o qual possui a penúltima lista de leituras
-     * realizadas (em relação ao mês e ano indicado nos parâmetros).
-     * @param year ano de referência para busca
-     * @param month mês de referência para busca
+     * realizadas (em relação ao período indicado no parâmetro).
+     * @param period período (ano * 100 + mês) de referência para busca
      * @return uma leitura correspondente ao mês (ou ano) anterior.
      */
-    @Query ("SELECT * FROM ReadData WHERE ((STRFTIME ('%Y', data_leitura) = :year)" +
-            "AND (STRFTIME ('%m', data_leitura) < :month))" +
-            "OR (STRFTIME ('%Y', data_leitura) < :year) " +
-            "ORDER BY id_leitura DESC LIMIT (1)")
-    ReadData getLastReadPastMonth (String year, String month);
+    @Query ("SELECT * FROM ReadData WHERE (periodo < :period) " +
+            "ORDER BY periodo DESC, id_leitura DESC LIMIT (1)")
+    ReadData getLastReadPastMonth (int period);
 
 }
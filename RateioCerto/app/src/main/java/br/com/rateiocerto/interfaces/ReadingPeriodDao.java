@@ -0,0 +1,59 @@
+package br.com.rateiocerto.interfaces;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import br.com.rateiocerto.basics.ReadingPeriod;
+import br.com.rateiocerto.engine.RateioSchema;
+
+/**
+ * Rateio Certo
+ *
+ * ReadingPeriodDao: interface que possui os métodos responsáveis pelas consultas
+ * SQLite referentes à tabela ReadingPeriod.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+
+@Dao
+public interface ReadingPeriodDao {
+
+    /**
+     * Método de inserção ou substituição de um período de leitura.
+     * @param p objeto referente ao período
+     */
+    @Insert (onConflict = OnConflictStrategy.REPLACE)
+    void upsertReadingPeriod (ReadingPeriod p);
+
+    /**
+     * Método que retorna um período de leitura.
+     * @param period período de referência (ano * 100 + mês)
+     * @return o período, ou null caso não exista
+     */
+    @Query ("SELECT * FROM ReadingPeriod WHERE (periodo = :period)")
+    ReadingPeriod getReadingPeriod (int period);
+
+    /**
+     * Método que retorna o último período fechado, anterior ao indicado.
+     * A busca é feita diretamente no índice (status, periodo). A consulta é
+     * compartilhada com as ferramentas (RateioSchema.LAST_CLOSED_QUERY).
+     * @param period período de referência (ano * 100 + mês)
+     * @return o último período fechado anterior, ou null caso não exista
+     */
+    @Query (RateioSchema.LAST_CLOSED_QUERY)
+    ReadingPeriod getLastClosedBefore (int period);
+
+    /**
+     * Método que fecha um período de leitura, registrando a data e hora do
+     * fechamento e a quantidade de leituras.
+     * @param period período a ser fechado (ano * 100 + mês)
+     * @param closedAt data e hora do fechamento
+     * @param totalReads quantidade de leituras do período
+     * @return a quantidade de períodos alterados (zero caso não exista)
+     */
+    @Query ("UPDATE ReadingPeriod SET status = 1, fechado_em = :closedAt, " +
+            "total_leituras = :totalReads WHERE (periodo = :period)")
+    int closeReadingPeriod (int period, String closedAt, int totalReads);
+}
@@ -0,0 +1,25 @@
+package br.com.rateiocerto.interfaces;
+
+/**
+ * Rateio Certo
+ *
+ * ResultCallback: interface de retorno das operações assíncronas da camada de
+ * negócio. Seus métodos são chamados na linha da interface gráfica, quando a
+ * operação termina.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public interface ResultCallback<T> {
+
+    /**
+     * Método chamado quando a operação termina com sucesso.
+     * @param result o resultado da operação
+     */
+    void onResult (T result);
+
+    /**
+     * Método chamado quando a operação termina com erro.
+     * @param t o erro ocorrido
+     */
+    void onError (Throwable t);
+}
@@ -0,0 +1,272 @@
+package br.com.rateiocerto;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import br.com.rateiocerto.basics.Apartment;
+import br.com.rateiocerto.basics.ReadData;
+import br.com.rateiocerto.businiess.AptCsvImporter;
+import br.com.rateiocerto.businiess.AptNavigationIndex;
+import br.com.rateiocerto.businiess.DataRWManager;
+import br.com.rateiocerto.businiess.DatabaseRateio;
+import br.com.rateiocerto.businiess.ReadSession;
+import br.com.rateiocerto.tools.DataGenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rateio Certo
+ *
+ * LoadHarnessTest: harness de carga do DataRWManager com um condomínio grande,
+ * executado na JVM através do Robolectric, sobre o mesmo DatabaseRateio do App.
+ * Os arquivos do condomínio são gerados pelo DataGenerator (por padrão 20 mil
+ * apartamentos em 50 blocos, com 10 anos de leituras mensais) e carregados no
+ * BD. Em seguida são medidas a navegação, a verificação de leitura completa e
+ * a geração da planilha. O teste falha caso alguma etapa ultrapasse o seu
+ * orçamento de latência, definido em load-budgets.properties.
+ * Por ser demorado, só é executado com -PrateioLoad=true.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class LoadHarnessTest {
+
+    //nome do condomínio usado no harness
+    private static final String CONDOMINIUM = "Carga";
+
+    //quantidade de leituras gravadas por transação
+    private static final int READ_CHUNK = 5000;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private Properties budgets;
+    private Map<String, Long> timings = new LinkedHashMap<>();
+
+    @Test
+    public void largeCondominium_withinBudgets() throws Exception {
+        Assume.assumeTrue("Harness de carga desligado (use -PrateioLoad=true)",
+                Boolean.getBoolean("rateio.load"));
+        this.budgets = LoadHarnessTest.loadBudgets();
+
+        final File home = this.tmp.newFolder("home");
+        final File data = this.tmp.newFolder("data");
+        FileWriter fw = new FileWriter(new File(home, "rateio_config.ini"));
+        fw.write(LoadHarnessTest.CONDOMINIUM + "\n");
+        fw.close();
+        new File(home, "output").mkdirs();
+
+        final DataGenerator gen = new DataGenerator()
+                .setBlocks(Integer.getInteger("rateio.load.blocks", 50))
+                .setApartments(Integer.getInteger("rateio.load.apartments", 20000))
+                .setYears(Integer.getInteger("rateio.load.years", 10))
+                .setLastMonth(YearMonth.now());
+        gen.generate(data);
+
+        RateioApplication app = ApplicationProvider.getApplicationContext();
+        app.deleteDatabase("database_" + LoadHarnessTest.CONDOMINIUM);
+        final DataRWManager drw = new DataRWManager(home.getPath(), app.getDatabaseRegistry());
+
+        //o Room não aceita consultas na linha principal, que é a do teste no Robolectric
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            worker.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    runScenario(drw, gen, data);
+                    return null;
+                }
+            }).get();
+        }
+        finally {
+            worker.shutdown();
+            app.getDatabaseRegistry().closeAll();
+            app.deleteDatabase("database_" + LoadHarnessTest.CONDOMINIUM);
+        }
+
+        //a mensagem traz todas as etapas, para a recalibração dos orçamentos
+        List<String> violations = new ArrayList<>();
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Long> t : this.timings.entrySet()) {
+            long budget = this.budgetOf(t.getKey());
+            report.append(String.format("%n  %-20s %8d ms (orçamento %d ms)",
+                    t.getKey(), t.getValue(), budget));
+            if (t.getValue() > budget) {
+                violations.add(t.getKey());
+            }
+        }
+        assertTrue("Orçamentos de latência excedidos " + violations + " com "
+                + gen.getTotalReads() + " leituras geradas:" + report, violations.isEmpty());
+    }
+
+    /**
+     * Rotina com as etapas medidas, executada fora da linha principal.
+     * @param drw gerenciador do condomínio
+     * @param gen gerador dos arquivos do condomínio
+     * @param data pasta dos arquivos gerados
+     * @throws IOException erro retornado caso haja um problema com os arquivos
+     */
+    private void runScenario (DataRWManager drw, DataGenerator gen, File data) throws IOException {
+        YearMonth curr = gen.getLastMonth();
+        YearMonth first = curr.minusMonths(Integer.getInteger("rateio.load.years", 10) * 12 - 1);
+
+        long t = System.nanoTime();
+        int apts = new AptCsvImporter(drw.getDatabase()).importFile(
+                new File(data, DataGenerator.APARTMENTS_FILE).getPath(), null);
+        t = this.record("import.apartments", t);
+
+        AptNavigationIndex index = drw.getNavigationIndex();
+        t = this.record("navigation.index", t);
+        assertEquals(apts, index.size());
+
+        this.importReads(drw.getDatabase(), index, new File(data, DataGenerator.READS_FILE));
+        t = this.record("import.reads", t);
+
+        long maxStep = 0;
+        int steps = 0;
+        Apartment a = drw.getFirstApartment();
+        while (a != null) {
+            long s = System.nanoTime();
+            a = drw.getNextApartment(a.getBlock(), a.getNum());
+            maxStep = Math.max(maxStep, System.nanoTime() - s);
+            steps++;
+        }
+        t = this.record("navigation.walk", t);
+        this.timings.put("navigation.step", maxStep / 1000000);
+        assertEquals(apts, steps);
+
+        ReadSession session = new ReadSession(drw.getNavigationIndex(),
+                drw.getMonthListReadData(curr.getYear(), curr.getMonthValue()),
+                ReadData.periodOf(curr.getYear(), curr.getMonthValue()), null);
+        t = this.record("session.load", t);
+
+        boolean complete = session.getCompletion().isComplete();
+        int nextUnread = session.getCompletion().nextUnread(0);
+        Apartment unread = drw.getFirstUnreadApartment();
+        t = this.record("finish.check", t);
+        assertEquals(nextUnread == ReadSession.NOT_FOUND, unread == null);
+        assertEquals(complete, unread == null);
+
+        for (YearMonth m = first; m.isBefore(curr); m = m.plusMonths(1)) {
+            drw.closePeriod(m.getYear(), m.getMonthValue());
+        }
+        t = this.record("close.periods", t);
+
+        String [] last = drw.getLastYearMonthCompleteRead();
+        drw.writeCSVSheet(Integer.parseInt(last[0]), Integer.parseInt(last[1]),
+                curr.getYear(), curr.getMonthValue());
+        this.record("report", t);
+    }
+
+    /**
+     * Método que carrega o arquivo de leituras no BD, em transações de
+     * READ_CHUNK leituras. As leituras duplicadas no mesmo mês substituem a
+     * anterior, como ocorre no App.
+     * @param db banco de dados do condomínio
+     * @param index índice de navegação, usado para obter o id dos apartamentos
+     * @param file arquivo de leituras
+     * @throws IOException erro retornado caso haja um problema na leitura
+     */
+    private void importReads (final DatabaseRateio db, AptNavigationIndex index, File file)
+            throws IOException {
+        final List<ReadData> chunk = new ArrayList<>(LoadHarnessTest.READ_CHUNK);
+        Runnable insert = new Runnable() {
+            @Override
+            public void run() {
+                db.ReadDataDao().upsertReadDataList(chunk);
+            }
+        };
+        BufferedReader bf = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line = bf.readLine();
+            while (line != null) {
+                String [] f = line.split(",");
+                int pos = index.positionOf(f[0], Integer.parseInt(f[1]));
+                chunk.add(new ReadData(index.get(pos).getId(), f[2], Integer.parseInt(f[3])));
+                if (chunk.size() >= LoadHarnessTest.READ_CHUNK) {
+                    db.runInTransaction(insert);
+                    chunk.clear();
+                }
+                line = bf.readLine();
+            }
+            if (!chunk.isEmpty()) {
+                db.runInTransaction(insert);
+            }
+        }
+        finally {
+            bf.close();
+        }
+    }
+
+    /**
+     * Método que registra o tempo de uma etapa.
+     * @param phase nome da etapa
+     * @param start instante de início da etapa, em nanossegundos
+     * @return o instante atual, início da próxima etapa
+     */
+    private long record (String phase, long start) {
+        long now = System.nanoTime();
+        this.timings.put(phase, (now - start) / 1000000);
+        return now;
+    }
+
+    /**
+     * Método que retorna o orçamento de uma etapa, podendo ser sobrescrito
+     * pela propriedade rateio.budget.(etapa).
+     * @param phase nome da etapa
+     * @return o orçamento em milissegundos
+     */
+    private long budgetOf (String phase) {
+        String value = System.getProperty("rateio.budget." + phase,
+                this.budgets.getProperty(phase, String.valueOf(Long.MAX_VALUE)));
+        return Long.parseLong(value.trim());
+    }
+
+    /**
+     * Método que carrega os orçamentos padrão de latência.
+     * @return os orçamentos, por etapa
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     */
+    private static Properties loadBudgets () throws IOException {
+        Properties resp = new Properties();
+        InputStream in = LoadHarnessTest.class.getClassLoader()
+                .getResourceAsStream("load-budgets.properties");
+        if (in != null) {
+            try {
+                resp.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            finally {
+                in.close();
+            }
+        }
+        return resp;
+    }
+}
@@ -0,0 +1,234 @@
+package br.com.rateiocerto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.rateiocerto.engine.RateioSchema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rateio Certo
+ *
+ * PeriodSummaryTriggerTest: testes dos gatilhos que mantêm os totais por período
+ * (RateioSchema.PERIOD_SUMMARY_TRIGGERS). As operações do App sobre a tabela
+ * ReadData são executadas num SQLite em memória, criado com o esquema do
+ * DatabaseRateio: inclusão, substituição (REPLACE) da leitura do apartamento no
+ * período ou da leitura de mesmo id, alteração do valor e do período, e exclusão. Após cada operação, a
+ * tabela PeriodSummary deve ser igual aos totais calculados diretamente sobre
+ * ReadData (COUNT, SUM, MIN e MAX agrupados por período).
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class PeriodSummaryTriggerTest {
+
+    private static final int JAN = 202401;
+    private static final int FEB = 202402;
+    private static final int MAR = 202403;
+
+    //comando do EntityInsertionAdapter gerado pelo Room 2.2.5 em ReadDataDao_Impl para
+    //insertReadData e upsertReadDataList (OnConflictStrategy.REPLACE): o id gerado
+    //automaticamente é gravado como NULL quando vale zero
+    private static final String UPSERT_READ = "INSERT OR REPLACE INTO `ReadData` " +
+            "(`id_leitura`,`id_apt`,`data_leitura`,`valor_leitura`,`periodo`) " +
+            "VALUES (nullif(?, 0),?,?,?,?)";
+
+    private static final String SUMMARY = "SELECT periodo, total_leituras, soma_leituras, " +
+            "min_leitura, max_leitura FROM PeriodSummary ORDER BY periodo";
+
+    private static final String EXPECTED = "SELECT periodo, COUNT (1), SUM (valor_leitura), " +
+            "MIN (valor_leitura), MAX (valor_leitura) FROM ReadData GROUP BY periodo ORDER BY periodo";
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        this.conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement st = this.conn.createStatement();
+        for (String sql : RateioSchema.createStatements()) {
+            st.execute(sql);
+        }
+        st.close();
+
+        this.upsert(1, JAN, 100);
+        this.upsert(2, JAN, 50);
+        this.upsert(3, JAN, 300);
+        this.upsert(1, FEB, 130);
+        this.upsert(2, FEB, 70);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.conn.close();
+    }
+
+    @Test
+    public void insert_summaryMatchesReadData() throws SQLException {
+        this.assertSummaryMatchesReadData();
+        this.upsert(3, FEB, 10);
+        this.upsert(4, MAR, 7);
+        this.assertSummaryMatchesReadData();
+        assertEquals(3, this.summaryRows().size());
+    }
+
+    @Test
+    public void replace_summaryMatchesReadData() throws SQLException {
+        //substitui a menor leitura do período por uma maior que todas
+        this.upsert(2, JAN, 400);
+        this.assertSummaryMatchesReadData();
+        //substitui a maior leitura do período por uma menor que todas
+        this.upsert(2, JAN, 10);
+        this.assertSummaryMatchesReadData();
+        //substitui a maior leitura restante
+        this.upsert(3, JAN, 20);
+        this.assertSummaryMatchesReadData();
+        assertEquals(2, this.summaryRows().size());
+    }
+
+    @Test
+    public void replaceById_summaryMatchesReadData() throws SQLException {
+        //leitura lida do BD, alterada e gravada com o seu id, no mesmo período
+        this.upsert(this.idOf(1, JAN), 1, JAN, 500);
+        this.assertSummaryMatchesReadData();
+        //leitura gravada com o seu id em outro período: a linha antiga é substituída
+        this.upsert(this.idOf(3, JAN), 3, MAR, 5);
+        this.assertSummaryMatchesReadData();
+        //conflito com o id de uma leitura e com a leitura do apartamento no período
+        this.upsert(this.idOf(2, JAN), 1, FEB, 90);
+        this.assertSummaryMatchesReadData();
+        assertEquals(3, this.summaryRows().size());
+    }
+
+    @Test
+    public void updateValue_summaryMatchesReadData() throws SQLException {
+        this.execute("UPDATE ReadData SET valor_leitura = 5 WHERE id_apt = 1 AND periodo = " + FEB);
+        this.assertSummaryMatchesReadData();
+        this.execute("UPDATE ReadData SET valor_leitura = 999 WHERE id_apt = 2 AND periodo = " + JAN);
+        this.assertSummaryMatchesReadData();
+        this.execute("UPDATE ReadData SET valor_leitura = 1 WHERE id_apt = 2 AND periodo = " + JAN);
+        this.assertSummaryMatchesReadData();
+    }
+
+    @Test
+    public void updatePeriod_summaryMatchesReadData() throws SQLException {
+        this.execute("UPDATE ReadData SET periodo = " + MAR + " WHERE id_apt = 2 AND periodo = " + FEB);
+        this.assertSummaryMatchesReadData();
+        //a última leitura do período sai dele, e os seus totais são removidos
+        this.execute("UPDATE ReadData SET periodo = " + MAR + " WHERE id_apt = 1 AND periodo = " + FEB);
+        this.assertSummaryMatchesReadData();
+        assertEquals(2, this.summaryRows().size());
+    }
+
+    @Test
+    public void delete_summaryMatchesReadData() throws SQLException {
+        this.execute("DELETE FROM ReadData WHERE id_apt = 3 AND periodo = " + JAN);
+        this.assertSummaryMatchesReadData();
+        this.execute("DELETE FROM ReadData WHERE id_apt = 2 AND periodo = " + JAN);
+        this.assertSummaryMatchesReadData();
+        //a exclusão de todas as leituras do período remove os seus totais
+        this.execute("DELETE FROM ReadData WHERE periodo = " + FEB);
+        this.assertSummaryMatchesReadData();
+        assertEquals(1, this.summaryRows().size());
+    }
+
+    /**
+     * Método que compara os totais mantidos pelos gatilhos com os totais
+     * calculados diretamente sobre as leituras.
+     * @throws SQLException erro retornado caso as consultas falhem
+     */
+    private void assertSummaryMatchesReadData () throws SQLException {
+        List<String> expected = this.rows(PeriodSummaryTriggerTest.EXPECTED);
+        assertTrue("Nenhuma leitura cadastrada", !expected.isEmpty());
+        assertEquals(expected, this.summaryRows());
+    }
+
+    private List<String> summaryRows () throws SQLException {
+        return this.rows(PeriodSummaryTriggerTest.SUMMARY);
+    }
+
+    /**
+     * Método que executa uma consulta de cinco colunas.
+     * @param query a consulta
+     * @return as linhas, no formato "periodo|total|soma|min|max"
+     * @throws SQLException erro retornado caso a consulta falhe
+     */
+    private List<String> rows (String query) throws SQLException {
+        List<String> resp = new ArrayList<>();
+        Statement st = this.conn.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(query);
+            while (rs.next()) {
+                resp.add(rs.getInt(1) + "|" + rs.getLong(2) + "|" + rs.getLong(3) + "|"
+                        + rs.getString(4) + "|" + rs.getString(5));
+            }
+            rs.close();
+        }
+        finally {
+            st.close();
+        }
+        return resp;
+    }
+
+    private void upsert (int idApt, int period, long value) throws SQLException {
+        this.upsert(0, idApt, period, value);
+    }
+
+    /**
+     * Método que grava uma leitura como o Room, com o id zero para as leituras novas.
+     * @param idRead id da leitura, ou zero para gerar um novo
+     * @param idApt id do apartamento
+     * @param period período da leitura (ano * 100 + mês)
+     * @param value valor da leitura
+     * @throws SQLException erro retornado caso a gravação falhe
+     */
+    private void upsert (int idRead, int idApt, int period, long value) throws SQLException {
+        PreparedStatement st = this.conn.prepareStatement(PeriodSummaryTriggerTest.UPSERT_READ);
+        try {
+            st.setInt(1, idRead);
+            st.setInt(2, idApt);
+            st.setString(3, String.format("%d-%02d-10", period / 100, period % 100));
+            st.setLong(4, value);
+            st.setInt(5, period);
+            st.executeUpdate();
+        }
+        finally {
+            st.close();
+        }
+    }
+
+    private int idOf (int idApt, int period) throws SQLException {
+        Statement st = this.conn.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT id_leitura FROM ReadData WHERE id_apt = " + idApt
+                    + " AND periodo = " + period);
+            assertTrue("Leitura inexistente", rs.next());
+            int resp = rs.getInt(1);
+            rs.close();
+            return resp;
+        }
+        finally {
+            st.close();
+        }
+    }
+
+    private void execute (String sql) throws SQLException {
+        Statement st = this.conn.createStatement();
+        try {
+            st.execute(sql);
+        }
+        finally {
+            st.close();
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package br.com.rateiocerto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import br.com.rateiocerto.engine.RateioSchema;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rateio Certo
+ *
+ * QueryPlanTest: testes de regressão dos planos de execução das consultas dos
+ * DAOs. Todas as anotações @Query dos DAOs de br.com.rateiocerto.interfaces são
+ * lidas do código-fonte (o Room não as mantém em tempo de execução), e cada
+ * consulta é analisada com EXPLAIN QUERY PLAN num SQLite em memória, criado com
+ * o esquema do DatabaseRateio (RateioSchema), cuja igualdade ao esquema criado
+ * pelo Room é verificada pelo RoomSchemaTest.
+ * Os acessos às tabelas são comparados com a referência em query-plans.txt: o
+ * teste falha quando uma consulta deixa de usar um índice da referência, quando
+ * passa a percorrer uma tabela inteira, ou quando a referência está desatualizada.
+ * A referência é regravada com -Prateio.updatePlans=true.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class QueryPlanTest {
+
+    //referência dos planos, em src/test/resources
+    private static final String BASELINE = "query-plans.txt";
+
+    //DAOs analisados
+    private static final List<String> DAOS = Arrays.asList("ApartmentDao", "AptReadDao",
+            "ReadDataDao", "PeriodSummaryDao", "ReadingPeriodDao");
+
+    //anotação @Query seguida da declaração do método
+    private static final Pattern QUERY = Pattern.compile(
+            "@Query\\s*\\((.*?)\\)\\s*\\n\\s*(?:@\\w+\\s*)*[\\w<>\\[\\], ]+?\\s+(\\w+)\\s*\\(",
+            Pattern.DOTALL);
+
+    //literal de string Java, ou constante compartilhada do RateioSchema
+    private static final Pattern LITERAL = Pattern.compile(
+            "\"((?:[^\"\\\\]|\\\\.)*)\"|RateioSchema\\.(\\w+)");
+
+    //parâmetro nomeado do Room
+    private static final Pattern PARAM = Pattern.compile(":\\w+");
+
+    //marcação de consultas sem acesso a tabelas na referência
+    private static final String NO_ACCESS = "-";
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws SQLException {
+        this.conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement st = this.conn.createStatement();
+        for (String sql : RateioSchema.createStatements()) {
+            st.execute(sql);
+        }
+        st.close();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        this.conn.close();
+    }
+
+    @Test
+    public void daoQueries_keepBaselineIndexUsage() throws IOException, SQLException {
+        Map<String, Set<String>> current = new TreeMap<>();
+        for (String dao : QueryPlanTest.DAOS) {
+            for (Map.Entry<String, String> q : QueryPlanTest.readQueries(dao).entrySet()) {
+                current.put(q.getKey(), this.accessesOf(q.getValue()));
+            }
+        }
+        assertTrue("Nenhuma consulta encontrada em " + QueryPlanTest.daoDir(), !current.isEmpty());
+
+        if (Boolean.getBoolean("rateio.updatePlans")) {
+            QueryPlanTest.writeBaseline(current);
+            return;
+        }
+
+        Map<String, Set<String>> baseline = QueryPlanTest.readBaseline();
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> q : current.entrySet()) {
+            Set<String> expected = baseline.get(q.getKey());
+            if (expected == null) {
+                failures.add(q.getKey() + ": consulta sem referência, plano atual " + q.getValue());
+                continue;
+            }
+            for (String access : expected) {
+                if (access.contains(" USING ") && !q.getValue().contains(access)) {
+                    failures.add(q.getKey() + ": deixou de usar \"" + access + "\", plano atual "
+                            + q.getValue());
+                }
+            }
+            for (String access : q.getValue()) {
+                if (access.startsWith("SCAN ") && !access.contains(" USING ")
+                        && !expected.contains(access)) {
+                    failures.add(q.getKey() + ": nova leitura completa \"" + access + "\"");
+                }
+            }
+        }
+        for (String name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                failures.add(name + ": consulta removida, mas ainda presente na referência");
+            }
+        }
+        assertTrue("Planos de execução diferentes da referência (" + QueryPlanTest.BASELINE
+                + ", regravada com -Prateio.updatePlans=true):\n  "
+                + String.join("\n  ", failures), failures.isEmpty());
+    }
+
+    /**
+     * Método que executa EXPLAIN QUERY PLAN de uma consulta e retorna os
+     * acessos às tabelas, normalizados para não depender da versão do SQLite.
+     * @param query consulta SQL, com os parâmetros nomeados do Room
+     * @return os acessos, no formato "SEARCH tabela USING INDEX índice (colunas)"
+     * @throws SQLException erro retornado caso a consulta seja inválida
+     */
+    private Set<String> accessesOf (String query) throws SQLException {
+        Set<String> resp = new LinkedHashSet<>();
+        PreparedStatement st = this.conn.prepareStatement("EXPLAIN QUERY PLAN "
+                + QueryPlanTest.PARAM.matcher(query).replaceAll("?"));
+        try {
+            //os parâmetros não alteram o plano, e são todos nulos
+            for (int i = 1; i <= st.getParameterMetaData().getParameterCount(); i++) {
+                st.setObject(i, null);
+            }
+            ResultSet rs = st.executeQuery();
+            while (rs.next()) {
+                String access = QueryPlanTest.normalize(rs.getString(4));
+                if (access != null) {
+                    resp.add(access);
+                }
+            }
+            rs.close();
+        }
+        finally {
+            st.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que normaliza uma linha do plano de execução. Apenas os acessos a
+     * tabelas (SCAN e SEARCH) são mantidos.
+     * @param detail linha do plano
+     * @return o acesso normalizado, ou null caso a linha não seja um acesso
+     */
+    static String normalize (String detail) {
+        String resp = detail.trim();
+        if (!resp.startsWith("SCAN ") && !resp.startsWith("SEARCH ")) {
+            return null;
+        }
+        resp = resp.replaceFirst("^(SCAN|SEARCH) TABLE ", "$1 ")
+                .replaceFirst("^(SCAN|SEARCH) \\S+ AS (\\S+)", "$1 $2")
+                .replace(" USING COVERING INDEX ", " USING INDEX ")
+                .replace(" LEFT-JOIN", "");
+        return resp;
+    }
+
+    /**
+     * Método que lê as consultas de um DAO, a partir do código-fonte. As
+     * consultas compartilhadas com as ferramentas são referências a constantes
+     * do RateioSchema, cujo valor é obtido da própria classe.
+     * @param dao nome da interface do DAO
+     * @return as consultas, indexadas por "Dao.método"
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     */
+    private static Map<String, String> readQueries (String dao) throws IOException {
+        File f = new File(QueryPlanTest.daoDir(), dao + ".java");
+        String src = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+        Map<String, String> resp = new TreeMap<>();
+        Matcher m = QueryPlanTest.QUERY.matcher(src);
+        while (m.find()) {
+            StringBuilder sql = new StringBuilder();
+            Matcher lit = QueryPlanTest.LITERAL.matcher(m.group(1));
+            while (lit.find()) {
+                sql.append(lit.group(1) != null ? lit.group(1) : QueryPlanTest.schemaConstant(lit.group(2)));
+            }
+            resp.put(dao + "." + m.group(2), sql.toString());
+        }
+        return resp;
+    }
+
+    /**
+     * Método que retorna o valor de uma constante do RateioSchema.
+     * @param name nome da constante
+     * @return o valor da constante
+     */
+    private static String schemaConstant (String name) {
+        try {
+            return String.valueOf(RateioSchema.class.getField(name).get(null));
+        }
+        catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("Constante inexistente: RateioSchema." + name, e);
+        }
+    }
+
+    /**
+     * Método que retorna a pasta do código-fonte dos DAOs. Os testes do App
+     * são executados a partir da pasta do módulo.
+     * @return a pasta dos DAOs
+     */
+    private static File daoDir () {
+        return new File(System.getProperty("rateio.daoDir",
+                "src/main/java/br/com/rateiocerto/interfaces"));
+    }
+
+    /**
+     * Método que lê a referência dos planos. Cada linha tem o formato
+     * "Dao.método | acesso", com uma linha por acesso.
+     * @return os acessos de referência, por consulta
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     */
+    private static Map<String, Set<String>> readBaseline () throws IOException {
+        Map<String, Set<String>> resp = new TreeMap<>();
+        InputStream in = QueryPlanTest.class.getClassLoader().getResourceAsStream(QueryPlanTest.BASELINE);
+        if (in == null) {
+            return resp;
+        }
+        BufferedReader bf = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line = bf.readLine();
+            while (line != null) {
+                int sep = line.indexOf('|');
+                if (!line.startsWith("#") && sep > 0) {
+                    String name = line.substring(0, sep).trim();
+                    String access = line.substring(sep + 1).trim();
+                    Set<String> accesses = resp.get(name);
+                    if (accesses == null) {
+                        accesses = new LinkedHashSet<>();
+                        resp.put(name, accesses);
+                    }
+                    if (!access.equals(QueryPlanTest.NO_ACCESS)) {
+                        accesses.add(access);
+                    }
+                }
+                line = bf.readLine();
+            }
+        }
+        finally {
+            bf.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que regrava a referência dos planos com os acessos atuais.
+     * @param current acessos atuais, por consulta
+     * @throws IOException erro retornado caso o arquivo não possa ser gravado
+     */
+    private static void writeBaseline (Map<String, Set<String>> current) throws IOException {
+        File f = new File("src/test/resources/" + QueryPlanTest.BASELINE);
+        Writer out = new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8);
+        try {
+            out.write("# Referência dos planos de execução das consultas dos DAOs (QueryPlanTest).\n");
+            out.write("# Regravada com: ./gradlew :app:testDebugUnitTest -Prateio.updatePlans=true\n");
+            for (Map.Entry<String, Set<String>> q : current.entrySet()) {
+                if (q.getValue().isEmpty()) {
+                    out.write(q.getKey() + " | " + QueryPlanTest.NO_ACCESS + "\n");
+                }
+                for (String access : q.getValue()) {
+                    out.write(q.getKey() + " | " + access + "\n");
+                }
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.rateiocerto;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import br.com.rateiocerto.businiess.DatabaseRateio;
+import br.com.rateiocerto.engine.RateioSchema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rateio Certo
+ *
+ * RoomSchemaTest: teste que compara o esquema escrito à mão no RateioSchema,
+ * usado pelo QueryPlanTest, pelos benchmarks e pelas ferramentas, com o esquema
+ * que o Room cria para o DatabaseRateio (createAllTables e o retorno de criação
+ * com os gatilhos). As tabelas, índices, views e gatilhos dos dois bancos são
+ * lidos do sqlite_master e devem ser idênticos, de forma que um índice presente
+ * apenas no RateioSchema não altera os planos de execução verificados.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class RoomSchemaTest {
+
+    //objetos do esquema, sem as tabelas internas do SQLite, do Room e do Android
+    private static final String MASTER = "SELECT type, name, sql FROM sqlite_master " +
+            "WHERE name NOT LIKE 'sqlite\\_%' ESCAPE '\\' " +
+            "AND name NOT IN ('room_master_table', 'android_metadata') ORDER BY type, name";
+
+    @Test
+    public void rateioSchema_matchesRoomSchema() throws SQLException {
+        Context context = ApplicationProvider.getApplicationContext();
+        DatabaseRateio db = Room.inMemoryDatabaseBuilder(context, DatabaseRateio.class)
+                .addCallback(DatabaseRateio.CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        List<String> room = new ArrayList<>();
+        try {
+            Cursor c = db.getOpenHelper().getWritableDatabase().query(RoomSchemaTest.MASTER);
+            try {
+                while (c.moveToNext()) {
+                    room.add(RoomSchemaTest.entry(c.getString(0), c.getString(1), c.getString(2)));
+                }
+            }
+            finally {
+                c.close();
+            }
+        }
+        finally {
+            db.close();
+        }
+
+        List<String> schema = new ArrayList<>();
+        Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try {
+            Statement st = conn.createStatement();
+            for (String sql : RateioSchema.createStatements()) {
+                st.execute(sql);
+            }
+            ResultSet rs = st.executeQuery(RoomSchemaTest.MASTER);
+            while (rs.next()) {
+                schema.add(RoomSchemaTest.entry(rs.getString(1), rs.getString(2), rs.getString(3)));
+            }
+            rs.close();
+            st.close();
+        }
+        finally {
+            conn.close();
+        }
+
+        assertTrue("Esquema do Room vazio", !room.isEmpty());
+        assertEquals("RateioSchema difere do esquema criado pelo Room para o DatabaseRateio",
+                room, schema);
+    }
+
+    /**
+     * Método que formata um objeto do esquema para a comparação, com os
+     * espaços do comando SQL normalizados.
+     * @param type tipo do objeto (table, index, view ou trigger)
+     * @param name nome do objeto
+     * @param sql comando de criação do objeto
+     * @return o objeto no formato "tipo name: comando"
+     */
+    private static String entry (String type, String name, String sql) {
+        return type + " " + name + ": " + (sql == null ? "" : sql.trim().replaceAll("\\s+", " "));
+    }
+}
@@ -0,0 +1,187 @@
+package br.com.rateiocerto.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import br.com.rateiocerto.engine.AptCsvLine;
+import br.com.rateiocerto.engine.RateioSchema;
+
+/**
+ * Rateio Certo
+ *
+ * AptImportBenchmark: benchmark da carga inicial dos apartamentos a partir do
+ * arquivo CSV ("bloco,numero"), executada através do sqlite-jdbc num BD em
+ * disco, criado com o mesmo esquema do DatabaseRateio (RateioSchema). As linhas
+ * são convertidas pelo AptCsvLine, o mesmo usado pelo AptCsvImporter, e
+ * gravadas com o comando gerado pelo Room para o ApartmentDao.
+ * São comparadas a carga em blocos de CHUNK_SIZE apartamentos, cada um numa
+ * transação, como faz o AptCsvImporter, e a carga anterior, com uma inserção
+ * por linha, cada uma na sua própria transação implícita.
+ * A tabela de apartamentos é esvaziada antes de cada carga.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class AptImportBenchmark {
+
+    //ApartmentDao.insertApt e insertAptList (@Insert)
+    private static final String INSERT_APT = "INSERT OR ABORT INTO `Apartment` " +
+            "(`id_apt`,`bloco`,`numero`) VALUES (nullif(?, 0),?,?)";
+
+    //tamanho do bloco de apartamentos por transação (AptCsvImporter.DEFAULT_CHUNK_SIZE)
+    private static final int CHUNK_SIZE = 1000;
+
+    @Param({"10000"})
+    public int units;
+
+    private File dir;
+    private File csv;
+    private Connection conn;
+    private PreparedStatement insertApt;
+
+    @Setup
+    public void setup () throws IOException, SQLException {
+        this.dir = Files.createTempDirectory("rateio-import").toFile();
+        this.csv = new File(this.dir, "Benchmark.csv");
+        BenchmarkData data = new BenchmarkData(this.units);
+        BufferedWriter wr = new BufferedWriter(new FileWriter(this.csv));
+        try {
+            for (int i = 0; i < data.units; i++) {
+                wr.write(data.blocks[i] + "," + data.nums[i]);
+                wr.newLine();
+            }
+        }
+        finally {
+            wr.close();
+        }
+
+        File file = new File(this.dir, "Benchmark.db");
+        this.conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        Statement st = this.conn.createStatement();
+        for (String sql : RateioSchema.createStatements()) {
+            st.execute(sql);
+        }
+        st.close();
+        this.insertApt = this.conn.prepareStatement(AptImportBenchmark.INSERT_APT);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearApartments () throws SQLException {
+        Statement st = this.conn.createStatement();
+        st.execute("DELETE FROM Apartment");
+        st.close();
+    }
+
+    @TearDown
+    public void tearDown () throws SQLException {
+        this.conn.close();
+        File [] files = this.dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        this.dir.delete();
+    }
+
+    /**
+     * Carga em blocos, cada bloco gravado de uma só vez numa transação.
+     */
+    @Benchmark
+    public int importChunked () throws IOException, SQLException {
+        int resp = 0;
+        int pending = 0;
+        BufferedReader bf = new BufferedReader(new FileReader(this.csv));
+        this.conn.setAutoCommit(false);
+        try {
+            String lineData = bf.readLine();
+            while (lineData != null) {
+                this.addApartment(AptCsvLine.parse(lineData));
+                pending++;
+                if (pending >= AptImportBenchmark.CHUNK_SIZE) {
+                    resp += this.commitChunk(pending);
+                    pending = 0;
+                }
+                lineData = bf.readLine();
+            }
+            if (pending > 0) {
+                resp += this.commitChunk(pending);
+            }
+        }
+        finally {
+            this.conn.setAutoCommit(true);
+            bf.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Carga anterior, com uma inserção por linha, cada uma confirmada
+     * isoladamente.
+     */
+    @Benchmark
+    public int importPerLine () throws IOException, SQLException {
+        int resp = 0;
+        BufferedReader bf = new BufferedReader(new FileReader(this.csv));
+        try {
+            String lineData = bf.readLine();
+            while (lineData != null) {
+                AptCsvLine line = AptCsvLine.parse(lineData);
+                this.insertApt.setInt(1, 0);
+                this.insertApt.setString(2, line.getBlock());
+                this.insertApt.setInt(3, line.getNum());
+                resp += this.insertApt.executeUpdate();
+                lineData = bf.readLine();
+            }
+        }
+        finally {
+            bf.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que acrescenta um apartamento ao bloco em gravação.
+     * @param line linha convertida do arquivo
+     * @throws SQLException erro retornado caso haja um problema no BD
+     */
+    private void addApartment (AptCsvLine line) throws SQLException {
+        this.insertApt.setInt(1, 0);
+        this.insertApt.setString(2, line.getBlock());
+        this.insertApt.setInt(3, line.getNum());
+        this.insertApt.addBatch();
+    }
+
+    /**
+     * Método que grava o bloco de apartamentos e confirma a sua transação.
+     * @param size quantidade de apartamentos do bloco
+     * @return a quantidade de apartamentos gravados
+     * @throws SQLException erro retornado caso haja um problema no BD
+     */
+    private int commitChunk (int size) throws SQLException {
+        this.insertApt.executeBatch();
+        this.conn.commit();
+        return size;
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.rateiocerto.benchmark;
+
+import java.util.Random;
+
+import br.com.rateiocerto.engine.RateioEngine;
+
+/**
+ * Rateio Certo
+ *
+ * BenchmarkData: classe que gera os dados sintéticos de um condomínio usados
+ * nos benchmarks. A geração é feita a partir de uma semente fixa, de modo que
+ * todas as execuções medem exatamente os mesmos dados.
+ * Os apartamentos são distribuídos em blocos de APTS_PER_BLOCK unidades, e
+ * uma pequena parte deles fica sem uma das leituras, como ocorre na prática.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+final class BenchmarkData {
+
+    //semente do gerador de números aleatórios
+    static final long SEED = 20200531L;
+
+    //quantidade de apartamentos por bloco
+    static final int APTS_PER_BLOCK = 100;
+
+    //período anterior e atual das leituras geradas (ano * 100 + mês)
+    static final int PREV_PERIOD = 202009;
+    static final int CURR_PERIOD = 202010;
+
+    //a cada MISSING_RATIO apartamentos, um fica sem uma das leituras
+    private static final int MISSING_RATIO = 50;
+
+    final int units;
+    final String [] blocks;
+    final int [] nums;
+    final long [] prevValues;
+    final long [] currValues;
+
+    /**
+     * Construtor da classe. Gera os dados dos apartamentos indicados.
+     * @param units quantidade de apartamentos
+     */
+    BenchmarkData (int units) {
+        this.units = units;
+        this.blocks = new String [units];
+        this.nums = new int [units];
+        this.prevValues = new long [units];
+        this.currValues = new long [units];
+
+        Random rnd = new Random(BenchmarkData.SEED);
+        for (int i = 0; i < units; i++) {
+            this.blocks[i] = BenchmarkData.blockOf(i);
+            this.nums[i] = BenchmarkData.numOf(i);
+            long prev = 1000 + rnd.nextInt(9000);
+            this.prevValues[i] = prev;
+            this.currValues[i] = prev + rnd.nextInt(40);
+            if (rnd.nextInt(BenchmarkData.MISSING_RATIO) == 0) {
+                if (rnd.nextBoolean()) {
+                    this.prevValues[i] = RateioEngine.NO_VALUE;
+                }
+                else {
+                    this.currValues[i] = RateioEngine.NO_VALUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Método que retorna o nome do bloco do apartamento de uma posição.
+     * @param position posição do apartamento
+     * @return o nome do bloco
+     */
+    static String blockOf (int position) {
+        return String.format("B%03d", position / BenchmarkData.APTS_PER_BLOCK);
+    }
+
+    /**
+     * Método que retorna o número do apartamento de uma posição.
+     * @param position posição do apartamento
+     * @return o número do apartamento
+     */
+    static int numOf (int position) {
+        return 101 + position % BenchmarkData.APTS_PER_BLOCK;
+    }
+
+    /**
+     * Método que gera uma sequência de posições aleatórias de apartamentos,
+     * usada para distribuir as buscas pontuais entre todo o condomínio.
+     * @param units quantidade de apartamentos
+     * @param count tamanho da sequência (potência de 2)
+     * @return as posições geradas
+     */
+    static int [] randomPositions (int units, int count) {
+        Random rnd = new Random(BenchmarkData.SEED + 1);
+        int [] resp = new int [count];
+        for (int i = 0; i < count; i++) {
+            resp[i] = rnd.nextInt(units);
+        }
+        return resp;
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.rateiocerto.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+
+import br.com.rateiocerto.engine.CsvReportWriter;
+import br.com.rateiocerto.engine.RateioEngine;
+import br.com.rateiocerto.engine.RateioResult;
+
+/**
+ * Rateio Certo
+ *
+ * CsvReportWriterBenchmark: benchmark da escrita da planilha de consumo pelo
+ * CsvReportWriter, com o rateio já calculado. Cada operação grava a planilha
+ * completa num arquivo temporário e a confirma, substituindo a anterior, como
+ * ocorre no DataRWManager.writeCSVSheet.
+ * Como referência, writeCharsLegacy grava a mesma planilha da forma anterior
+ * do writeCSVSheet: RandomAccessFile.writeChars (UTF-16, sem buffer), com uma
+ * escrita por linha e a porcentagem formatada pelo DecimalFormat.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class CsvReportWriterBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int units;
+
+    private BenchmarkData data;
+    private RateioResult result;
+    private File dir;
+    private File target;
+    private File legacyTarget;
+
+    @Setup
+    public void setup () throws IOException {
+        this.data = new BenchmarkData(this.units);
+        this.result = RateioEngine.compute(this.data.prevValues, this.data.currValues);
+        this.dir = Files.createTempDirectory("rateio-csv").toFile();
+        this.target = new File(this.dir, "Benchmark_10_2020.csv");
+        this.legacyTarget = new File(this.dir, "Legacy_10_2020.csv");
+    }
+
+    @TearDown
+    public void tearDown () {
+        this.target.delete();
+        this.legacyTarget.delete();
+        this.dir.delete();
+    }
+
+    @Benchmark
+    public long writeSheet () throws IOException {
+        CsvReportWriter wr = new CsvReportWriter(this.target);
+        try {
+            wr.writeHeader("Benchmark", 2020, 9, 2020, 10, this.result.getTotalVolume());
+            for (int i = 0; i < this.result.size(); i++) {
+                wr.writeRow(this.data.blocks[i], this.data.nums[i],
+                        this.data.prevValues[i], this.data.currValues[i],
+                        this.result.getConsumption(i), this.result.getPercent(i));
+            }
+            wr.commit();
+        }
+        finally {
+            wr.close();
+        }
+        return this.target.length();
+    }
+
+    /**
+     * Escrita anterior da planilha, mantida como base de comparação. Como no
+     * código original, o arquivo existente não é truncado.
+     */
+    @Benchmark
+    public long writeCharsLegacy () throws IOException {
+        String fileHeader = "Condominio:," + "Benchmark" + "\n"
+                + "Periodo:," + String.format("%02d", 9) + "/" + 2020
+                + " a " + String.format("%02d", 10) + "/" + 2020 + "\n"
+                + ",,\n"
+                + "Volume total (m³):," + this.result.getTotalVolume() + "\n"
+                + ",,\n"
+                + "Bloco,Apartamento,Leitura anterior (m³),Leitura atual (m³),"
+                + "Consumo unitário (m³),% rateio\n";
+        RandomAccessFile fr = new RandomAccessFile(this.legacyTarget, "rw");
+        try {
+            fr.writeChars(fileHeader);
+            DecimalFormat df = new DecimalFormat("#0.00");
+            for (int i = 0; i < this.result.size(); i++) {
+                String rowWr = this.data.blocks[i] + "," + String.format("%03d", this.data.nums[i]) + ","
+                        + this.data.prevValues[i] + "," + this.data.currValues[i] + ","
+                        + this.result.getConsumption(i) + ","
+                        + df.format(this.result.getPercent(i)).replace(",", ".") + "\n";
+                fr.writeChars(rowWr);
+            }
+        }
+        finally {
+            fr.close();
+        }
+        return this.legacyTarget.length();
+    }
+}
@@ -0,0 +1,278 @@
+package br.com.rateiocerto.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import br.com.rateiocerto.engine.RateioEngine;
+import br.com.rateiocerto.engine.RateioSchema;
+
+/**
+ * Rateio Certo
+ *
+ * DaoLookupBenchmark: benchmark das consultas mais frequentes dos DAOs do App,
+ * executadas através do sqlite-jdbc num BD em disco, criado com o mesmo esquema
+ * do DatabaseRateio (RateioSchema). Os comandos SQL são os mesmos declarados
+ * nas anotações @Query dos DAOs, indicados em cada constante, e são preparados
+ * uma única vez, como o Room faz com as suas consultas. As consultas que o
+ * App declara no RateioSchema (CONSUMPTION_QUERY e LAST_CLOSED_QUERY) são
+ * usadas diretamente, com os parâmetros nomeados do Room, que o SQLite numera
+ * na ordem em que aparecem.
+ * As buscas pontuais percorrem uma sequência fixa de apartamentos aleatórios.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class DaoLookupBenchmark {
+
+    //ApartmentDao.getApartment
+    private static final String APARTMENT_BY_BLOCK_NUM = "SELECT * FROM Apartment WHERE " +
+            "(bloco = ?) AND (numero = ?)";
+
+    //ApartmentDao.getApartmentById
+    private static final String APARTMENT_BY_ID = "SELECT * FROM Apartment WHERE (id_apt = ?)";
+
+    //ApartmentDao.listAllApartmentsOrdered
+    private static final String APARTMENTS_ORDERED = "SELECT * FROM Apartment " +
+            "ORDER BY bloco ASC, numero ASC";
+
+    //ReadDataDao.getCurrentReadDataById
+    private static final String READ_BY_APT_PERIOD = "SELECT * FROM ReadData " +
+            "WHERE (id_apt = ?) AND (periodo = ?)";
+
+    //ReadDataDao.getMonthListReadData
+    private static final String READS_OF_PERIOD = "SELECT * FROM ReadData " +
+            "WHERE (periodo = ?) ORDER BY id_apt ASC";
+
+    //PeriodSummaryDao.getPeriodSummary
+    private static final String PERIOD_SUMMARY = "SELECT * FROM PeriodSummary WHERE (periodo = ?)";
+
+    //ReadDataDao.insertReadData (@Insert com OnConflictStrategy.REPLACE), como gerado pelo Room
+    private static final String UPSERT_READ = "INSERT OR REPLACE INTO `ReadData` " +
+            "(`id_leitura`,`id_apt`,`data_leitura`,`valor_leitura`,`periodo`) " +
+            "VALUES (nullif(?, 0),?,?,?,?)";
+
+    //tamanho da sequência de apartamentos das buscas pontuais
+    private static final int LOOKUPS = 1024;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int units;
+
+    private File dir;
+    private Connection conn;
+    private int [] positions;
+    private int next;
+
+    private PreparedStatement aptByBlockNum;
+    private PreparedStatement aptById;
+    private PreparedStatement aptsOrdered;
+    private PreparedStatement readByAptPeriod;
+    private PreparedStatement readsOfPeriod;
+    private PreparedStatement consumption;
+    private PreparedStatement periodSummary;
+    private PreparedStatement lastClosedBefore;
+    private PreparedStatement upsertRead;
+
+    @Setup
+    public void setup () throws IOException, SQLException {
+        this.dir = Files.createTempDirectory("rateio-db").toFile();
+        File file = new File(this.dir, "Benchmark.db");
+        this.conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        this.populate(new BenchmarkData(this.units));
+        this.positions = BenchmarkData.randomPositions(this.units, DaoLookupBenchmark.LOOKUPS);
+
+        this.aptByBlockNum = this.conn.prepareStatement(DaoLookupBenchmark.APARTMENT_BY_BLOCK_NUM);
+        this.aptById = this.conn.prepareStatement(DaoLookupBenchmark.APARTMENT_BY_ID);
+        this.aptsOrdered = this.conn.prepareStatement(DaoLookupBenchmark.APARTMENTS_ORDERED);
+        this.readByAptPeriod = this.conn.prepareStatement(DaoLookupBenchmark.READ_BY_APT_PERIOD);
+        this.readsOfPeriod = this.conn.prepareStatement(DaoLookupBenchmark.READS_OF_PERIOD);
+        this.consumption = this.conn.prepareStatement(RateioSchema.CONSUMPTION_QUERY);
+        this.periodSummary = this.conn.prepareStatement(DaoLookupBenchmark.PERIOD_SUMMARY);
+        this.lastClosedBefore = this.conn.prepareStatement(RateioSchema.LAST_CLOSED_QUERY);
+        this.upsertRead = this.conn.prepareStatement(DaoLookupBenchmark.UPSERT_READ);
+    }
+
+    @TearDown
+    public void tearDown () throws SQLException {
+        this.conn.close();
+        File [] files = this.dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        this.dir.delete();
+    }
+
+    @Benchmark
+    public int apartmentByBlockNum () throws SQLException {
+        int pos = this.nextPosition();
+        this.aptByBlockNum.setString(1, BenchmarkData.blockOf(pos));
+        this.aptByBlockNum.setInt(2, BenchmarkData.numOf(pos));
+        return DaoLookupBenchmark.consume(this.aptByBlockNum.executeQuery());
+    }
+
+    @Benchmark
+    public int apartmentById () throws SQLException {
+        this.aptById.setInt(1, this.nextPosition() + 1);
+        return DaoLookupBenchmark.consume(this.aptById.executeQuery());
+    }
+
+    @Benchmark
+    public int listAllApartmentsOrdered () throws SQLException {
+        return DaoLookupBenchmark.consume(this.aptsOrdered.executeQuery());
+    }
+
+    @Benchmark
+    public int readByAptPeriod () throws SQLException {
+        this.readByAptPeriod.setInt(1, this.nextPosition() + 1);
+        this.readByAptPeriod.setInt(2, BenchmarkData.CURR_PERIOD);
+        return DaoLookupBenchmark.consume(this.readByAptPeriod.executeQuery());
+    }
+
+    @Benchmark
+    public int monthListReadData () throws SQLException {
+        this.readsOfPeriod.setInt(1, BenchmarkData.CURR_PERIOD);
+        return DaoLookupBenchmark.consume(this.readsOfPeriod.executeQuery());
+    }
+
+    @Benchmark
+    public int consumptionCursor () throws SQLException {
+        this.consumption.setInt(1, BenchmarkData.PREV_PERIOD);
+        this.consumption.setInt(2, BenchmarkData.CURR_PERIOD);
+        return DaoLookupBenchmark.consume(this.consumption.executeQuery());
+    }
+
+    @Benchmark
+    public int periodSummary () throws SQLException {
+        this.periodSummary.setInt(1, BenchmarkData.CURR_PERIOD);
+        return DaoLookupBenchmark.consume(this.periodSummary.executeQuery());
+    }
+
+    @Benchmark
+    public int lastClosedBefore () throws SQLException {
+        this.lastClosedBefore.setInt(1, BenchmarkData.CURR_PERIOD);
+        return DaoLookupBenchmark.consume(this.lastClosedBefore.executeQuery());
+    }
+
+    /**
+     * Gravação de uma leitura já existente, com os gatilhos de totais e de
+     * períodos, numa transação própria, como no App.
+     */
+    @Benchmark
+    public int upsertReadData () throws SQLException {
+        int pos = this.nextPosition();
+        this.upsertRead.setInt(1, 0);
+        this.upsertRead.setInt(2, pos + 1);
+        this.upsertRead.setString(3, "2020-10-15");
+        this.upsertRead.setLong(4, 1000 + pos % 9000);
+        this.upsertRead.setInt(5, BenchmarkData.CURR_PERIOD);
+        return this.upsertRead.executeUpdate();
+    }
+
+    /**
+     * Método que retorna a próxima posição da sequência de buscas pontuais.
+     * @return a posição de um apartamento
+     */
+    private int nextPosition () {
+        int resp = this.positions[this.next];
+        this.next = (this.next + 1) & (DaoLookupBenchmark.LOOKUPS - 1);
+        return resp;
+    }
+
+    /**
+     * Método que percorre todas as linhas de um resultado, lendo a primeira
+     * coluna, e o fecha.
+     * @param rs resultado da consulta
+     * @return a quantidade de linhas
+     * @throws SQLException erro retornado caso haja um problema na leitura
+     */
+    private static int consume (ResultSet rs) throws SQLException {
+        int resp = 0;
+        try {
+            while (rs.next()) {
+                rs.getObject(1);
+                resp++;
+            }
+        }
+        finally {
+            rs.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que cria o esquema do BD e cadastra os apartamentos e as leituras
+     * dos dois períodos, fechando o período anterior.
+     * @param data dados do condomínio
+     * @throws SQLException erro retornado caso haja um problema no BD
+     */
+    private void populate (BenchmarkData data) throws SQLException {
+        Statement st = this.conn.createStatement();
+        for (String sql : RateioSchema.createStatements()) {
+            st.execute(sql);
+        }
+        this.conn.setAutoCommit(false);
+        PreparedStatement apt = this.conn.prepareStatement(
+                "INSERT INTO Apartment (id_apt, bloco, numero) VALUES (?, ?, ?)");
+        PreparedStatement read = this.conn.prepareStatement(DaoLookupBenchmark.UPSERT_READ);
+        for (int i = 0; i < data.units; i++) {
+            apt.setInt(1, i + 1);
+            apt.setString(2, data.blocks[i]);
+            apt.setInt(3, data.nums[i]);
+            apt.addBatch();
+            if (data.prevValues[i] != RateioEngine.NO_VALUE) {
+                DaoLookupBenchmark.addRead(read, i + 1, "2020-09-15", data.prevValues[i],
+                        BenchmarkData.PREV_PERIOD);
+            }
+            if (data.currValues[i] != RateioEngine.NO_VALUE) {
+                DaoLookupBenchmark.addRead(read, i + 1, "2020-10-15", data.currValues[i],
+                        BenchmarkData.CURR_PERIOD);
+            }
+        }
+        apt.executeBatch();
+        read.executeBatch();
+        st.execute("UPDATE ReadingPeriod SET status = " + RateioSchema.PERIOD_CLOSED +
+                " WHERE periodo = " + BenchmarkData.PREV_PERIOD);
+        this.conn.commit();
+        this.conn.setAutoCommit(true);
+        apt.close();
+        read.close();
+        st.close();
+    }
+
+    /**
+     * Método que acrescenta uma leitura ao lote de gravação.
+     * @param read comando de gravação de leituras
+     * @param idApt identificador do apartamento
+     * @param date data da leitura
+     * @param value valor da leitura
+     * @param period período da leitura (ano * 100 + mês)
+     * @throws SQLException erro retornado caso haja um problema no BD
+     */
+    private static void addRead (PreparedStatement read, int idApt, String date,
+                                 long value, int period) throws SQLException {
+        read.setInt(1, 0);
+        read.setInt(2, idApt);
+        read.setString(3, date);
+        read.setLong(4, value);
+        read.setInt(5, period);
+        read.addBatch();
+    }
+}
@@ -0,0 +1,41 @@
+package br.com.rateiocerto.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import br.com.rateiocerto.engine.RateioEngine;
+import br.com.rateiocerto.engine.RateioResult;
+
+/**
+ * Rateio Certo
+ *
+ * RateioEngineBenchmark: benchmark do cálculo do rateio (consumo de cada
+ * apartamento, volume total e porcentagens) feito pelo RateioEngine, para
+ * condomínios de 100 a 100 mil apartamentos.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+public class RateioEngineBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int units;
+
+    private BenchmarkData data;
+
+    @Setup
+    public void setup () {
+        this.data = new BenchmarkData(this.units);
+    }
+
+    @Benchmark
+    public RateioResult compute () {
+        return RateioEngine.compute(this.data.prevValues, this.data.currValues);
+    }
+}
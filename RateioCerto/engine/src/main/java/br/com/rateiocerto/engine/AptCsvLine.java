@@ -0,0 +1,67 @@
+package br.com.rateiocerto.engine;
+
+/**
+ * Rateio Certo
+ *
+ * AptCsvLine: classe que representa uma linha do arquivo de carga dos
+ * apartamentos, no formato "bloco,numero", já convertida. A conversão não
+ * depende do Android nem do Room, de forma que é a mesma usada pelo App
+ * (AptCsvImporter) e pelo benchmark da carga.
+ * Os atributos de AptCsvLine são:
+ * block: nome ou código do bloco, sem espaços nas pontas.
+ * num: número do apartamento.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public final class AptCsvLine {
+
+    private final String block;
+    private final int num;
+
+    private AptCsvLine (String block, int num) {
+        this.block = block;
+        this.num = num;
+    }
+
+    /**
+     * Método que converte uma linha do arquivo, no formato "bloco,numero".
+     * Colunas além da segunda são ignoradas.
+     * @param lineData linha do arquivo
+     * @return a linha convertida
+     * @throws IllegalArgumentException caso a linha não esteja no formato esperado
+     */
+    public static AptCsvLine parse (String lineData) {
+        String [] aptData = lineData.split(",");
+        if (aptData.length < 2) {
+            throw new IllegalArgumentException("linha sem bloco ou número");
+        }
+        String block = aptData[0].trim();
+        if (block.isEmpty()) {
+            throw new IllegalArgumentException("bloco vazio");
+        }
+        int num;
+        try {
+            num = Integer.parseInt(aptData[1].trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("número inválido: " + aptData[1]);
+        }
+        return new AptCsvLine(block, num);
+    }
+
+    /**
+     * Método que retorna o bloco do apartamento.
+     * @return o nome ou código do bloco
+     */
+    public String getBlock () {
+        return this.block;
+    }
+
+    /**
+     * Método que retorna o número do apartamento.
+     * @return o número do apartamento
+     */
+    public int getNum () {
+        return this.num;
+    }
+}
@@ -0,0 +1,181 @@
+package br.com.rateiocerto.engine;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Rateio Certo
+ *
+ * CsvReportWriter: classe responsável pela escrita da planilha de consumo em
+ * formato CSV. A escrita é feita em UTF-8, através de um buffer, linha a linha,
+ * sem manter as linhas em memória. O conteúdo é gravado primeiro num arquivo
+ * temporário, o qual só substitui o arquivo final quando a escrita é confirmada
+ * pelo método commit. Assim, uma planilha antiga nunca fica parcialmente
+ * sobrescrita em caso de erro.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class CsvReportWriter implements Closeable {
+
+    //tamanho do buffer de escrita, em caracteres
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //sufixo do arquivo temporário, criado na mesma pasta do arquivo final
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    //valor que indica uma leitura inexistente, escrita como campo vazio
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private File target;
+    private File temp;
+    private BufferedWriter out;
+    private boolean committed;
+    private DecimalFormat df;
+    private StringBuilder row;
+
+    /**
+     * Construtor da classe. Cria o arquivo temporário de escrita, ao lado
+     * do arquivo final indicado.
+     * @param target arquivo final da planilha
+     * @throws IOException erro retornado caso não seja possível criar o arquivo
+     */
+    public CsvReportWriter (File target) throws IOException {
+        this.target = target;
+        this.temp = new File(target.getPath() + CsvReportWriter.TEMP_SUFFIX);
+        this.out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(this.temp), StandardCharsets.UTF_8),
+                CsvReportWriter.BUFFER_SIZE);
+        this.committed = false;
+        this.df = new DecimalFormat("#0.00", DecimalFormatSymbols.getInstance(Locale.ROOT));
+        this.row = new StringBuilder(128);
+    }
+
+    /**
+     * Método que escreve o cabeçalho da planilha, com o nome do condomínio,
+     * o período das leituras, o volume total consumido e os títulos das colunas.
+     * @param nameCondominium nome do condomínio
+     * @param prevYear ano da leitura anterior a de referẽncia
+     * @param prevMonth mês da leitura anterior a de referência
+     * @param currYear ano referente à leitura atual ou de referência
+     * @param currMonth mês referente à leitura atual ou de referência
+     * @param totalVolume volume total consumido no período
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    public void writeHeader (String nameCondominium, int prevYear, int prevMonth,
+                             int currYear, int currMonth, long totalVolume) throws IOException {
+        this.out.write("Condominio:," + nameCondominium + "\n"
+                + "Periodo:," + String.format("%02d", prevMonth) + "/" + prevYear
+                + " a " + String.format("%02d", currMonth) + "/" + currYear + "\n"
+                + ",,\n"
+                + "Volume total (m³):," + totalVolume + "\n"
+                + ",,\n"
+                + "Bloco,Apartamento,Leitura anterior (m³),Leitura atual (m³),"
+                + "Consumo unitário (m³),% rateio\n");
+    }
+
+    /**
+     * Método que escreve a linha de um apartamento na planilha.
+     * @param block bloco do apartamento
+     * @param num número do apartamento, escrito com três algarismos
+     * @param valuePrev valor da leitura anterior, ou NO_VALUE caso não exista
+     * @param valueCurr valor da leitura atual, ou NO_VALUE caso não exista
+     * @param valueDiff consumo do apartamento no período
+     * @param percentDiff porcentagem do consumo em relação ao total
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    public void writeRow (String block, int num, long valuePrev, long valueCurr,
+                          long valueDiff, double percentDiff) throws IOException {
+        StringBuilder sb = this.row;
+        sb.setLength(0);
+        sb.append(block).append(',');
+        CsvReportWriter.appendFormatedNum(sb, num);
+        sb.append(',');
+        CsvReportWriter.appendValue(sb, valuePrev);
+        sb.append(',');
+        CsvReportWriter.appendValue(sb, valueCurr);
+        sb.append(',').append(valueDiff)
+                .append(',').append(this.df.format(percentDiff))
+                .append('\n');
+        this.out.append(sb);
+    }
+
+    /**
+     * Método que confirma a escrita da planilha. O buffer é descarregado, o
+     * arquivo temporário é fechado e então renomeado para o arquivo final,
+     * substituindo uma versão anterior, caso exista.
+     * @throws IOException erro retornado caso haja um problema na gravação
+     */
+    public void commit () throws IOException {
+        this.out.close();
+        try {
+            Files.move(this.temp.toPath(), this.target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(this.temp.toPath(), this.target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.committed = true;
+    }
+
+    /**
+     * Método que encerra o escritor. Caso a escrita não tenha sido confirmada,
+     * o arquivo temporário é descartado e o arquivo final permanece inalterado.
+     */
+    @Override
+    public void close () {
+        if (!this.committed) {
+            try {
+                this.out.close();
+            }
+            catch (IOException e) {
+                //o arquivo temporário será descartado de qualquer forma
+            }
+            this.temp.delete();
+        }
+    }
+
+    /**
+     * Método que insere um valor de leitura na linha, ou nada caso o
+     * valor seja inexistente.
+     * @param sb buffer da linha em escrita
+     * @param value valor de leitura, ou NO_VALUE
+     */
+    private static void appendValue (StringBuilder sb, long value) {
+        if (value != CsvReportWriter.NO_VALUE) {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Método que insere o número do apartamento com três algarismos, completando
+     * com zeros à esquerda, no mesmo formato de Apartment.getFormatedNum.
+     * @param sb buffer da linha em escrita
+     * @param num número do apartamento
+     */
+    private static void appendFormatedNum (StringBuilder sb, int num) {
+        if (num < 0) {
+            sb.append(String.format("%03d", num));
+        }
+        else {
+            if (num < 100) {
+                sb.append('0');
+            }
+            if (num < 10) {
+                sb.append('0');
+            }
+            sb.append(num);
+        }
+    }
+}
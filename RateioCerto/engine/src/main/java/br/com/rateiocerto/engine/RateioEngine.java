@@ -0,0 +1,106 @@
+package br.com.rateiocerto.engine;
+
+/**
+ * Rateio Certo
+ *
+ * RateioEngine: classe responsável pelo cálculo do rateio de consumo entre os
+ * apartamentos de um condomínio. Os dados de entrada são colunas de valores
+ * primitivos, uma posição por apartamento: a leitura anterior e a atual. Não
+ * há dependência do BD nem do Android, de modo que o cálculo pode ser usado
+ * tanto pelo aplicativo quanto em outros ambientes Java.
+ * O cálculo é feito em duas passagens sobre as colunas: a primeira obtém o
+ * consumo de cada apartamento e o volume total, e a segunda a porcentagem do
+ * consumo de cada apartamento em relação ao total. Quando o volume total já é
+ * conhecido, como na planilha gerada a partir do cursor do BD, o consumo e a
+ * porcentagem podem ser calculados linha a linha, sem carregar as colunas.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public final class RateioEngine {
+
+    //valor que indica uma leitura inexistente
+    public static final long NO_VALUE = CsvReportWriter.NO_VALUE;
+
+    private RateioEngine () {
+    }
+
+    /**
+     * Método que calcula o rateio de todas as posições das colunas recebidas.
+     * @param prevValues leituras anteriores, ou NO_VALUE caso não existam
+     * @param currValues leituras atuais, ou NO_VALUE caso não existam
+     * @return o resultado do rateio
+     */
+    public static RateioResult compute (long [] prevValues, long [] currValues) {
+        if (prevValues.length != currValues.length) {
+            throw new IllegalArgumentException("As colunas de leitura possuem tamanhos diferentes: "
+                    + prevValues.length + " e " + currValues.length);
+        }
+        return RateioEngine.compute(prevValues, currValues, prevValues.length);
+    }
+
+    /**
+     * Método que calcula o rateio das primeiras posições das colunas recebidas.
+     * Permite o reaproveitamento de colunas maiores que a quantidade de
+     * apartamentos.
+     * O consumo de um apartamento é a diferença, em módulo, entre as duas
+     * leituras. Apartamentos sem uma das leituras possuem consumo zero, e não
+     * entram no volume total.
+     * @param prevValues leituras anteriores, ou NO_VALUE caso não existam
+     * @param currValues leituras atuais, ou NO_VALUE caso não existam
+     * @param size quantidade de apartamentos a considerar
+     * @return o resultado do rateio
+     */
+    public static RateioResult compute (long [] prevValues, long [] currValues, int size) {
+        if (size < 0 || size > prevValues.length || size > currValues.length) {
+            throw new IllegalArgumentException("Quantidade de apartamentos inválida: " + size);
+        }
+        long [] consumption = new long [size];
+        double [] percent = new double [size];
+        long totalVolume = 0;
+        int pairedUnits = 0;
+
+        for (int i = 0; i < size; i++) {
+            if (prevValues[i] != RateioEngine.NO_VALUE && currValues[i] != RateioEngine.NO_VALUE) {
+                long diff = RateioEngine.consumption(prevValues[i], currValues[i]);
+                consumption[i] = diff;
+                totalVolume += diff;
+                pairedUnits++;
+            }
+        }
+
+        if (totalVolume > 0) {
+            for (int i = 0; i < size; i++) {
+                percent[i] = RateioEngine.percent(consumption[i], totalVolume);
+            }
+        }
+        return new RateioResult(consumption, percent, totalVolume, pairedUnits);
+    }
+
+    /**
+     * Método que calcula o consumo de um único apartamento, a partir das
+     * suas duas leituras.
+     * @param prevValue leitura anterior, ou NO_VALUE caso não exista
+     * @param currValue leitura atual, ou NO_VALUE caso não exista
+     * @return a diferença, em módulo, entre as leituras, ou zero caso falte uma delas
+     */
+    public static long consumption (long prevValue, long currValue) {
+        if (prevValue == RateioEngine.NO_VALUE || currValue == RateioEngine.NO_VALUE) {
+            return 0;
+        }
+        return Math.abs(currValue - prevValue);
+    }
+
+    /**
+     * Método que calcula a porcentagem do consumo de um apartamento em
+     * relação ao volume total do período.
+     * @param consumption consumo do apartamento
+     * @param totalVolume volume total consumido no período
+     * @return a porcentagem de rateio, ou zero caso o volume total seja zero
+     */
+    public static double percent (long consumption, long totalVolume) {
+        if (totalVolume <= 0) {
+            return 0;
+        }
+        return ((double) consumption / (double) totalVolume) * 100;
+    }
+}
@@ -0,0 +1,79 @@
+package br.com.rateiocerto.engine;
+
+/**
+ * Rateio Certo
+ *
+ * RateioResult: classe que representa o resultado do cálculo do rateio,
+ * em colunas indexadas pela mesma posição dos dados de entrada.
+ * Os atributos de RateioResult são:
+ * consumption: consumo de cada apartamento no período.
+ * percent: porcentagem do consumo de cada apartamento em relação ao total.
+ * totalVolume: soma dos consumos dos apartamentos com as duas leituras.
+ * pairedUnits: quantidade de apartamentos com as duas leituras.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public final class RateioResult {
+
+    private final long [] consumption;
+    private final double [] percent;
+    private final long totalVolume;
+    private final int pairedUnits;
+
+    /**
+     * Construtor da classe. As colunas recebidas não são copiadas.
+     * @param consumption consumo de cada apartamento
+     * @param percent porcentagem do consumo de cada apartamento
+     * @param totalVolume volume total consumido
+     * @param pairedUnits quantidade de apartamentos com as duas leituras
+     */
+    RateioResult (long [] consumption, double [] percent, long totalVolume, int pairedUnits) {
+        this.consumption = consumption;
+        this.percent = percent;
+        this.totalVolume = totalVolume;
+        this.pairedUnits = pairedUnits;
+    }
+
+    /**
+     * Método que retorna a quantidade de apartamentos do resultado.
+     * @return a quantidade de apartamentos
+     */
+    public int size () {
+        return this.consumption.length;
+    }
+
+    /**
+     * Método que retorna o consumo do apartamento de uma posição.
+     * @param position posição do apartamento
+     * @return o consumo no período, ou zero caso falte uma das leituras
+     */
+    public long getConsumption (int position) {
+        return this.consumption[position];
+    }
+
+    /**
+     * Método que retorna a porcentagem do consumo do apartamento de uma
+     * posição, em relação ao volume total.
+     * @param position posição do apartamento
+     * @return a porcentagem de rateio, ou zero caso o volume total seja zero
+     */
+    public double getPercent (int position) {
+        return this.percent[position];
+    }
+
+    /**
+     * Método que fornece o volume total consumido no período.
+     * @return a soma dos consumos
+     */
+    public long getTotalVolume () {
+        return this.totalVolume;
+    }
+
+    /**
+     * Método que fornece a quantidade de apartamentos com as duas leituras.
+     * @return a quantidade de apartamentos
+     */
+    public int getPairedUnits () {
+        return this.pairedUnits;
+    }
+}
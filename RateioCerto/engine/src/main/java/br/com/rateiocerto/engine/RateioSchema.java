@@ -0,0 +1,189 @@
+package br.com.rateiocerto.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Rateio Certo
+ *
+ * RateioSchema: classe que reúne os comandos SQL do esquema do BD de um
+ * condomínio, na versão atual. As tabelas, índices e a view são os mesmos
+ * gerados pelo Room para o DatabaseRateio do App, e os gatilhos (que não fazem
+ * parte do esquema do Room) são definidos apenas aqui e usados pelo App.
+ * Assim, ferramentas e benchmarks executados fora do Android trabalham com um
+ * BD idêntico ao do App. Qualquer alteração nas entidades do App deve ser
+ * refletida nesta classe, junto com a versão.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public final class RateioSchema {
+
+    //versão do BD descrita por esta classe (DatabaseRateio)
+    public static final int VERSION = 6;
+
+    //situação de um período ainda em leitura, na tabela ReadingPeriod
+    public static final int PERIOD_OPEN = 0;
+
+    //situação de um período com leitura concluída, na tabela ReadingPeriod
+    public static final int PERIOD_CLOSED = 1;
+
+    //consulta da view AptRead
+    public static final String APT_READ_VIEW_QUERY = "SELECT Apartment.id_apt, Apartment.bloco, " +
+            "Apartment.numero, ReadData.data_leitura AS readDataDateRead, " +
+            "ReadData.valor_leitura AS readDataValueRead, " +
+            "ReadData.periodo AS readDataPeriod FROM Apartment INNER JOIN " +
+            "ReadData ON (Apartment.id_apt = ReadData.id_apt) ORDER BY Apartment.id_apt ASC";
+
+    //leituras de dois períodos pareadas por apartamento, usada na planilha de consumo
+    //(AptReadDao.getConsumptionCursor no App, e RateioRunner nas ferramentas)
+    public static final String CONSUMPTION_QUERY = "SELECT Apartment.id_apt, Apartment.bloco, " +
+            "Apartment.numero, prev.valor_leitura AS valorAnterior, curr.valor_leitura AS valorAtual " +
+            "FROM Apartment " +
+            "LEFT JOIN ReadData AS prev ON (prev.id_apt = Apartment.id_apt " +
+            "AND prev.periodo = :prevPeriod) " +
+            "LEFT JOIN ReadData AS curr ON (curr.id_apt = Apartment.id_apt " +
+            "AND curr.periodo = :currPeriod) " +
+            "WHERE (prev.id_leitura IS NOT NULL OR curr.id_leitura IS NOT NULL) " +
+            "ORDER BY Apartment.id_apt ASC";
+
+    //último período fechado anterior ao indicado, a referência da planilha
+    //(ReadingPeriodDao.getLastClosedBefore no App, e RateioRunner nas ferramentas)
+    public static final String LAST_CLOSED_QUERY = "SELECT * FROM ReadingPeriod " +
+            "WHERE (status = " + RateioSchema.PERIOD_CLOSED + ") AND (periodo < :period) " +
+            "ORDER BY periodo DESC LIMIT (1)";
+
+    /**
+     * Comandos de criação das tabelas, índices e view, na mesma forma
+     * gerada pelo Room.
+     */
+    public static final String [] TABLES = {
+            "CREATE TABLE IF NOT EXISTS `Apartment` (`id_apt` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`bloco` TEXT, `numero` INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS `index_Apartment_bloco_numero` ON `Apartment` (`bloco`, `numero`)",
+            "CREATE TABLE IF NOT EXISTS `ReadData` (`id_leitura` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`id_apt` INTEGER NOT NULL, `data_leitura` TEXT, `valor_leitura` INTEGER NOT NULL, " +
+                    "`periodo` INTEGER NOT NULL DEFAULT 0)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS `index_ReadData_id_apt_periodo` ON `ReadData` (`id_apt`, `periodo`)",
+            "CREATE INDEX IF NOT EXISTS `index_ReadData_periodo` ON `ReadData` (`periodo`)",
+            "CREATE TABLE IF NOT EXISTS `PeriodSummary` (`periodo` INTEGER NOT NULL, " +
+                    "`total_leituras` INTEGER NOT NULL, `soma_leituras` INTEGER NOT NULL, " +
+                    "`min_leitura` INTEGER, `max_leitura` INTEGER, PRIMARY KEY(`periodo`))",
+            "CREATE TABLE IF NOT EXISTS `ReadingPeriod` (`periodo` INTEGER NOT NULL, " +
+                    "`status` INTEGER NOT NULL, `fechado_em` TEXT, `total_leituras` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`periodo`))",
+            "CREATE INDEX IF NOT EXISTS `index_ReadingPeriod_status_periodo` ON `ReadingPeriod` (`status`, `periodo`)",
+            "CREATE VIEW `AptRead` AS " + RateioSchema.APT_READ_VIEW_QUERY
+    };
+
+    //condição das leituras substituídas por um INSERT OR REPLACE de NEW: mesmo
+    //id de leitura, ou mesmo apartamento e período (índice único)
+    private static final String REPLACED_ROWS = "(r.id_leitura = NEW.id_leitura " +
+            "OR (r.id_apt = NEW.id_apt AND r.periodo = NEW.periodo))";
+
+    //acréscimo da leitura NEW aos totais do seu período, criando a linha se necessário.
+    //Não é usado INSERT OR IGNORE, pois dentro de um gatilho a política de conflito
+    //do comando externo (REPLACE) teria precedência
+    private static final String ADD_NEW_READ =
+            "INSERT INTO PeriodSummary (periodo, total_leituras, soma_leituras) " +
+            "SELECT NEW.periodo, 0, 0 WHERE NOT EXISTS " +
+            "(SELECT 1 FROM PeriodSummary WHERE periodo = NEW.periodo); " +
+            "UPDATE PeriodSummary SET total_leituras = total_leituras + 1, " +
+            "soma_leituras = soma_leituras + NEW.valor_leitura, " +
+            "min_leitura = MIN (IFNULL (min_leitura, NEW.valor_leitura), NEW.valor_leitura), " +
+            "max_leitura = MAX (IFNULL (max_leitura, NEW.valor_leitura), NEW.valor_leitura) " +
+            "WHERE periodo = NEW.periodo; ";
+
+    //remoção da leitura OLD dos totais do seu período. O mínimo e o máximo só são
+    //recalculados, a partir do índice de períodos, quando OLD era um dos extremos
+    private static final String REMOVE_OLD_READ =
+            "UPDATE PeriodSummary SET total_leituras = total_leituras - 1, " +
+            "soma_leituras = soma_leituras - OLD.valor_leitura, " +
+            "min_leitura = CASE WHEN OLD.valor_leitura > min_leitura THEN min_leitura " +
+            "ELSE (SELECT MIN (valor_leitura) FROM ReadData WHERE periodo = OLD.periodo) END, " +
+            "max_leitura = CASE WHEN OLD.valor_leitura < max_leitura THEN max_leitura " +
+            "ELSE (SELECT MAX (valor_leitura) FROM ReadData WHERE periodo = OLD.periodo) END " +
+            "WHERE periodo = OLD.periodo; ";
+
+    /**
+     * Gatilhos que mantêm a tabela PeriodSummary exata a cada inserção, remoção
+     * ou alteração de leituras. As gravações do App usam INSERT OR REPLACE, cujas
+     * remoções implícitas não disparam gatilhos de DELETE (recursive_triggers
+     * desligado); por isso as leituras substituídas são descontadas num gatilho
+     * BEFORE INSERT.
+     */
+    public static final String [] PERIOD_SUMMARY_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_summary_before_insert` " +
+                    "BEFORE INSERT ON `ReadData` BEGIN " +
+                    "UPDATE PeriodSummary SET " +
+                    "total_leituras = total_leituras - (SELECT COUNT (1) FROM ReadData r " +
+                    "WHERE r.periodo = PeriodSummary.periodo AND " + REPLACED_ROWS + "), " +
+                    "soma_leituras = soma_leituras - (SELECT IFNULL (SUM (r.valor_leitura), 0) " +
+                    "FROM ReadData r WHERE r.periodo = PeriodSummary.periodo AND " + REPLACED_ROWS + "), " +
+                    "min_leitura = CASE WHEN (SELECT MIN (r.valor_leitura) FROM ReadData r " +
+                    "WHERE r.periodo = PeriodSummary.periodo AND " + REPLACED_ROWS + ") > min_leitura " +
+                    "THEN min_leitura ELSE (SELECT MIN (r.valor_leitura) FROM ReadData r " +
+                    "WHERE r.periodo = PeriodSummary.periodo AND NOT " + REPLACED_ROWS + ") END, " +
+                    "max_leitura = CASE WHEN (SELECT MAX (r.valor_leitura) FROM ReadData r " +
+                    "WHERE r.periodo = PeriodSummary.periodo AND " + REPLACED_ROWS + ") < max_leitura " +
+                    "THEN max_leitura ELSE (SELECT MAX (r.valor_leitura) FROM ReadData r " +
+                    "WHERE r.periodo = PeriodSummary.periodo AND NOT " + REPLACED_ROWS + ") END " +
+                    "WHERE periodo IN (SELECT r.periodo FROM ReadData r WHERE " + REPLACED_ROWS + "); " +
+                    "DELETE FROM PeriodSummary WHERE total_leituras <= 0 " +
+                    "AND periodo IN (SELECT r.periodo FROM ReadData r WHERE " + REPLACED_ROWS + "); " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_summary_after_insert` " +
+                    "AFTER INSERT ON `ReadData` BEGIN " +
+                    ADD_NEW_READ +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_summary_after_delete` " +
+                    "AFTER DELETE ON `ReadData` BEGIN " +
+                    REMOVE_OLD_READ +
+                    "DELETE FROM PeriodSummary WHERE periodo = OLD.periodo AND total_leituras <= 0; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_summary_after_update` " +
+                    "AFTER UPDATE OF valor_leitura, periodo ON `ReadData` BEGIN " +
+                    REMOVE_OLD_READ +
+                    ADD_NEW_READ +
+                    "DELETE FROM PeriodSummary WHERE periodo = OLD.periodo AND total_leituras <= 0; " +
+                    "END"
+    };
+
+    //abertura do período de NEW, caso ainda não exista
+    private static final String OPEN_NEW_PERIOD =
+            "INSERT INTO ReadingPeriod (periodo, status, total_leituras) " +
+            "SELECT NEW.periodo, " + PERIOD_OPEN + ", 0 WHERE NOT EXISTS " +
+            "(SELECT 1 FROM ReadingPeriod WHERE periodo = NEW.periodo); ";
+
+    /**
+     * Gatilhos que abrem um período de leitura na tabela ReadingPeriod quando a
+     * primeira leitura do mesmo é cadastrada.
+     */
+    public static final String [] READING_PERIOD_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_period_after_insert` " +
+                    "AFTER INSERT ON `ReadData` WHEN NEW.periodo > 0 BEGIN " +
+                    OPEN_NEW_PERIOD +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS `ReadData_period_after_update` " +
+                    "AFTER UPDATE OF periodo ON `ReadData` WHEN NEW.periodo > 0 BEGIN " +
+                    OPEN_NEW_PERIOD +
+                    "END"
+    };
+
+    private RateioSchema () {
+    }
+
+    /**
+     * Método que retorna todos os comandos de criação do esquema, na ordem de
+     * execução: tabelas, índices, view e gatilhos.
+     * @return a lista de comandos SQL
+     */
+    public static List<String> createStatements () {
+        List<String> resp = new ArrayList<>();
+        resp.addAll(Arrays.asList(RateioSchema.TABLES));
+        resp.addAll(Arrays.asList(RateioSchema.PERIOD_SUMMARY_TRIGGERS));
+        resp.addAll(Arrays.asList(RateioSchema.READING_PERIOD_TRIGGERS));
+        return Collections.unmodifiableList(resp);
+    }
+}
@@ -0,0 +1,48 @@
+package br.com.rateiocerto.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rateio Certo
+ *
+ * AptCsvLineTest: testes da conversão das linhas do arquivo de carga dos
+ * apartamentos (AptCsvLine.parse), com espaços, colunas extras e as linhas
+ * mal formatadas, que são rejeitadas.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class AptCsvLineTest {
+
+    @Test
+    public void blockAndNumber_trimmed() {
+        AptCsvLine line = AptCsvLine.parse(" B01 , 101 ");
+
+        assertEquals("B01", line.getBlock());
+        assertEquals(101, line.getNum());
+    }
+
+    @Test
+    public void extraColumns_ignored() {
+        AptCsvLine line = AptCsvLine.parse("Torre Á,1203,obs");
+
+        assertEquals("Torre Á", line.getBlock());
+        assertEquals(1203, line.getNum());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingNumber_rejected() {
+        AptCsvLine.parse("B01");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyBlock_rejected() {
+        AptCsvLine.parse(" ,101");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNumber_rejected() {
+        AptCsvLine.parse("B01,10A");
+    }
+}
@@ -0,0 +1,126 @@
+package br.com.rateiocerto.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rateio Certo
+ *
+ * RateioEngineTest: testes do cálculo do rateio (RateioEngine.compute), com as
+ * leituras inexistentes, o volume total zero, a virada do medidor, as colunas
+ * de tamanhos diferentes e os limites da quantidade de apartamentos.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class RateioEngineTest {
+
+    private static final long NO = RateioEngine.NO_VALUE;
+
+    //tolerância na comparação das porcentagens
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void pairedReadings_consumptionTotalAndPercent() {
+        RateioResult r = RateioEngine.compute(new long [] {100, 50, 10}, new long [] {130, 60, 70});
+
+        assertEquals(3, r.size());
+        assertEquals(30, r.getConsumption(0));
+        assertEquals(10, r.getConsumption(1));
+        assertEquals(60, r.getConsumption(2));
+        assertEquals(100, r.getTotalVolume());
+        assertEquals(3, r.getPairedUnits());
+        assertEquals(30.0, r.getPercent(0), DELTA);
+        assertEquals(10.0, r.getPercent(1), DELTA);
+        assertEquals(60.0, r.getPercent(2), DELTA);
+    }
+
+    @Test
+    public void missingReadingOnEitherSide_noConsumption() {
+        RateioResult r = RateioEngine.compute(new long [] {NO, 100, 20, NO},
+                new long [] {500, NO, 40, NO});
+
+        assertEquals(0, r.getConsumption(0));
+        assertEquals(0, r.getConsumption(1));
+        assertEquals(20, r.getConsumption(2));
+        assertEquals(0, r.getConsumption(3));
+        assertEquals(20, r.getTotalVolume());
+        assertEquals(1, r.getPairedUnits());
+        assertEquals(0.0, r.getPercent(0), DELTA);
+        assertEquals(0.0, r.getPercent(1), DELTA);
+        assertEquals(100.0, r.getPercent(2), DELTA);
+        assertEquals(0.0, r.getPercent(3), DELTA);
+    }
+
+    @Test
+    public void zeroTotalVolume_zeroPercent() {
+        RateioResult r = RateioEngine.compute(new long [] {10, 20}, new long [] {10, 20});
+
+        assertEquals(0, r.getTotalVolume());
+        assertEquals(2, r.getPairedUnits());
+        assertEquals(0.0, r.getPercent(0), DELTA);
+        assertEquals(0.0, r.getPercent(1), DELTA);
+    }
+
+    @Test
+    public void meterRollover_absoluteDifference() {
+        RateioResult r = RateioEngine.compute(new long [] {9990, 100}, new long [] {15, 110});
+
+        assertEquals(9975, r.getConsumption(0));
+        assertEquals(10, r.getConsumption(1));
+        assertEquals(9985, r.getTotalVolume());
+        assertEquals(9975.0 / 9985 * 100, r.getPercent(0), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedLengths_rejected() {
+        RateioEngine.compute(new long [] {1, 2, 3}, new long [] {1, 2});
+    }
+
+    @Test
+    public void size_limitsPositionsComputed() {
+        RateioResult r = RateioEngine.compute(new long [] {0, 0, 0}, new long [] {5, 15, 1000}, 2);
+
+        assertEquals(2, r.size());
+        assertEquals(20, r.getTotalVolume());
+        assertEquals(25.0, r.getPercent(0), DELTA);
+        assertEquals(75.0, r.getPercent(1), DELTA);
+    }
+
+    @Test
+    public void emptyColumns_emptyResult() {
+        RateioResult r = RateioEngine.compute(new long [0], new long [0]);
+
+        assertEquals(0, r.size());
+        assertEquals(0, r.getTotalVolume());
+        assertEquals(0, r.getPairedUnits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSize_rejected() {
+        RateioEngine.compute(new long [] {1}, new long [] {2}, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeBeyondPrevColumn_rejected() {
+        RateioEngine.compute(new long [] {1}, new long [] {2, 3}, 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeBeyondCurrColumn_rejected() {
+        RateioEngine.compute(new long [] {1, 2}, new long [] {3}, 2);
+    }
+
+    @Test
+    public void rowHelpers_matchCompute() {
+        long [] prev = {100, NO, 9990, 40};
+        long [] curr = {130, 70, 15, NO};
+        RateioResult r = RateioEngine.compute(prev, curr);
+
+        for (int i = 0; i < prev.length; i++) {
+            long diff = RateioEngine.consumption(prev[i], curr[i]);
+            assertEquals(r.getConsumption(i), diff);
+            assertEquals(r.getPercent(i), RateioEngine.percent(diff, r.getTotalVolume()), DELTA);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package br.com.rateiocerto.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+
+/**
+ * Rateio Certo
+ *
+ * DataGenerator: classe que gera os arquivos de um condomínio sintético, usados
+ * para medir o comportamento do App com grandes volumes de dados. A geração é
+ * determinística: a mesma semente e os mesmos parâmetros produzem sempre os
+ * mesmos arquivos.
+ * São gerados dois arquivos na pasta de saída:
+ * APARTMENTS_FILE: um apartamento por linha, no formato "bloco,numero", o mesmo
+ * lido pelo TaskSetupAptTable.
+ * READS_FILE: o histórico mensal de leituras, uma leitura por linha, no formato
+ * "bloco,numero,data,valor", em ordem cronológica. O histórico contém lacunas
+ * (meses sem leitura de um apartamento), viradas do hidrômetro (o valor volta a
+ * zero ao passar de METER_LIMIT) e leituras duplicadas no mesmo mês, corrigidas
+ * por uma leitura posterior. O último mês é o atual, com leitura parcial.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class DataGenerator {
+
+    //nome do arquivo de apartamentos
+    public static final String APARTMENTS_FILE = "apartamentos.csv";
+
+    //nome do arquivo de leituras
+    public static final String READS_FILE = "leituras.csv";
+
+    //valor a partir do qual o hidrômetro volta a zero
+    public static final int METER_LIMIT = 100000;
+
+    //quantidade de apartamentos por andar, na numeração dos apartamentos
+    private static final int APTS_PER_FLOOR = 10;
+
+    //tamanho do buffer de escrita, em caracteres
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private long seed = 20200531L;
+    private int blocks = 50;
+    private int apartments = 20000;
+    private int years = 10;
+    private YearMonth lastMonth = YearMonth.now();
+    private double gapRatio = 0.02;
+    private double duplicateRatio = 0.01;
+    private double currentReadRatio = 0.95;
+
+    private int totalReads;
+    private int totalGaps;
+    private int totalRollovers;
+    private int totalDuplicates;
+
+    /**
+     * Método que define a semente do gerador de números aleatórios.
+     * @param seed a semente
+     * @return o próprio gerador
+     */
+    public DataGenerator setSeed (long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Método que define a quantidade de blocos do condomínio.
+     * @param blocks quantidade de blocos
+     * @return o próprio gerador
+     */
+    public DataGenerator setBlocks (int blocks) {
+        this.blocks = Math.max(1, blocks);
+        return this;
+    }
+
+    /**
+     * Método que define a quantidade total de apartamentos, distribuídos
+     * igualmente entre os blocos.
+     * @param apartments quantidade de apartamentos
+     * @return o próprio gerador
+     */
+    public DataGenerator setApartments (int apartments) {
+        this.apartments = Math.max(1, apartments);
+        return this;
+    }
+
+    /**
+     * Método que define a quantidade de anos do histórico de leituras.
+     * @param years quantidade de anos
+     * @return o próprio gerador
+     */
+    public DataGenerator setYears (int years) {
+        this.years = Math.max(1, years);
+        return this;
+    }
+
+    /**
+     * Método que define o último mês do histórico, o qual tem leitura parcial.
+     * @param lastMonth o último mês
+     * @return o próprio gerador
+     */
+    public DataGenerator setLastMonth (YearMonth lastMonth) {
+        this.lastMonth = lastMonth;
+        return this;
+    }
+
+    /**
+     * Método que define a proporção de meses sem leitura de um apartamento.
+     * @param gapRatio proporção entre 0 e 1
+     * @return o próprio gerador
+     */
+    public DataGenerator setGapRatio (double gapRatio) {
+        this.gapRatio = gapRatio;
+        return this;
+    }
+
+    /**
+     * Método que define a proporção de leituras duplicadas no mesmo mês.
+     * @param duplicateRatio proporção entre 0 e 1
+     * @return o próprio gerador
+     */
+    public DataGenerator setDuplicateRatio (double duplicateRatio) {
+        this.duplicateRatio = duplicateRatio;
+        return this;
+    }
+
+    /**
+     * Método que define a proporção de apartamentos já lidos no último mês.
+     * @param currentReadRatio proporção entre 0 e 1
+     * @return o próprio gerador
+     */
+    public DataGenerator setCurrentReadRatio (double currentReadRatio) {
+        this.currentReadRatio = currentReadRatio;
+        return this;
+    }
+
+    /**
+     * Método que retorna o último mês do histórico gerado.
+     * @return o último mês
+     */
+    public YearMonth getLastMonth () {
+        return this.lastMonth;
+    }
+
+    /**
+     * Método que retorna a quantidade de linhas de leitura da última geração,
+     * incluindo as duplicadas.
+     * @return a quantidade de linhas
+     */
+    public int getTotalReads () {
+        return this.totalReads;
+    }
+
+    /**
+     * Método que retorna a quantidade de lacunas da última geração.
+     * @return a quantidade de meses sem leitura
+     */
+    public int getTotalGaps () {
+        return this.totalGaps;
+    }
+
+    /**
+     * Método que retorna a quantidade de viradas do hidrômetro da última geração.
+     * @return a quantidade de viradas
+     */
+    public int getTotalRollovers () {
+        return this.totalRollovers;
+    }
+
+    /**
+     * Método que retorna a quantidade de leituras duplicadas da última geração.
+     * @return a quantidade de duplicadas
+     */
+    public int getTotalDuplicates () {
+        return this.totalDuplicates;
+    }
+
+    /**
+     * Método que retorna o nome do bloco de um índice.
+     * @param block índice do bloco, a partir de zero
+     * @return o nome do bloco
+     */
+    public static String blockName (int block) {
+        return String.format("B%02d", block + 1);
+    }
+
+    /**
+     * Método que retorna o número de um apartamento, a partir da sua posição
+     * no bloco: andar seguido do número no andar (101, 102, ..., 201, ...).
+     * @param position posição do apartamento no bloco, a partir de zero
+     * @return o número do apartamento
+     */
+    public static int aptNumber (int position) {
+        return (position / DataGenerator.APTS_PER_FLOOR + 1) * 100
+                + position % DataGenerator.APTS_PER_FLOOR + 1;
+    }
+
+    /**
+     * Método que gera os arquivos de apartamentos e de leituras na pasta
+     * indicada, criando-a caso não exista.
+     * @param outDir pasta de saída
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    public void generate (File outDir) throws IOException {
+        if (!outDir.exists() && !outDir.mkdirs()) {
+            throw new IOException("Não foi possível criar a pasta " + outDir);
+        }
+        this.totalReads = 0;
+        this.totalGaps = 0;
+        this.totalRollovers = 0;
+        this.totalDuplicates = 0;
+
+        int perBlock = (this.apartments + this.blocks - 1) / this.blocks;
+        String [] blockOf = new String [this.apartments];
+        int [] numOf = new int [this.apartments];
+        for (int i = 0; i < this.apartments; i++) {
+            blockOf[i] = DataGenerator.blockName(i / perBlock);
+            numOf[i] = DataGenerator.aptNumber(i % perBlock);
+        }
+
+        BufferedWriter apts = DataGenerator.open(new File(outDir, DataGenerator.APARTMENTS_FILE));
+        try {
+            for (int i = 0; i < this.apartments; i++) {
+                apts.append(blockOf[i]).append(',').append(String.valueOf(numOf[i])).append('\n');
+            }
+        }
+        finally {
+            apts.close();
+        }
+
+        Random rnd = new Random(this.seed);
+        int [] meter = new int [this.apartments];
+        int [] usage = new int [this.apartments];
+        for (int i = 0; i < this.apartments; i++) {
+            meter[i] = rnd.nextInt(DataGenerator.METER_LIMIT);
+            usage[i] = 5 + rnd.nextInt(30);
+        }
+
+        int months = this.years * 12;
+        YearMonth month = this.lastMonth.minusMonths(months - 1);
+        StringBuilder sb = new StringBuilder(64);
+        BufferedWriter reads = DataGenerator.open(new File(outDir, DataGenerator.READS_FILE));
+        try {
+            for (int m = 0; m < months; m++, month = month.plusMonths(1)) {
+                boolean current = (m == months - 1);
+                for (int i = 0; i < this.apartments; i++) {
+                    //o consumo acumula mesmo nos meses sem leitura
+                    int consumption = Math.max(0, usage[i] + rnd.nextInt(11) - 5);
+                    meter[i] += consumption;
+                    if (meter[i] >= DataGenerator.METER_LIMIT) {
+                        meter[i] -= DataGenerator.METER_LIMIT;
+                        this.totalRollovers++;
+                    }
+                    if (current ? rnd.nextDouble() >= this.currentReadRatio
+                            : rnd.nextDouble() < this.gapRatio) {
+                        this.totalGaps++;
+                        continue;
+                    }
+                    int day = 1 + rnd.nextInt(20);
+                    if (rnd.nextDouble() < this.duplicateRatio) {
+                        //leitura errada, corrigida por outra no mesmo mês
+                        int wrong = Math.max(0, meter[i] - 1 - rnd.nextInt(50));
+                        DataGenerator.writeRead(reads, sb, blockOf[i], numOf[i],
+                                month.atDay(day), wrong);
+                        this.totalDuplicates++;
+                        this.totalReads++;
+                        day += 1 + rnd.nextInt(5);
+                    }
+                    DataGenerator.writeRead(reads, sb, blockOf[i], numOf[i],
+                            month.atDay(day), meter[i]);
+                    this.totalReads++;
+                }
+            }
+        }
+        finally {
+            reads.close();
+        }
+    }
+
+    /**
+     * Método que escreve uma linha do arquivo de leituras.
+     * @param out arquivo de leituras
+     * @param sb buffer da linha
+     * @param block bloco do apartamento
+     * @param num número do apartamento
+     * @param date data da leitura
+     * @param value valor da leitura
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    private static void writeRead (BufferedWriter out, StringBuilder sb, String block, int num,
+                                   LocalDate date, int value) throws IOException {
+        sb.setLength(0);
+        sb.append(block).append(',').append(num).append(',')
+                .append(date).append(',').append(value).append('\n');
+        out.append(sb);
+    }
+
+    /**
+     * Método que abre um arquivo de saída, em UTF-8 e com buffer.
+     * @param f arquivo de saída
+     * @return o escritor do arquivo
+     * @throws IOException erro retornado caso não seja possível criar o arquivo
+     */
+    private static BufferedWriter open (File f) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f),
+                StandardCharsets.UTF_8), DataGenerator.BUFFER_SIZE);
+    }
+
+    /**
+     * Rotina principal da geração pela linha de comando. Os parâmetros são
+     * opcionais, no formato --nome=valor: out, seed, blocks, apartments, years,
+     * last (aaaa-mm), gaps, duplicates e current.
+     * @param args parâmetros da linha de comando
+     * @throws IOException erro retornado caso haja um problema na escrita
+     */
+    public static void main (String [] args) throws IOException {
+        DataGenerator gen = new DataGenerator();
+        File outDir = new File("rateio-data");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "out": outDir = new File(value); break;
+                case "seed": gen.setSeed(Long.parseLong(value)); break;
+                case "blocks": gen.setBlocks(Integer.parseInt(value)); break;
+                case "apartments": gen.setApartments(Integer.parseInt(value)); break;
+                case "years": gen.setYears(Integer.parseInt(value)); break;
+                case "last": gen.setLastMonth(YearMonth.parse(value)); break;
+                case "gaps": gen.setGapRatio(Double.parseDouble(value)); break;
+                case "duplicates": gen.setDuplicateRatio(Double.parseDouble(value)); break;
+                case "current": gen.setCurrentReadRatio(Double.parseDouble(value)); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + name);
+            }
+        }
+        long start = System.nanoTime();
+        gen.generate(outDir);
+        System.out.println("Arquivos gerados em " + outDir.getAbsolutePath() + " ("
+                + (System.nanoTime() - start) / 1000000 + " ms): "
+                + gen.getTotalReads() + " leituras, " + gen.getTotalGaps() + " lacunas, "
+                + gen.getTotalRollovers() + " viradas, " + gen.getTotalDuplicates() + " duplicadas.");
+    }
+}
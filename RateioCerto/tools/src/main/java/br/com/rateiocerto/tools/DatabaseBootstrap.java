@@ -0,0 +1,300 @@
+package br.com.rateiocerto.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+import br.com.rateiocerto.engine.RateioSchema;
+
+/**
+ * Rateio Certo
+ *
+ * DatabaseBootstrap: ferramenta que gera, fora do App, o banco de dados pronto de
+ * um condomínio, com o mesmo esquema do DatabaseRateio (RateioSchema, incluindo
+ * os gatilhos de totais e de períodos) e a mesma versão (user_version). O App
+ * abre esse arquivo através do createFromFile do Room, de forma que a
+ * implantação de um condomínio grande é apenas a cópia de um arquivo, e não a
+ * carga dos apartamentos linha a linha pelo TaskSetupAptTable.
+ * São lidos os arquivos de apartamentos ("bloco,numero") e, opcionalmente, o
+ * histórico de leituras ("bloco,numero,data,valor"), nos formatos do
+ * DataGenerator. As leituras repetidas no mesmo mês substituem a anterior, como
+ * no App. Os períodos anteriores ao mês indicado em closeBefore podem ser
+ * gravados já fechados, servindo de referência para a primeira planilha.
+ * O arquivo gerado não contém a room_master_table: nesse caso o Room valida o
+ * esquema do arquivo na primeira abertura, e grava a sua identificação.
+ * O arquivo deve ser copiado para (pasta do App)/(condomínio)/(condomínio).db.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class DatabaseBootstrap {
+
+    //extensão do arquivo gerado, procurado pelo DatabaseRegistry do App
+    public static final String DB_EXTENSION = ".db";
+
+    //quantidade de linhas gravadas por lote
+    private static final int BATCH_SIZE = 5000;
+
+    private static final String INSERT_APARTMENT = "INSERT INTO `Apartment` (`bloco`,`numero`) VALUES (?,?)";
+
+    //mesmo comando gerado pelo Room para ReadDataDao.insertReadData (OnConflictStrategy.REPLACE)
+    private static final String UPSERT_READ = "INSERT OR REPLACE INTO `ReadData` " +
+            "(`id_leitura`,`id_apt`,`data_leitura`,`valor_leitura`,`periodo`) " +
+            "VALUES (nullif(?, 0),?,?,?,?)";
+
+    private static final String CLOSE_PERIODS = "UPDATE ReadingPeriod SET status = " +
+            RateioSchema.PERIOD_CLOSED + ", fechado_em = ?, total_leituras = IFNULL ((" +
+            "SELECT total_leituras FROM PeriodSummary " +
+            "WHERE PeriodSummary.periodo = ReadingPeriod.periodo), 0) WHERE periodo < ?";
+
+    private String condominium;
+    private File apartmentsFile;
+    private File readsFile;
+    private YearMonth closeBefore;
+
+    private int totalApartments;
+    private int totalReads;
+    private int closedPeriods;
+    private int lineErrors;
+
+    public DatabaseBootstrap setCondominium(String condominium) {
+        this.condominium = condominium;
+        return this;
+    }
+
+    public DatabaseBootstrap setApartmentsFile(File apartmentsFile) {
+        this.apartmentsFile = apartmentsFile;
+        return this;
+    }
+
+    public DatabaseBootstrap setReadsFile(File readsFile) {
+        this.readsFile = readsFile;
+        return this;
+    }
+
+    public DatabaseBootstrap setCloseBefore(YearMonth closeBefore) {
+        this.closeBefore = closeBefore;
+        return this;
+    }
+
+    public int getTotalApartments() {
+        return this.totalApartments;
+    }
+
+    public int getTotalReads() {
+        return this.totalReads;
+    }
+
+    public int getClosedPeriods() {
+        return this.closedPeriods;
+    }
+
+    public int getLineErrors() {
+        return this.lineErrors;
+    }
+
+    /**
+     * Método que gera o banco de dados do condomínio na pasta indicada,
+     * substituindo um arquivo anterior de mesmo nome.
+     * @param outDir pasta de saída
+     * @return o arquivo gerado, (condomínio).db
+     * @throws IOException erro retornado caso haja um problema com os arquivos
+     * @throws SQLException erro retornado caso haja um problema na gravação do BD
+     */
+    public File build (File outDir) throws IOException, SQLException {
+        if (this.condominium == null || this.apartmentsFile == null) {
+            throw new IllegalStateException("Condomínio e arquivo de apartamentos são obrigatórios");
+        }
+        outDir.mkdirs();
+        File resp = new File(outDir, this.condominium + DatabaseBootstrap.DB_EXTENSION);
+        if (resp.exists() && !resp.delete()) {
+            throw new IOException("Não foi possível substituir " + resp.getPath());
+        }
+        this.totalApartments = 0;
+        this.totalReads = 0;
+        this.closedPeriods = 0;
+        this.lineErrors = 0;
+
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + resp.getPath());
+        try {
+            Statement st = conn.createStatement();
+            for (String sql : RateioSchema.createStatements()) {
+                st.execute(sql);
+            }
+            conn.setAutoCommit(false);
+            Map<String, Integer> ids = this.insertApartments(conn);
+            if (this.readsFile != null) {
+                this.insertReads(conn, ids);
+            }
+            if (this.closeBefore != null) {
+                PreparedStatement close = conn.prepareStatement(DatabaseBootstrap.CLOSE_PERIODS);
+                close.setString(1, LocalDateTime.now().withNano(0).toString());
+                close.setInt(2, this.closeBefore.getYear() * 100 + this.closeBefore.getMonthValue());
+                this.closedPeriods = close.executeUpdate();
+                close.close();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            st.execute("PRAGMA user_version = " + RateioSchema.VERSION);
+            st.execute("VACUUM");
+            st.close();
+        }
+        finally {
+            conn.close();
+        }
+        return resp;
+    }
+
+    /**
+     * Método que cadastra os apartamentos do arquivo, na ordem do arquivo,
+     * como faz o TaskSetupAptTable. As linhas inválidas são ignoradas.
+     * @param conn conexão com o BD
+     * @return os identificadores dos apartamentos, indexados por "bloco,numero"
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     * @throws SQLException erro retornado caso haja um problema na gravação
+     */
+    private Map<String, Integer> insertApartments (Connection conn) throws IOException, SQLException {
+        Map<String, Integer> resp = new HashMap<>();
+        PreparedStatement insert = conn.prepareStatement(DatabaseBootstrap.INSERT_APARTMENT);
+        BufferedReader bf = DatabaseBootstrap.open(this.apartmentsFile);
+        try {
+            String line = bf.readLine();
+            while (line != null) {
+                String [] f = line.split(",");
+                if (f.length >= 2 && !f[0].trim().isEmpty() && DatabaseBootstrap.isInt(f[1])) {
+                    insert.setString(1, f[0].trim());
+                    insert.setInt(2, Integer.parseInt(f[1].trim()));
+                    insert.addBatch();
+                    this.totalApartments++;
+                    if (this.totalApartments % DatabaseBootstrap.BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                else if (!line.trim().isEmpty()) {
+                    this.lineErrors++;
+                }
+                line = bf.readLine();
+            }
+            insert.executeBatch();
+        }
+        finally {
+            bf.close();
+            insert.close();
+        }
+        Statement st = conn.createStatement();
+        ResultSet rs = st.executeQuery("SELECT id_apt, bloco, numero FROM Apartment");
+        while (rs.next()) {
+            resp.put(rs.getString(2) + "," + rs.getInt(3), rs.getInt(1));
+        }
+        rs.close();
+        st.close();
+        return resp;
+    }
+
+    /**
+     * Método que grava o histórico de leituras. Os totais por período e os
+     * períodos de leitura são mantidos pelos gatilhos do esquema.
+     * @param conn conexão com o BD
+     * @param ids identificadores dos apartamentos, indexados por "bloco,numero"
+     * @throws IOException erro retornado caso o arquivo não possa ser lido
+     * @throws SQLException erro retornado caso haja um problema na gravação
+     */
+    private void insertReads (Connection conn, Map<String, Integer> ids) throws IOException, SQLException {
+        PreparedStatement upsert = conn.prepareStatement(DatabaseBootstrap.UPSERT_READ);
+        BufferedReader bf = DatabaseBootstrap.open(this.readsFile);
+        try {
+            String line = bf.readLine();
+            while (line != null) {
+                String [] f = line.split(",");
+                Integer id = f.length >= 4 ? ids.get(f[0].trim() + "," + f[1].trim()) : null;
+                if (id != null && f[2].trim().length() >= 7 && DatabaseBootstrap.isInt(f[3])) {
+                    String date = f[2].trim();
+                    upsert.setInt(1, 0);
+                    upsert.setInt(2, id);
+                    upsert.setString(3, date);
+                    upsert.setLong(4, Long.parseLong(f[3].trim()));
+                    upsert.setInt(5, Integer.parseInt(date.substring(0, 4)) * 100
+                            + Integer.parseInt(date.substring(5, 7)));
+                    upsert.addBatch();
+                    this.totalReads++;
+                    if (this.totalReads % DatabaseBootstrap.BATCH_SIZE == 0) {
+                        upsert.executeBatch();
+                    }
+                }
+                else if (!line.trim().isEmpty()) {
+                    this.lineErrors++;
+                }
+                line = bf.readLine();
+            }
+            upsert.executeBatch();
+        }
+        finally {
+            bf.close();
+            upsert.close();
+        }
+    }
+
+    private static BufferedReader open (File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    private static boolean isInt (String value) {
+        String v = value.trim();
+        if (v.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < v.length(); i++) {
+            if (!Character.isDigit(v.charAt(i)) && !(i == 0 && v.charAt(i) == '-')) {
+                return false;
+            }
+        }
+        return v.length() > 1 || Character.isDigit(v.charAt(0));
+    }
+
+    /**
+     * Rotina principal, com os parâmetros no formato --nome=valor:
+     * --condominium (obrigatório), --apartments (obrigatório), --reads,
+     * --closeBefore (aaaa-mm) e --out (pasta de saída, padrão rateio-db).
+     * @param args parâmetros da linha de comando
+     * @throws Exception erro ocorrido na geração
+     */
+    public static void main (String [] args) throws Exception {
+        DatabaseBootstrap boot = new DatabaseBootstrap();
+        File outDir = new File("rateio-db");
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "out": outDir = new File(value); break;
+                case "condominium": boot.setCondominium(value); break;
+                case "apartments": boot.setApartmentsFile(new File(value)); break;
+                case "reads": boot.setReadsFile(new File(value)); break;
+                case "closeBefore": boot.setCloseBefore(YearMonth.parse(value)); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + name);
+            }
+        }
+        long start = System.nanoTime();
+        File db = boot.build(outDir);
+        System.out.println("BD gerado em " + db.getAbsolutePath() + " ("
+                + (System.nanoTime() - start) / 1000000 + " ms, " + db.length() / 1024 + " KB): "
+                + boot.getTotalApartments() + " apartamentos, " + boot.getTotalReads() + " leituras, "
+                + boot.getClosedPeriods() + " períodos fechados, "
+                + boot.getLineErrors() + " linhas ignoradas.");
+    }
+}
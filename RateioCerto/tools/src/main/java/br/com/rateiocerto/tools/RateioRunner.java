@@ -0,0 +1,659 @@
+package br.com.rateiocerto.tools;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.com.rateiocerto.engine.CsvReportWriter;
+import br.com.rateiocerto.engine.RateioEngine;
+import br.com.rateiocerto.engine.RateioResult;
+import br.com.rateiocerto.engine.RateioSchema;
+
+/**
+ * Rateio Certo
+ *
+ * RateioRunner: ferramenta de linha de comando que gera, fora do App, as mesmas
+ * planilhas de rateio do DataRWManager.writeCSVSheet, através do RateioEngine e
+ * do CsvReportWriter. As entradas podem ser:
+ * - o arquivo do BD de um condomínio (DatabaseRateio), exportado do aparelho
+ *   (database_(condomínio)) ou gerado pelo DatabaseBootstrap ((condomínio).db);
+ *   a referência de cada planilha é o último período fechado anterior, como no App;
+ * - a pasta de um condomínio com os arquivos do DataGenerator (leituras.csv e,
+ *   opcionalmente, apartamentos.csv); a referência é o último mês anterior com
+ *   leituras;
+ * - uma pasta com várias entradas desses tipos, uma por condomínio.
+ * Cada par (condomínio, período) é uma tarefa, executada num conjunto de linhas
+ * do tamanho da quantidade de processadores. Cada tarefa sobre um BD usa a sua
+ * própria conexão, somente leitura. Os arquivos CSV de um condomínio são lidos
+ * uma única vez, e descartados após a sua última planilha; como as tarefas são
+ * ordenadas por condomínio, apenas poucos condomínios ficam em memória.
+ *
+ * @Author: Severino José (biujose@gmail.com)
+ */
+public class RateioRunner {
+
+    //prefixo do nome do arquivo do BD no aparelho (DatabaseRegistry)
+    private static final String DB_NAME_PREFIX = "database_";
+
+    //cabeçalho dos arquivos SQLite
+    private static final byte [] SQLITE_HEADER = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+
+    //SQLITE_OPEN_READONLY, para a opção open_mode do sqlite-jdbc
+    private static final String OPEN_READONLY = "1";
+
+    //valor da opção periods que seleciona todos os períodos com referência
+    public static final String PERIODS_ALL = "all";
+
+    //valor da opção periods que seleciona o último período de cada condomínio (padrão)
+    public static final String PERIODS_LATEST = "latest";
+
+    /**
+     * Columns: leituras pareadas dos apartamentos, nas colunas usadas pelo
+     * RateioEngine, na ordem de cadastro dos apartamentos.
+     */
+    static class Columns {
+
+        final List<String> blocks = new ArrayList<>();
+        final List<Integer> nums = new ArrayList<>();
+        long [] prevValues = new long [16];
+        long [] currValues = new long [16];
+
+        void add (String block, int num, long prev, long curr) {
+            int i = this.blocks.size();
+            if (i == this.prevValues.length) {
+                this.prevValues = Arrays.copyOf(this.prevValues, i * 2);
+                this.currValues = Arrays.copyOf(this.currValues, i * 2);
+            }
+            this.blocks.add(block);
+            this.nums.add(num);
+            this.prevValues[i] = prev;
+            this.currValues[i] = curr;
+        }
+
+        int size () {
+            return this.blocks.size();
+        }
+    }
+
+    /**
+     * Source: origem das leituras de um condomínio.
+     */
+    interface Source {
+
+        String getName ();
+
+        /**
+         * Método que retorna os períodos com leituras, em ordem crescente.
+         * @return os períodos (ano * 100 + mês)
+         * @throws Exception erro na leitura da origem
+         */
+        List<Integer> getPeriods () throws Exception;
+
+        /**
+         * Método que retorna o período de referência da planilha do período indicado.
+         * @param period período da planilha (ano * 100 + mês)
+         * @return o período de referência, ou 0 caso não exista
+         * @throws Exception erro na leitura da origem
+         */
+        int getReference (int period) throws Exception;
+
+        /**
+         * Método que retorna as leituras pareadas dos dois períodos.
+         * @param prevPeriod período de referência
+         * @param currPeriod período da planilha
+         * @return as leituras pareadas
+         * @throws Exception erro na leitura da origem
+         */
+        Columns load (int prevPeriod, int currPeriod) throws Exception;
+
+        /**
+         * Método chamado após a última planilha do condomínio.
+         */
+        void release ();
+    }
+
+    /**
+     * DbSource: BD de um condomínio. Cada consulta usa uma conexão própria,
+     * permitindo a geração simultânea de vários períodos do mesmo condomínio.
+     */
+    static class DbSource implements Source {
+
+        private final File file;
+        private final String name;
+
+        DbSource (File file, String name) {
+            this.file = file;
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        private Connection open () throws SQLException {
+            Properties props = new Properties();
+            props.setProperty("open_mode", RateioRunner.OPEN_READONLY);
+            Connection resp = DriverManager.getConnection("jdbc:sqlite:" + this.file.getPath(), props);
+            Statement st = resp.createStatement();
+            ResultSet rs = st.executeQuery("PRAGMA user_version");
+            int version = rs.next() ? rs.getInt(1) : 0;
+            rs.close();
+            st.close();
+            if (version != RateioSchema.VERSION) {
+                resp.close();
+                throw new SQLException("BD na versão " + version + ", esperada a versão " +
+                        RateioSchema.VERSION + ": abra o condomínio no App para migrá-lo");
+            }
+            return resp;
+        }
+
+        @Override
+        public List<Integer> getPeriods() throws SQLException {
+            List<Integer> resp = new ArrayList<>();
+            Connection conn = this.open();
+            try {
+                Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT periodo FROM PeriodSummary ORDER BY periodo");
+                while (rs.next()) {
+                    resp.add(rs.getInt(1));
+                }
+                rs.close();
+                st.close();
+            }
+            finally {
+                conn.close();
+            }
+            return resp;
+        }
+
+        @Override
+        public int getReference(int period) throws SQLException {
+            Connection conn = this.open();
+            try {
+                //os parâmetros nomeados do Room são numerados pelo SQLite na ordem em que aparecem
+                PreparedStatement ps = conn.prepareStatement(RateioSchema.LAST_CLOSED_QUERY);
+                ps.setInt(1, period);
+                ResultSet rs = ps.executeQuery();
+                int resp = rs.next() ? rs.getInt("periodo") : 0;
+                rs.close();
+                ps.close();
+                return resp;
+            }
+            finally {
+                conn.close();
+            }
+        }
+
+        @Override
+        public Columns load(int prevPeriod, int currPeriod) throws SQLException {
+            Columns resp = new Columns();
+            Connection conn = this.open();
+            try {
+                PreparedStatement ps = conn.prepareStatement(RateioSchema.CONSUMPTION_QUERY);
+                ps.setInt(1, prevPeriod);
+                ps.setInt(2, currPeriod);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    long prev = rs.getLong("valorAnterior");
+                    prev = rs.wasNull() ? RateioEngine.NO_VALUE : prev;
+                    long curr = rs.getLong("valorAtual");
+                    curr = rs.wasNull() ? RateioEngine.NO_VALUE : curr;
+                    resp.add(rs.getString("bloco"), rs.getInt("numero"), prev, curr);
+                }
+                rs.close();
+                ps.close();
+            }
+            finally {
+                conn.close();
+            }
+            return resp;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * CsvSource: pasta de um condomínio com os arquivos do DataGenerator. Os
+     * arquivos são lidos no primeiro acesso, e as leituras repetidas no mesmo
+     * mês substituem a anterior, como no App.
+     */
+    static class CsvSource implements Source {
+
+        private final File dir;
+        private final String name;
+        private Map<String, Integer> aptIds;
+        private List<String> aptKeys;
+        private TreeMap<Integer, Map<Integer, Long>> reads;
+
+        CsvSource (File dir) {
+            this.dir = dir;
+            this.name = dir.getName();
+        }
+
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        private synchronized TreeMap<Integer, Map<Integer, Long>> reads () throws IOException {
+            if (this.reads == null) {
+                this.aptIds = new HashMap<>();
+                this.aptKeys = new ArrayList<>();
+                File apts = new File(this.dir, DataGenerator.APARTMENTS_FILE);
+                if (apts.isFile()) {
+                    BufferedReader bf = RateioRunner.open(apts);
+                    try {
+                        String line = bf.readLine();
+                        while (line != null) {
+                            String [] f = line.split(",");
+                            if (f.length >= 2 && RateioRunner.isInt(f[1])) {
+                                this.idOf(f[0].trim(), f[1].trim());
+                            }
+                            line = bf.readLine();
+                        }
+                    }
+                    finally {
+                        bf.close();
+                    }
+                }
+                TreeMap<Integer, Map<Integer, Long>> resp = new TreeMap<>();
+                BufferedReader bf = RateioRunner.open(new File(this.dir, DataGenerator.READS_FILE));
+                try {
+                    String line = bf.readLine();
+                    while (line != null) {
+                        String [] f = line.split(",");
+                        if (f.length >= 4 && f[2].trim().length() >= 7
+                                && RateioRunner.isInt(f[1]) && RateioRunner.isInt(f[3])) {
+                            String date = f[2].trim();
+                            int period = Integer.parseInt(date.substring(0, 4)) * 100
+                                    + Integer.parseInt(date.substring(5, 7));
+                            Map<Integer, Long> month = resp.get(period);
+                            if (month == null) {
+                                month = new HashMap<>();
+                                resp.put(period, month);
+                            }
+                            month.put(this.idOf(f[0].trim(), f[1].trim()), Long.parseLong(f[3].trim()));
+                        }
+                        line = bf.readLine();
+                    }
+                }
+                finally {
+                    bf.close();
+                }
+                this.reads = resp;
+            }
+            return this.reads;
+        }
+
+        private int idOf (String block, String num) {
+            String key = block + "," + Integer.parseInt(num);
+            Integer resp = this.aptIds.get(key);
+            if (resp == null) {
+                resp = this.aptKeys.size();
+                this.aptIds.put(key, resp);
+                this.aptKeys.add(key);
+            }
+            return resp;
+        }
+
+        @Override
+        public List<Integer> getPeriods() throws IOException {
+            return new ArrayList<>(this.reads().keySet());
+        }
+
+        @Override
+        public int getReference(int period) throws IOException {
+            Integer resp = this.reads().lowerKey(period);
+            return resp != null ? resp : 0;
+        }
+
+        @Override
+        public Columns load(int prevPeriod, int currPeriod) throws IOException {
+            TreeMap<Integer, Map<Integer, Long>> all = this.reads();
+            Map<Integer, Long> prev = all.get(prevPeriod);
+            Map<Integer, Long> curr = all.get(currPeriod);
+            prev = prev != null ? prev : new HashMap<Integer, Long>();
+            curr = curr != null ? curr : new HashMap<Integer, Long>();
+            Columns resp = new Columns();
+            for (int id = 0; id < this.aptKeys.size(); id++) {
+                Long p = prev.get(id);
+                Long c = curr.get(id);
+                if (p != null || c != null) {
+                    String key = this.aptKeys.get(id);
+                    int sep = key.indexOf(',');
+                    resp.add(key.substring(0, sep), Integer.parseInt(key.substring(sep + 1)),
+                            p != null ? p : RateioEngine.NO_VALUE,
+                            c != null ? c : RateioEngine.NO_VALUE);
+                }
+            }
+            return resp;
+        }
+
+        @Override
+        public synchronized void release() {
+            this.reads = null;
+            this.aptIds = null;
+            this.aptKeys = null;
+        }
+    }
+
+    private final List<Source> sources = new ArrayList<>();
+    private File outDir = new File("rateio-out");
+    private String periods = RateioRunner.PERIODS_LATEST;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public RateioRunner setOutDir (File outDir) {
+        this.outDir = outDir;
+        return this;
+    }
+
+    /**
+     * Método que define os períodos das planilhas: "latest" (o último período
+     * de cada condomínio), "all" (todos os períodos com referência), ou uma
+     * lista separada por vírgulas de meses (aaaa-mm) e intervalos (aaaa-mm:aaaa-mm).
+     * @param periods os períodos
+     * @return o próprio executor
+     */
+    public RateioRunner setPeriods (String periods) {
+        this.periods = periods;
+        return this;
+    }
+
+    public RateioRunner setThreads (int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    public List<Source> getSources() {
+        return this.sources;
+    }
+
+    /**
+     * Método que adiciona uma entrada: o arquivo do BD de um condomínio, a
+     * pasta de um condomínio com arquivos CSV, ou uma pasta com várias dessas
+     * entradas.
+     * @param input arquivo ou pasta de entrada
+     * @throws IOException erro retornado caso a entrada não possa ser lida
+     */
+    public void addInput (File input) throws IOException {
+        if (input.isFile()) {
+            if (!RateioRunner.isSQLite(input)) {
+                throw new IOException("Não é um BD SQLite: " + input.getPath());
+            }
+            String name = input.getName();
+            if (name.startsWith(RateioRunner.DB_NAME_PREFIX)) {
+                name = name.substring(RateioRunner.DB_NAME_PREFIX.length());
+            }
+            if (name.endsWith(DatabaseBootstrap.DB_EXTENSION)) {
+                name = name.substring(0, name.length() - DatabaseBootstrap.DB_EXTENSION.length());
+            }
+            this.sources.add(new DbSource(input, name));
+        }
+        else if (new File(input, DataGenerator.READS_FILE).isFile()) {
+            this.sources.add(new CsvSource(input));
+        }
+        else if (input.isDirectory()) {
+            File [] children = input.listFiles();
+            Arrays.sort(children);
+            for (File child : children) {
+                if ((child.isFile() && RateioRunner.isSQLite(child))
+                        || new File(child, DataGenerator.READS_FILE).isFile()) {
+                    this.addInput(child);
+                }
+            }
+        }
+        else {
+            throw new IOException("Entrada não encontrada: " + input.getPath());
+        }
+    }
+
+    /**
+     * Método que retorna os períodos das planilhas de um condomínio.
+     * @param source o condomínio
+     * @return os períodos (ano * 100 + mês), em ordem crescente
+     * @throws Exception erro na leitura da origem
+     */
+    List<Integer> selectPeriods (Source source) throws Exception {
+        List<Integer> available = source.getPeriods();
+        if (this.periods.equals(RateioRunner.PERIODS_LATEST)) {
+            return available.isEmpty() ? available
+                    : Arrays.asList(available.get(available.size() - 1));
+        }
+        if (this.periods.equals(RateioRunner.PERIODS_ALL)) {
+            return available;
+        }
+        TreeSet<Integer> resp = new TreeSet<>();
+        for (String item : this.periods.split(",")) {
+            String [] range = item.trim().split(":");
+            YearMonth from = YearMonth.parse(range[0].trim());
+            YearMonth to = range.length > 1 ? YearMonth.parse(range[1].trim()) : from;
+            for (YearMonth m = from; !m.isAfter(to); m = m.plusMonths(1)) {
+                resp.add(m.getYear() * 100 + m.getMonthValue());
+            }
+        }
+        return new ArrayList<>(resp);
+    }
+
+    /**
+     * Método que gera a planilha de um período de um condomínio, no mesmo
+     * formato e com o mesmo nome de arquivo do App.
+     * @param source o condomínio
+     * @param period período da planilha (ano * 100 + mês)
+     * @return a quantidade de apartamentos da planilha, ou -1 caso não haja
+     * período de referência
+     * @throws Exception erro na leitura da origem ou na escrita da planilha
+     */
+    int writeSheet (Source source, int period) throws Exception {
+        int reference = source.getReference(period);
+        if (reference == 0) {
+            return -1;
+        }
+        Columns cols = source.load(reference, period);
+        RateioResult result = RateioEngine.compute(cols.prevValues, cols.currValues, cols.size());
+        int currYear = period / 100;
+        int currMonth = period % 100;
+        CsvReportWriter wr = new CsvReportWriter(new File(this.outDir,
+                source.getName() + "_" + currMonth + "_" + currYear + ".csv"));
+        try {
+            wr.writeHeader(source.getName(), reference / 100, reference % 100,
+                    currYear, currMonth, result.getTotalVolume());
+            for (int i = 0; i < result.size(); i++) {
+                wr.writeRow(cols.blocks.get(i), cols.nums.get(i), cols.prevValues[i],
+                        cols.currValues[i], result.getConsumption(i), result.getPercent(i));
+            }
+            wr.commit();
+        }
+        finally {
+            wr.close();
+        }
+        return result.size();
+    }
+
+    /**
+     * Método que gera todas as planilhas, em paralelo. Cada linha do resultado
+     * descreve uma planilha: condomínio, período, situação, apartamentos e tempo.
+     * A falha de uma planilha não interrompe as demais.
+     * @return as linhas do resultado, na ordem dos condomínios e períodos
+     * @throws InterruptedException caso a execução seja interrompida
+     */
+    public List<String> run () throws InterruptedException {
+        this.outDir.mkdirs();
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        List<Future<String>> futures = new ArrayList<>();
+        List<String> resp = new ArrayList<>();
+        try {
+            Map<Source, List<Integer>> work = new LinkedHashMap<>();
+            for (Source source : this.sources) {
+                try {
+                    work.put(source, this.selectPeriods(source));
+                }
+                catch (Exception e) {
+                    resp.add(source.getName() + ",,erro,0,0," + RateioRunner.describe(e));
+                }
+            }
+            for (Map.Entry<Source, List<Integer>> entry : work.entrySet()) {
+                final Source source = entry.getKey();
+                final AtomicInteger remaining = new AtomicInteger(entry.getValue().size());
+                for (final int period : entry.getValue()) {
+                    futures.add(pool.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            long start = System.nanoTime();
+                            String line;
+                            try {
+                                int rows = writeSheet(source, period);
+                                line = source.getName() + "," + period + ","
+                                        + (rows < 0 ? "sem_referencia,0," : "ok," + rows + ",")
+                                        + (System.nanoTime() - start) / 1000000 + ",";
+                            }
+                            catch (Exception e) {
+                                line = source.getName() + "," + period + ",erro,0,"
+                                        + (System.nanoTime() - start) / 1000000 + ","
+                                        + RateioRunner.describe(e);
+                            }
+                            if (remaining.decrementAndGet() == 0) {
+                                source.release();
+                            }
+                            return line;
+                        }
+                    }));
+                }
+            }
+            for (Future<String> f : futures) {
+                try {
+                    resp.add(f.get());
+                }
+                catch (ExecutionException e) {
+                    resp.add(",,erro,0,0," + RateioRunner.describe(e.getCause()));
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return resp;
+    }
+
+    private static String describe (Throwable e) {
+        return (e.getClass().getSimpleName() + ": " + e.getMessage()).replace(',', ';');
+    }
+
+    private static boolean isInt (String value) {
+        try {
+            Long.parseLong(value.trim());
+            return true;
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isSQLite (File file) throws IOException {
+        if (file.length() < RateioRunner.SQLITE_HEADER.length) {
+            return false;
+        }
+        byte [] header = new byte [RateioRunner.SQLITE_HEADER.length];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(header);
+        }
+        finally {
+            in.close();
+        }
+        return Arrays.equals(header, RateioRunner.SQLITE_HEADER);
+    }
+
+    private static BufferedReader open (File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rotina principal, com os parâmetros no formato --nome=valor:
+     * --input (obrigatório; arquivos ou pastas separados por vírgula),
+     * --periods (latest, all, ou meses aaaa-mm e intervalos aaaa-mm:aaaa-mm),
+     * --threads (padrão: quantidade de processadores) e
+     * --out (pasta das planilhas, padrão rateio-out). O resultado de cada
+     * planilha é impresso em CSV, seguido dos totais.
+     * @param args parâmetros da linha de comando
+     * @throws Exception erro ocorrido na execução
+     */
+    public static void main (String [] args) throws Exception {
+        RateioRunner runner = new RateioRunner();
+        List<File> inputs = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Parâmetro inválido: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "input":
+                    for (String path : value.split(",")) {
+                        inputs.add(new File(path.trim()));
+                    }
+                    break;
+                case "out": runner.setOutDir(new File(value)); break;
+                case "periods": runner.setPeriods(value); break;
+                case "threads": runner.setThreads(Integer.parseInt(value)); break;
+                default: throw new IllegalArgumentException("Parâmetro desconhecido: " + name);
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw new IllegalArgumentException("Informe as entradas com --input");
+        }
+        for (File input : inputs) {
+            runner.addInput(input);
+        }
+        long start = System.nanoTime();
+        List<String> lines = runner.run();
+        long ms = (System.nanoTime() - start) / 1000000;
+        int ok = 0;
+        int failed = 0;
+        System.out.println("condominio,periodo,situacao,apartamentos,ms,erro");
+        for (String line : lines) {
+            System.out.println(line);
+            if (line.contains(",ok,")) {
+                ok++;
+            }
+            else if (line.contains(",erro,")) {
+                failed++;
+            }
+        }
+        System.out.println(String.format("Total: %d condomínio(s), %d planilha(s) em %d ms " +
+                "(%.1f/s, %d linhas), %d com erro.", runner.getSources().size(), ok, ms,
+                ms > 0 ? ok * 1000.0 / ms : 0, runner.threads, failed));
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}